@@ -24,87 +24,201 @@
 
 package mobi.hsz.idea.gitignore;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ContentIterator;
-import com.intellij.openapi.roots.FileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.*;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
 import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
 import gnu.trove.THashSet;
-import mobi.hsz.idea.gitignore.util.Constants;
-import mobi.hsz.idea.gitignore.util.MatcherUtil;
+import gnu.trove.TIntHashSet;
+import mobi.hsz.idea.gitignore.indexing.FileNameTrigramIndex;
+import mobi.hsz.idea.gitignore.util.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 /**
  * Cache that retrieves matching files using given {@link Pattern}.
- * It uses {@link VirtualFileListener} to handle changes in the files tree and clear cached entries
- * for the specific pattern parts.
+ * It uses {@link BulkFileListener} to handle changes in the files tree and clear cached entries
+ * for the specific pattern parts. Cache keys are indexed with their parts, so the affected entries are found
+ * with the alphanumeric substrings of the changed path instead of checking every cached key.
  *
  * @author Jakub Chrzanowski <jakub@hsz.mobi>
  * @since 1.3.1
  */
 public class FilesIndexCacheProjectComponent extends AbstractProjectComponent {
+    /** Maximum number of directories stored in the single {@link DirectoryTree}. */
+    private static final int MAX_TREE_SIZE = 100000;
+
+    /** Maximum number of cached subdirectories results. */
+    private static final int MAX_SUBDIRECTORIES_CACHE_SIZE = 1000;
+
+    /** Maximum number of paths stored in the {@link PathsSnapshot}. */
+    private static final int MAX_PATHS_SNAPSHOT_SIZE = 200000;
+
+    /** Maximum number of pending changes of the {@link PathsSnapshot}, above which it is rebuilt. */
+    private static final int MAX_PATHS_SNAPSHOT_CHANGES = 10000;
+
     /** Concurrent cache map. */
     @NotNull
     private final ConcurrentMap<String, Collection<VirtualFile>> cacheMap;
 
-    /** {@link VirtualFileManager} instance. */
+    /** Cache keys mapped with the pattern parts they contain. */
     @NotNull
-    private final VirtualFileManager virtualFileManager;
+    private final ConcurrentMap<String, Set<String>> partsMap;
 
-    /** {@link FileIndex} instance. */
+    /** Length of the longest part stored in {@link #partsMap}. */
+    private volatile int maxPartLength;
+
+    /** Directories trees mapped with the content roots. */
     @NotNull
-    private final FileIndex projectFileIndex;
+    private final ConcurrentMap<VirtualFile, DirectoryTree> treesMap;
 
-    /** {@link VirtualFileListener} instance to watch for operations on the filesystem. */
+    /** Content roots which trees exceed {@link #MAX_TREE_SIZE}. */
     @NotNull
-    private final VirtualFileListener virtualFileListener = new VirtualFileListener() {
-        @Override
-        public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
-            if (event.getPropertyName().equals("name")) {
-                removeAffectedCaches(event);
-            }
-        }
+    private final Set<VirtualFile> oversizedRoots;
 
-        @Override
-        public void fileCreated(@NotNull VirtualFileEvent event) {
-            removeAffectedCaches(event);
-        }
+    /** Subdirectories mapped with the root and pattern. */
+    @NotNull
+    private final ConcurrentMap<String, Subdirectories> subdirectoriesMap;
+
+    /** Snapshot of the project paths used for the completion. */
+    @Nullable
+    private volatile PathsSnapshot pathsSnapshot;
+
+    /** {@link #pathsSnapshot} has to be rebuilt. */
+    @NotNull
+    private final AtomicBoolean pathsSnapshotStale = new AtomicBoolean(true);
+
+    /**
+     * Project exceeds {@link #MAX_PATHS_SNAPSHOT_SIZE}, so {@link #pathsSnapshot} is rebuilt only after files were
+     * removed.
+     */
+    private volatile boolean pathsSnapshotOversized;
+
+    /** Relative paths removed since {@link #pathsSnapshot} was built. Guards {@link #pathsSnapshotAdded} as well. */
+    @NotNull
+    private final Set<String> pathsSnapshotRemoved = ContainerUtil.newHashSet();
 
+    /** Files added or renamed since {@link #pathsSnapshot} was built. */
+    @NotNull
+    private final Set<VirtualFile> pathsSnapshotAdded = ContainerUtil.newHashSet();
+
+    /** Rebuilds or patches {@link #pathsSnapshot} in background, wrapped with {@link Debounced}. */
+    private final Debounced debouncedPathsSnapshot = new Debounced(500, "FilesIndexCache.pathsSnapshot") {
         @Override
-        public void fileDeleted(@NotNull VirtualFileEvent event) {
-            removeAffectedCaches(event);
+        protected void task(@Nullable Object argument) {
+            ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                @Override
+                public void run() {
+                    updatePathsSnapshot();
+                }
+            });
         }
+    };
 
+    /** {@link MessageBusConnection} instance. */
+    private MessageBusConnection messageBus;
+
+    /** {@link BulkFileListener} instance to watch for operations on the filesystem. */
+    @NotNull
+    private final BulkFileListener bulkFileListener = new BulkFileListener() {
         @Override
-        public void fileMoved(@NotNull VirtualFileMoveEvent event) {
-            removeAffectedCaches(event);
+        public void before(@NotNull List<? extends VFileEvent> events) {
+            removeAffectedCaches(events, true);
+            invalidatePathsSnapshot(events, true);
         }
 
         @Override
-        public void fileCopied(@NotNull VirtualFileCopyEvent event) {
-            removeAffectedCaches(event);
+        public void after(@NotNull List<? extends VFileEvent> events) {
+            removeAffectedCaches(events, false);
+            invalidatePathsSnapshot(events, false);
         }
 
-        @Override
-        public void beforeFileMovement(@NotNull VirtualFileMoveEvent event) {
-            removeAffectedCaches(event);
+        /**
+         * Collects changes of {@link #pathsSnapshot} paths to patch it in background. Removed, moved and renamed
+         * files are checked before the event, while they are still valid, and the other files after it. Snapshot
+         * is marked as stale if it is not built yet or there are too many changes.
+         *
+         * @param events VFS events
+         * @param before events are not applied yet
+         */
+        private void invalidatePathsSnapshot(@NotNull List<? extends VFileEvent> events, boolean before) {
+            boolean changed = false;
+            for (VFileEvent event : events) {
+                final boolean removal = event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent
+                        || event instanceof VFilePropertyChangeEvent;
+                if ((before ? !removal : event instanceof VFileDeleteEvent) || !isPathsSnapshotAffected(event)) {
+                    continue;
+                }
+
+                if (pathsSnapshotOversized) {
+                    if (before) {
+                        pathsSnapshotStale.set(true);
+                    }
+                    continue;
+                }
+                changed = true;
+                if (pathsSnapshot == null) {
+                    pathsSnapshotStale.set(true);
+                    continue;
+                }
+
+                final VirtualFile baseDir = myProject.getBaseDir();
+                final VirtualFile file = before ? event.getFile() : getCreatedFile(event);
+                synchronized (pathsSnapshotRemoved) {
+                    if (before && baseDir != null && file != null) {
+                        pathsSnapshotRemoved.add(Utils.getRelativePath(baseDir, file));
+                    } else if (!before && file != null) {
+                        pathsSnapshotAdded.add(file);
+                    }
+                    if (pathsSnapshotRemoved.size() + pathsSnapshotAdded.size() > MAX_PATHS_SNAPSHOT_CHANGES) {
+                        pathsSnapshotRemoved.clear();
+                        pathsSnapshotAdded.clear();
+                        pathsSnapshotStale.set(true);
+                    }
+                }
+            }
+            if (changed && pathsSnapshot != null) {
+                debouncedPathsSnapshot.run();
+            }
         }
 
-        private void removeAffectedCaches(@NotNull VirtualFileEvent event) {
-            for (String key : cacheMap.keySet()) {
-                List<String> parts = StringUtil.split(key, Constants.DOLLAR);
-                if (MatcherUtil.matchAnyPart(parts.toArray(new String[parts.size()]), event.getFile().getPath())) {
-                    cacheMap.remove(key);
+        private void removeAffectedCaches(@NotNull List<? extends VFileEvent> events, boolean before) {
+            for (VFileEvent event : events) {
+                if (event instanceof VFilePropertyChangeEvent &&
+                        !VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                    continue;
+                }
+                if (!cacheMap.isEmpty()) {
+                    removeAffectedCaches(event.getPath());
+                }
+                if (!treesMap.isEmpty() || !oversizedRoots.isEmpty()) {
+                    updateAffectedTrees(event, before);
                 }
             }
         }
@@ -121,28 +235,238 @@ public class FilesIndexCacheProjectComponent extends AbstractProjectComponent {
     }
 
     /**
-     * Initializes {@link #cacheMap} and {@link VirtualFileManager}.
+     * Initializes {@link #cacheMap} and {@link #partsMap}.
      *
      * @param project current project
      */
     protected FilesIndexCacheProjectComponent(@NotNull final Project project) {
         super(project);
         cacheMap = ContainerUtil.newConcurrentMap();
-        virtualFileManager = VirtualFileManager.getInstance();
-        projectFileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        partsMap = ContainerUtil.newConcurrentMap();
+        treesMap = ContainerUtil.newConcurrentMap();
+        oversizedRoots = ContainerUtil.newConcurrentSet();
+        subdirectoriesMap = ContainerUtil.newConcurrentMap();
     }
 
-    /** Registers {@link #virtualFileListener} when project is opened. */
+    /** Subscribes {@link #bulkFileListener} when project is opened. */
     @Override
     public void projectOpened() {
-        virtualFileManager.addVirtualFileListener(virtualFileListener);
+        messageBus = myProject.getMessageBus().connect();
+        messageBus.subscribe(VirtualFileManager.VFS_CHANGES, bulkFileListener);
     }
 
-    /** Unregisters {@link #virtualFileListener} when project is closed. */
+    /** Disconnects {@link #bulkFileListener} when project is closed. */
     @Override
     public void projectClosed() {
-        virtualFileManager.removeVirtualFileListener(virtualFileListener);
+        if (messageBus != null) {
+            messageBus.disconnect();
+            messageBus = null;
+        }
         cacheMap.clear();
+        partsMap.clear();
+        treesMap.clear();
+        oversizedRoots.clear();
+        subdirectoriesMap.clear();
+        pathsSnapshot = null;
+        synchronized (pathsSnapshotRemoved) {
+            pathsSnapshotRemoved.clear();
+            pathsSnapshotAdded.clear();
+        }
+    }
+
+    /**
+     * Removes cached entries which parts are contained in the given path. Every part is an alphanumeric string, so
+     * it can be contained only in the alphanumeric run of the path - substrings of these runs are looked up
+     * in the {@link #partsMap}.
+     *
+     * @param path changed path
+     */
+    private void removeAffectedCaches(@NotNull String path) {
+        final int maxLength = maxPartLength;
+        int start = 0;
+        while (start < path.length()) {
+            if (!Character.isLetterOrDigit(path.charAt(start))) {
+                start++;
+                continue;
+            }
+
+            int end = start;
+            while (end < path.length() && Character.isLetterOrDigit(path.charAt(end))) {
+                end++;
+            }
+
+            for (int i = start; i < end; i++) {
+                for (int j = i + 1; j <= Math.min(end, i + maxLength); j++) {
+                    final Set<String> keys = partsMap.get(path.substring(i, j));
+                    if (keys != null) {
+                        for (String key : keys) {
+                            removeCache(key);
+                        }
+                    }
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Checks if given event creates, removes, moves or renames a file in the project content under the base
+     * directory, which path may be stored in {@link #pathsSnapshot}.
+     *
+     * @param event VFS event
+     * @return event affects paths snapshot
+     */
+    private boolean isPathsSnapshotAffected(@NotNull VFileEvent event) {
+        if (event instanceof VFileContentChangeEvent || event instanceof VFilePropertyChangeEvent &&
+                !VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+            return false;
+        }
+
+        final VirtualFile baseDir = myProject.getBaseDir();
+        final VirtualFile file = event instanceof VFileCopyEvent ?
+                ((VFileCopyEvent) event).getNewParent() : event.getFile();
+        if (baseDir == null || file == null || !file.isValid()) {
+            return false;
+        }
+        return VfsUtilCore.isAncestor(baseDir, file, false)
+                && ProjectRootManager.getInstance(myProject).getFileIndex().isInContent(file);
+    }
+
+    /**
+     * Returns file created, copied, moved or renamed by the given event, already applied.
+     *
+     * @param event VFS event
+     * @return created file or <code>null</code> if not found
+     */
+    @Nullable
+    private static VirtualFile getCreatedFile(@NotNull VFileEvent event) {
+        if (event instanceof VFileCopyEvent) {
+            final VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+            return copyEvent.getNewParent().findChild(copyEvent.getNewChildName());
+        }
+        return event.getFile();
+    }
+
+    /**
+     * Updates trees which structure is affected by the given event. Removed and moved directories are cut out
+     * of the trees before the event and created, copied and moved directories are added after it, so only
+     * the slice of the affected subtree is visited. Renaming does not change the tree.
+     *
+     * @param event  VFS event
+     * @param before event is not applied yet
+     */
+    private void updateAffectedTrees(@NotNull VFileEvent event, boolean before) {
+        if (before) {
+            if (event instanceof VFileDeleteEvent || event instanceof VFileMoveEvent) {
+                final VirtualFile file = event.getFile();
+                if (file != null && file.isDirectory()) {
+                    removeFromTrees(file);
+                }
+            }
+            return;
+        }
+
+        VirtualFile file = null;
+        if (event instanceof VFileCreateEvent && ((VFileCreateEvent) event).isDirectory()
+                || event instanceof VFileMoveEvent || event instanceof VFileCopyEvent) {
+            file = getCreatedFile(event);
+        }
+        if (file != null && file.isValid() && file.isDirectory()) {
+            addToTrees(file);
+        }
+    }
+
+    /**
+     * Removes given directory with its subdirectories from the trees. Trees which root is removed are dropped.
+     *
+     * @param directory removed directory
+     */
+    private void removeFromTrees(@NotNull VirtualFile directory) {
+        for (Map.Entry<VirtualFile, DirectoryTree> entry : treesMap.entrySet()) {
+            final VirtualFile root = entry.getKey();
+            final DirectoryTree tree = entry.getValue();
+            if (VfsUtilCore.isAncestor(directory, root, false)) {
+                treesMap.remove(root, tree);
+            } else if (tree.contains(directory)) {
+                treesMap.replace(root, tree, tree.removeSubtree(directory));
+            }
+        }
+        for (VirtualFile root : oversizedRoots) {
+            if (VfsUtilCore.isAncestor(directory, root, false)) {
+                oversizedRoots.remove(root);
+            }
+        }
+    }
+
+    /**
+     * Adds given directory with its subdirectories to the trees containing its parent. Tree exceeding
+     * {@link #MAX_TREE_SIZE} is dropped and its root is marked as oversized.
+     *
+     * @param directory new directory
+     */
+    private void addToTrees(@NotNull VirtualFile directory) {
+        final VirtualFile parent = directory.getParent();
+        if (parent == null) {
+            return;
+        }
+
+        for (Map.Entry<VirtualFile, DirectoryTree> entry : treesMap.entrySet()) {
+            final VirtualFile root = entry.getKey();
+            final DirectoryTree tree = entry.getValue();
+            if (!tree.contains(parent)) {
+                continue;
+            }
+
+            final DirectoryTree updated = tree.addSubtree(directory, MAX_TREE_SIZE);
+            if (updated == null) {
+                treesMap.remove(root, tree);
+                oversizedRoots.add(root);
+            } else {
+                treesMap.replace(root, tree, updated);
+            }
+        }
+    }
+
+    /**
+     * Removes cached entry and its references in the {@link #partsMap}.
+     *
+     * @param key cache key
+     */
+    private void removeCache(@NotNull String key) {
+        if (cacheMap.remove(key) == null) {
+            return;
+        }
+        for (String part : StringUtil.split(key, Constants.DOLLAR)) {
+            final Set<String> keys = partsMap.get(part);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Stores cached entry and indexes its key with the given parts.
+     *
+     * @param key   cache key
+     * @param parts pattern parts
+     * @param files matched files
+     */
+    private void putCache(@NotNull String key, @NotNull String[] parts, @NotNull Collection<VirtualFile> files) {
+        for (String part : parts) {
+            Set<String> keys = partsMap.get(part);
+            if (keys == null) {
+                final Set<String> created = ContainerUtil.newConcurrentSet();
+                keys = partsMap.putIfAbsent(part, created);
+                if (keys == null) {
+                    keys = created;
+                }
+            }
+            keys.add(key);
+            if (part.length() > maxPartLength) {
+                maxPartLength = part.length();
+            }
+        }
+        cacheMap.put(key, files);
     }
 
     /**
@@ -159,33 +483,381 @@ public class FilesIndexCacheProjectComponent extends AbstractProjectComponent {
 
         if (parts.length > 0) {
             final String key = StringUtil.join(parts, Constants.DOLLAR);
-            if (cacheMap.get(key) == null) {
+            final Collection<VirtualFile> cached = cacheMap.get(key);
+            IgnoreStatistics.recordCache("FilesIndexCache", cached != null);
+            if (cached == null) {
                 final THashSet<VirtualFile> files = new THashSet<VirtualFile>(1000);
 
-                projectFileIndex.iterateContent(new ContentIterator() {
+                final Processor<VirtualFile> collector = new Processor<VirtualFile>() {
                     @Override
-                    public boolean processFile(VirtualFile fileOrDir) {
-                        final String name = fileOrDir.getName();
-                        if (MatcherUtil.matchAnyPart(parts, name)) {
+                    public boolean process(VirtualFile file) {
+                        if (file.isValid() && MatcherUtil.matchAnyPart(parts, file.getName())
+                                && MatcherUtil.matchAllParts(parts, file.getPath())) {
+                            files.add(file);
+                        }
+                        return true;
+                    }
+                };
+
+                for (String part : parts) {
+                    if (part.length() >= FileNameTrigramIndex.TRIGRAM_LENGTH) {
+                        FileNameTrigramIndex.processFiles(part, scope, collector);
+                        continue;
+                    }
+
+                    for (String name : FilenameIndex.getAllFilenames(project)) {
+                        if (name.contains(part)) {
                             for (VirtualFile file : FilenameIndex.getVirtualFilesByName(project, name, scope)) {
-                                if (file.isValid() && MatcherUtil.matchAllParts(parts, file.getPath())) {
-                                    files.add(file);
-                                }
+                                collector.process(file);
                             }
                         }
-                        return true;
                     }
-                });
+                }
 
-                cacheMap.put(key, files);
+                putCache(key, parts, files);
+                return files;
             }
 
-            return cacheMap.get(key);
+            return cached;
         }
 
         return ContainerUtil.newArrayList();
     }
 
+    /**
+     * Returns all subdirectories of the given directories used to expand <code>**</code> patterns. Directories are
+     * read from the shared {@link DirectoryTree} of their content root and results are cached for the given root
+     * and pattern until any of the used trees changes.
+     *
+     * @param root        root of the ignore file
+     * @param pattern     expanded pattern
+     * @param directories directories to expand
+     * @return subdirectories
+     */
+    @NotNull
+    public Collection<VirtualFile> getSubdirectories(@Nullable VirtualFile root, @NotNull Pattern pattern,
+                                                     @NotNull Collection<VirtualFile> directories) {
+        final String key = (root != null ? root.getPath() : "") + Constants.NEWLINE + pattern.pattern();
+        final int[] candidates = getDirectoryIds(directories);
+        final Subdirectories cached = subdirectoriesMap.get(key);
+        final boolean valid = cached != null && cached.isValid(candidates);
+        IgnoreStatistics.recordCache("FilesIndexCache.subdirectories", valid);
+
+        int[] ids = valid ? cached.ids : null;
+        if (ids == null) {
+            final TIntHashSet collected = new TIntHashSet();
+            final List<DirectoryTree> trees = ContainerUtil.newArrayList();
+            final Collection<VirtualFile> visited = ContainerUtil.newArrayList();
+            for (VirtualFile directory : directories) {
+                ProgressManager.checkCanceled();
+                if (!directory.isDirectory()) {
+                    continue;
+                }
+
+                final DirectoryTree tree = getTree(directory);
+                if (tree != null) {
+                    collected.addAll(tree.getSubdirectories(directory));
+                    trees.add(tree);
+                } else {
+                    visitSubdirectories(directory, visited);
+                }
+            }
+
+            if (!visited.isEmpty()) {
+                final Collection<VirtualFile> result = ContainerUtil.newArrayList(visited);
+                result.addAll(resolveDirectories(collected.toArray()));
+                return result;
+            }
+
+            ids = collected.toArray();
+            if (subdirectoriesMap.size() >= MAX_SUBDIRECTORIES_CACHE_SIZE) {
+                subdirectoriesMap.clear();
+            }
+            subdirectoriesMap.put(key, new Subdirectories(trees, candidates, ids));
+        }
+
+        return resolveDirectories(ids);
+    }
+
+    /**
+     * Returns sorted ids of the given directories. Files are skipped.
+     *
+     * @param directories directories to expand
+     * @return directories ids
+     */
+    @NotNull
+    private static int[] getDirectoryIds(@NotNull Collection<VirtualFile> directories) {
+        final TIntHashSet result = new TIntHashSet(directories.size());
+        for (VirtualFile directory : directories) {
+            if (directory instanceof VirtualFileWithId && directory.isDirectory()) {
+                result.add(((VirtualFileWithId) directory).getId());
+            }
+        }
+        final int[] ids = result.toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Returns {@link DirectoryTree} containing the given directory. Tree is created for the content root on demand.
+     *
+     * @param directory directory to find
+     * @return tree or <code>null</code> if directory is outside of the content or the tree is too large
+     */
+    @Nullable
+    private DirectoryTree getTree(@NotNull VirtualFile directory) {
+        final VirtualFile contentRoot = ProjectRootManager.getInstance(myProject).getFileIndex()
+                .getContentRootForFile(directory);
+        if (contentRoot == null || oversizedRoots.contains(contentRoot)) {
+            return null;
+        }
+
+        DirectoryTree tree = treesMap.get(contentRoot);
+        if (tree == null) {
+            tree = DirectoryTree.create(contentRoot, MAX_TREE_SIZE);
+            if (tree == null) {
+                oversizedRoots.add(contentRoot);
+                return null;
+            }
+            treesMap.put(contentRoot, tree);
+        }
+        return tree.contains(directory) ? tree : null;
+    }
+
+    /**
+     * Collects subdirectories of the directory which is not covered by any {@link DirectoryTree}.
+     *
+     * @param directory parent directory
+     * @param result    subdirectories collection
+     */
+    private static void visitSubdirectories(@NotNull final VirtualFile directory,
+                                            @NotNull final Collection<VirtualFile> result) {
+        VfsUtilCore.visitChildrenRecursively(directory, new VirtualFileVisitor<Object>() {
+            @Override
+            public boolean visitFile(@NotNull VirtualFile file) {
+                if (file.isDirectory()) {
+                    if (!file.equals(directory)) {
+                        result.add(file);
+                    }
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Resolves directories by their ids.
+     *
+     * @param ids directories ids
+     * @return valid directories
+     */
+    @NotNull
+    private static List<VirtualFile> resolveDirectories(@NotNull int[] ids) {
+        final List<VirtualFile> result = ContainerUtil.newArrayListWithCapacity(ids.length);
+        for (int id : ids) {
+            ContainerUtil.addIfNotNull(result, DirectoryTree.findDirectory(id));
+        }
+        return result;
+    }
+
+    /** Cached subdirectories ids with the expanded directories and the trees they were read from. */
+    private class Subdirectories {
+        /** Trees used to collect {@link #ids}. */
+        @NotNull
+        private final List<DirectoryTree> trees;
+
+        /** Sorted ids of the expanded directories, which depend on the files names. */
+        @NotNull
+        private final int[] candidates;
+
+        /** Subdirectories ids. */
+        @NotNull
+        private final int[] ids;
+
+        /**
+         * Constructor.
+         *
+         * @param trees      used trees
+         * @param candidates expanded directories ids
+         * @param ids        subdirectories ids
+         */
+        private Subdirectories(@NotNull List<DirectoryTree> trees, @NotNull int[] candidates, @NotNull int[] ids) {
+            this.trees = trees;
+            this.candidates = candidates;
+            this.ids = ids;
+        }
+
+        /**
+         * Checks if the same directories are expanded and all the used trees are still current - trees are replaced
+         * when their structure changes, while renamed directories change the expanded directories.
+         *
+         * @param candidates current expanded directories ids
+         * @return entry is valid
+         */
+        private boolean isValid(@NotNull int[] candidates) {
+            if (!Arrays.equals(this.candidates, candidates)) {
+                return false;
+            }
+            for (DirectoryTree tree : trees) {
+                if (treesMap.get(tree.getRoot()) != tree) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns snapshot of the paths relative to the project's base directory. Snapshot is built lazily in background,
+     * so the previous or no snapshot is returned until it is ready.
+     *
+     * @return paths snapshot or <code>null</code> if it is not available yet or the project is too large
+     */
+    @Nullable
+    public PathsSnapshot getPathsSnapshot() {
+        if (pathsSnapshotStale.get()) {
+            debouncedPathsSnapshot.run();
+        }
+        return pathsSnapshot;
+    }
+
+    /**
+     * Rebuilds {@link #pathsSnapshot} if it is stale or patches it with the collected changes otherwise. Collecting
+     * is restarted whenever a write action is pending, so it does not block the UI.
+     */
+    private synchronized void updatePathsSnapshot() {
+        final VirtualFile baseDir = myProject.getBaseDir();
+        if (myProject.isDisposed() || baseDir == null) {
+            return;
+        }
+
+        final List<String> removed;
+        final List<VirtualFile> added;
+        synchronized (pathsSnapshotRemoved) {
+            removed = ContainerUtil.newArrayList(pathsSnapshotRemoved);
+            added = ContainerUtil.newArrayList(pathsSnapshotAdded);
+            pathsSnapshotRemoved.clear();
+            pathsSnapshotAdded.clear();
+        }
+
+        if (pathsSnapshotStale.compareAndSet(true, false)) {
+            rebuildPathsSnapshot(baseDir);
+        } else if (!removed.isEmpty() || !added.isEmpty()) {
+            patchPathsSnapshot(baseDir, removed, added);
+        }
+    }
+
+    /**
+     * Collects project paths under the base directory and replaces {@link #pathsSnapshot}. If the project exceeds
+     * {@link #MAX_PATHS_SNAPSHOT_SIZE}, snapshot is dropped until the next rebuild fits.
+     *
+     * @param baseDir project's base directory
+     */
+    private void rebuildPathsSnapshot(@NotNull final VirtualFile baseDir) {
+        final List<String> paths = ContainerUtil.newArrayList();
+        final Ref<Boolean> complete = Ref.create();
+        final Runnable collect = new Runnable() {
+            @Override
+            public void run() {
+                paths.clear();
+                complete.set(ProjectRootManager.getInstance(myProject).getFileIndex().iterateContent(
+                        createPathsCollector(baseDir, paths)
+                ));
+            }
+        };
+        if (!runInReadAction(collect)) {
+            return;
+        }
+
+        pathsSnapshotOversized = !complete.get();
+        pathsSnapshot = complete.get() ? new PathsSnapshot(paths) : null;
+    }
+
+    /**
+     * Applies changes collected from the VFS events to {@link #pathsSnapshot}. Only the subtrees of the added files
+     * are visited.
+     *
+     * @param baseDir project's base directory
+     * @param removed removed relative paths
+     * @param added   added files
+     */
+    private void patchPathsSnapshot(@NotNull final VirtualFile baseDir, @NotNull List<String> removed,
+                                    @NotNull final List<VirtualFile> added) {
+        final PathsSnapshot snapshot = pathsSnapshot;
+        if (snapshot == null) {
+            return;
+        }
+
+        final List<String> paths = ContainerUtil.newArrayList();
+        final Ref<Boolean> complete = Ref.create();
+        final Runnable collect = new Runnable() {
+            @Override
+            public void run() {
+                paths.clear();
+                complete.set(true);
+                final ContentIterator collector = createPathsCollector(baseDir, paths);
+                for (VirtualFile file : added) {
+                    if (file.isValid() && !ProjectRootManager.getInstance(myProject).getFileIndex()
+                            .iterateContentUnderDirectory(file, collector)) {
+                        complete.set(false);
+                        return;
+                    }
+                }
+            }
+        };
+        if (!runInReadAction(collect)) {
+            return;
+        }
+
+        final PathsSnapshot patched = complete.get() ? snapshot.patch(removed, paths) : null;
+        if (patched == null || patched.size() > MAX_PATHS_SNAPSHOT_SIZE) {
+            pathsSnapshotOversized = true;
+            pathsSnapshot = null;
+        } else {
+            pathsSnapshot = patched;
+        }
+    }
+
+    /**
+     * Creates {@link ContentIterator} collecting paths relative to the base directory. Iteration is stopped when
+     * {@link #MAX_PATHS_SNAPSHOT_SIZE} is exceeded.
+     *
+     * @param baseDir project's base directory
+     * @param paths   collected paths
+     * @return content iterator
+     */
+    @NotNull
+    private static ContentIterator createPathsCollector(@NotNull final VirtualFile baseDir,
+                                                        @NotNull final List<String> paths) {
+        return new ContentIterator() {
+            @Override
+            public boolean processFile(VirtualFile file) {
+                ProgressManager.checkCanceled();
+                if (!file.equals(baseDir) && Utils.isUnder(file, baseDir)) {
+                    paths.add(Utils.getRelativePath(baseDir, file));
+                }
+                return paths.size() <= MAX_PATHS_SNAPSHOT_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Runs given task in the read action, restarting it whenever a write action is pending.
+     *
+     * @param task task to run
+     * @return task was completed, <code>false</code> if the project was disposed
+     */
+    private boolean runInReadAction(@NotNull Runnable task) {
+        while (!myProject.isDisposed()) {
+            if (ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(task)) {
+                return true;
+            }
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+        return false;
+    }
+
     /**
      * Returns component's name.
      *
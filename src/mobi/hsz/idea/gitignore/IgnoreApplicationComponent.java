@@ -24,8 +24,13 @@
 
 package mobi.hsz.idea.gitignore;
 
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ApplicationComponent;
+import com.intellij.openapi.fileTypes.FileTypeEvent;
+import com.intellij.openapi.fileTypes.FileTypeListener;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import mobi.hsz.idea.gitignore.indexing.IgnoreFileNameFilter;
 import mobi.hsz.idea.gitignore.settings.IgnoreSettings;
 import mobi.hsz.idea.gitignore.util.Utils;
 import org.jetbrains.annotations.NotNull;
@@ -64,6 +69,18 @@ public class IgnoreApplicationComponent implements ApplicationComponent {
         if (updated) {
             settings.setVersion(Utils.getVersion());
         }
+
+        final Application application = ApplicationManager.getApplication();
+        application.getMessageBus().connect(application).subscribe(FileTypeManager.TOPIC, new FileTypeListener() {
+            @Override
+            public void beforeFileTypesChanged(@NotNull FileTypeEvent event) {
+            }
+
+            @Override
+            public void fileTypesChanged(@NotNull FileTypeEvent event) {
+                IgnoreFileNameFilter.invalidate();
+            }
+        });
     }
 
     /** Component dispose method. */
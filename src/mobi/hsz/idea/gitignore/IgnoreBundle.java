@@ -108,6 +108,7 @@ public class IgnoreBundle {
 
     /** Contains information about enabled/disabled languages. */
     public static final CachedConcurrentMap<IgnoreFileType, Boolean> ENABLED_LANGUAGES = CachedConcurrentMap.create(
+            "IgnoreBundle.enabledLanguages",
             new CachedConcurrentMap.DataFetcher<IgnoreFileType, Boolean>() {
                 @Override
                 public Boolean fetch(@NotNull IgnoreFileType key) {
@@ -30,20 +30,21 @@ import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.project.ProjectManagerListener;
 import com.intellij.openapi.roots.ContentIterator;
 import com.intellij.openapi.startup.StartupManager;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.IndexableFileSet;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
 import mobi.hsz.idea.gitignore.indexing.ExternalIndexableSetContributor;
+import mobi.hsz.idea.gitignore.util.Utils;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static mobi.hsz.idea.gitignore.IgnoreManager.RefreshStatusesListener.REFRESH_STATUSES;
 
 /**
  * Project component that registers {@link IndexableFileSet} that counts into indexing files located outside of the
- * project.
+ * project. Set is registered only if there are any outer ignore files.
  *
  * @author Jakub Chrzanowski <jakub@hsz.mobi>
  * @since 2.0
@@ -57,11 +58,17 @@ public class IgnoreFileBasedIndexProjectHandler extends AbstractProjectComponent
     @NotNull
     private final FileBasedIndex index;
 
+    /** {@link IndexableFileSet} is registered in the {@link #index}. */
+    @NotNull
+    private final AtomicBoolean registered = new AtomicBoolean();
+
     /** Project listener to remove {@link IndexableFileSet} from the indexable sets. */
     @NotNull
     private final ProjectManagerListener projectListener = new ProjectManagerListener() {
         public void projectClosing(Project project) {
-            index.removeIndexableSet(IgnoreFileBasedIndexProjectHandler.this);
+            if (registered.compareAndSet(true, false)) {
+                index.removeIndexableSet(IgnoreFileBasedIndexProjectHandler.this);
+            }
         }
     };
 
@@ -80,12 +87,28 @@ public class IgnoreFileBasedIndexProjectHandler extends AbstractProjectComponent
 
         StartupManager.getInstance(myProject).registerPreStartupActivity(new Runnable() {
             public void run() {
-                index.registerIndexableSet(IgnoreFileBasedIndexProjectHandler.this, project);
+                register();
                 myProject.getMessageBus().syncPublisher(REFRESH_STATUSES).refresh();
+                myProject.getMessageBus().connect(myProject).subscribe(REFRESH_STATUSES,
+                        new IgnoreManager.RefreshStatusesListener() {
+                            @Override
+                            public void refresh() {
+                                register();
+                            }
+                        }
+                );
             }
         });
     }
 
+    /** Registers {@link IndexableFileSet} if it was not registered yet and there are outer files to index. */
+    private void register() {
+        if (!registered.get() && !ExternalIndexableSetContributor.getAdditionalFiles(myProject).isEmpty() &&
+                registered.compareAndSet(false, true)) {
+            index.registerIndexableSet(this, myProject);
+        }
+    }
+
     /** Initialize component and add {@link #projectListener}. */
     public void initComponent() {
         projectManager.addProjectManagerListener(myProject, projectListener);
@@ -104,31 +127,22 @@ public class IgnoreFileBasedIndexProjectHandler extends AbstractProjectComponent
      */
     @Override
     public boolean isInSet(@NotNull VirtualFile file) {
-        return file.getFileType() instanceof IgnoreFileType &&
-                ExternalIndexableSetContributor.getAdditionalFiles(myProject).contains(file);
+        return ExternalIndexableSetContributor.getAdditionalFiles(myProject).contains(file) &&
+                file.getFileType() instanceof IgnoreFileType;
     }
 
     /**
-     * Iterates over given file's children.
+     * Processes outer files located in the given file instead of visiting its children recursively.
      *
      * @param file     to iterate
      * @param iterator iterator
      */
     @Override
     public void iterateIndexableFilesIn(@NotNull VirtualFile file, @NotNull final ContentIterator iterator) {
-        VfsUtilCore.visitChildrenRecursively(file, new VirtualFileVisitor() {
-            @Override
-            public boolean visitFile(@NotNull VirtualFile file) {
-                if (!isInSet(file)) {
-                    return false;
-                }
-
-                if (!file.isDirectory()) {
-                    iterator.processFile(file);
-                }
-
-                return true;
+        for (VirtualFile outerFile : ExternalIndexableSetContributor.getAdditionalFiles(myProject).getFiles()) {
+            if (!outerFile.isDirectory() && Utils.isUnder(outerFile, file) && isInSet(outerFile)) {
+                iterator.processFile(outerFile);
             }
-        });
+        }
     }
 }
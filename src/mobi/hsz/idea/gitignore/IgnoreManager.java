@@ -35,12 +35,14 @@ import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.fileTypes.ExactFileNameMatcher;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Condition;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.FileStatusManager;
 import com.intellij.openapi.vcs.ProjectLevelVcsManager;
@@ -48,6 +50,7 @@ import com.intellij.openapi.vcs.VcsListener;
 import com.intellij.openapi.vcs.VcsRoot;
 import com.intellij.openapi.vfs.*;
 import com.intellij.util.Function;
+import com.intellij.util.Processor;
 import com.intellij.util.Time;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBusConnection;
@@ -57,22 +60,25 @@ import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
 import mobi.hsz.idea.gitignore.file.type.kind.GitExcludeFileType;
 import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
 import mobi.hsz.idea.gitignore.indexing.ExternalIndexableSetContributor;
+import mobi.hsz.idea.gitignore.indexing.IgnoreDirectoryIndex;
 import mobi.hsz.idea.gitignore.indexing.IgnoreEntryOccurrence;
 import mobi.hsz.idea.gitignore.indexing.IgnoreFilesIndex;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.settings.IgnoreSettings;
 import mobi.hsz.idea.gitignore.util.*;
 import mobi.hsz.idea.gitignore.util.exec.ExternalExec;
+import mobi.hsz.idea.gitignore.util.git.GitTrackedIgnoredFiles;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static mobi.hsz.idea.gitignore.IgnoreManager.RefreshTrackedIgnoredListener.TRACKED_IGNORED_REFRESH;
 import static mobi.hsz.idea.gitignore.IgnoreManager.TrackedIgnoredListener.TRACKED_IGNORED;
@@ -135,12 +141,16 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
 
     /** List of the new files that were not covered by {@link #confirmedIgnoredFiles} yet. */
     @NotNull
-    private final HashSet<VirtualFile> notConfirmedIgnoredFiles = new HashSet<VirtualFile>();
+    private final Set<VirtualFile> notConfirmedIgnoredFiles = ContainerUtil.newConcurrentSet();
+
+    /** Created, moved or copied files waiting for the incremental {@link #confirmedIgnoredFiles} refresh. */
+    @NotNull
+    private final Set<VirtualFile> changedFiles = ContainerUtil.newConcurrentSet();
 
     /** References to the indexed {@link IgnoreEntryOccurrence}. */
     @NotNull
     private final CachedConcurrentMap<IgnoreFileType, Collection<IgnoreEntryOccurrence>> cachedIgnoreFilesIndex =
-            CachedConcurrentMap.create(
+            CachedConcurrentMap.create("IgnoreManager.ignoreFilesIndex",
                     new CachedConcurrentMap.DataFetcher<IgnoreFileType, Collection<IgnoreEntryOccurrence>>() {
                         @Override
                         public Collection<IgnoreEntryOccurrence> fetch(@NotNull IgnoreFileType key) {
@@ -149,10 +159,25 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                     }
             );
 
+    /** Maximum number of directories kept in {@link #cachedDirectoryEntries}. */
+    private static final int DIRECTORY_ENTRIES_LIMIT = 2000;
+
+    /** Cache map to store {@link IgnoreDirectoryIndex} entries of the ignore files located in the directories. */
+    @NotNull
+    private final CachedConcurrentMap<VirtualFile, List<IgnoreEntryOccurrence>> cachedDirectoryEntries =
+            CachedConcurrentMap.create("IgnoreManager.directoryEntries", DIRECTORY_ENTRIES_LIMIT,
+                    new CachedConcurrentMap.DataFetcher<VirtualFile, List<IgnoreEntryOccurrence>>() {
+                        @Override
+                        public List<IgnoreEntryOccurrence> fetch(@NotNull VirtualFile key) {
+                            return IgnoreDirectoryIndex.getEntries(myProject, key);
+                        }
+                    }
+            );
+
     /** References to the indexed outer files. */
     @NotNull
     private final CachedConcurrentMap<IgnoreFileType, Collection<VirtualFile>> cachedOuterFiles =
-            CachedConcurrentMap.create(
+            CachedConcurrentMap.create("IgnoreManager.outerFiles",
                     new CachedConcurrentMap.DataFetcher<IgnoreFileType, Collection<VirtualFile>>() {
                         @Override
                         public Collection<VirtualFile> fetch(@NotNull IgnoreFileType key) {
@@ -163,10 +188,10 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
 
     @NotNull
     private final ExpiringMap<VirtualFile, Boolean> expiringStatusCache =
-            new ExpiringMap<VirtualFile, Boolean>(Time.SECOND);
+            new ExpiringMap<VirtualFile, Boolean>(Time.SECOND, "IgnoreManager.statusCache");
 
     /** {@link FileStatusManager#fileStatusesChanged()} method wrapped with {@link Debounced}. */
-    private final Debounced debouncedStatusesChanged = new Debounced(1000) {
+    private final Debounced debouncedStatusesChanged = new Debounced(1000, "IgnoreManager.statusesChanged") {
         @Override
         protected void task(@Nullable Object argument) {
             expiringStatusCache.clear();
@@ -175,7 +200,8 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
     };
 
     /** {@link FileStatusManager#fileStatusesChanged()} method wrapped with {@link Debounced}. */
-    private final Debounced<Boolean> debouncedRefreshTrackedIgnores = new Debounced<Boolean>(1000) {
+    private final Debounced<Boolean> debouncedRefreshTrackedIgnores =
+            new Debounced<Boolean>(1000, "IgnoreManager.refreshTrackedIgnores") {
         @Override
         protected void task(@Nullable Boolean refresh) {
             if (Boolean.TRUE.equals(refresh)) {
@@ -186,11 +212,24 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         }
     };
 
+    /**
+     * Incremental refresh of the {@link #confirmedIgnoredFiles} for {@link #changedFiles} wrapped with
+     * {@link Debounced}.
+     */
+    private final Debounced debouncedRefreshChangedFiles = new Debounced(1000, "IgnoreManager.refreshChangedFiles") {
+        @Override
+        protected void task(@Nullable Object argument) {
+            refreshTrackedIgnoredRunnable.refreshChanged();
+        }
+    };
+
     /** {@link DumbService.DumbModeListener#exitDumbMode()} method body wrapped with {@link Debounced}. */
-    private final Debounced<Boolean> debouncedExitDumbMode = new Debounced<Boolean>(3000) {
+    private final Debounced<Boolean> debouncedExitDumbMode =
+            new Debounced<Boolean>(3000, "IgnoreManager.exitDumbMode") {
         @Override
         protected void task(@Nullable Boolean refresh) {
             cachedIgnoreFilesIndex.clear();
+            cachedDirectoryEntries.clear();
             for (Map.Entry<String, IgnoreFileType> entry : FILE_TYPES_ASSOCIATION_QUEUE.entrySet()) {
                 associateFileType(entry.getKey(), entry.getValue());
             }
@@ -220,40 +259,58 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         @Override
         public void fileCreated(@NotNull VirtualFileEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-            debouncedRefreshTrackedIgnores.run(true);
+            handleChangedFile(event.getFile());
         }
 
         @Override
         public void fileDeleted(@NotNull VirtualFileEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-            debouncedRefreshTrackedIgnores.run(true);
+            confirmedIgnoredFiles.remove(event.getFile());
+            if (event.getFile().isDirectory()) {
+                handleChangedFile(event.getFile());
+            }
         }
 
         @Override
         public void fileMoved(@NotNull VirtualFileMoveEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-            debouncedRefreshTrackedIgnores.run(true);
+            handleChangedFile(event.getFile());
         }
 
         @Override
         public void fileCopied(@NotNull VirtualFileCopyEvent event) {
             handleEvent(event);
-            notConfirmedIgnoredFiles.add(event.getFile());
-            debouncedRefreshTrackedIgnores.run(true);
+            handleChangedFile(event.getFile());
+        }
+
+        /**
+         * Schedules the incremental refresh for the changed file. Changes of the ignore files are handled
+         * with the full refresh in {@link #handleEvent(VirtualFileEvent)}.
+         *
+         * @param file changed file
+         */
+        private void handleChangedFile(@NotNull VirtualFile file) {
+            if (file.getFileType() instanceof IgnoreFileType) {
+                return;
+            }
+            notConfirmedIgnoredFiles.add(file);
+            changedFiles.add(file);
+            debouncedRefreshChangedFiles.run();
         }
 
         private void handleEvent(@NotNull VirtualFileEvent event) {
             final FileType fileType = event.getFile().getFileType();
             if (fileType instanceof IgnoreFileType) {
                 cachedIgnoreFilesIndex.remove((IgnoreFileType) fileType);
+                cachedDirectoryEntries.clear();
                 cachedOuterFiles.remove((IgnoreFileType) fileType);
 
                 if (fileType instanceof GitExcludeFileType) {
                     cachedOuterFiles.remove(GitFileType.INSTANCE);
                 }
+                if (!Utils.isInProject(event.getFile(), myProject)) {
+                    ExternalIndexableSetContributor.invalidateCache(myProject);
+                }
                 expiringStatusCache.clear();
                 debouncedStatusesChanged.run();
                 debouncedRefreshTrackedIgnores.run();
@@ -275,6 +332,7 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                 case OUTER_IGNORE_RULES:
                 case LANGUAGES:
                     IgnoreBundle.ENABLED_LANGUAGES.clear();
+                    ExternalIndexableSetContributor.invalidateCache(myProject);
                     if (isEnabled()) {
                         if (working) {
                             debouncedStatusesChanged.run();
@@ -340,6 +398,27 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
      * @return file is ignored
      */
     public boolean isFileIgnored(@NotNull final VirtualFile file) {
+        if (!IgnoreStatistics.isEnabled()) {
+            return checkFileIgnored(file);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            return checkFileIgnored(file);
+        } finally {
+            IgnoreStatistics.recordIsFileIgnored(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Checks if file is ignored. Method body of {@link #isFileIgnored(VirtualFile)} which is measured with
+     * {@link IgnoreStatistics}. Parent directories are checked recursively with this method, so only the outermost
+     * call is recorded.
+     *
+     * @param file current file
+     * @return file is ignored
+     */
+    private boolean checkFileIgnored(@NotNull final VirtualFile file) {
         final Boolean cached = expiringStatusCache.get(file);
         final VirtualFile baseDir = myProject.getBaseDir();
         if (cached != null) {
@@ -354,6 +433,7 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         boolean ignored = false;
         boolean matched = false;
         int valuesCount = 0;
+        final boolean measure = IgnoreStatistics.isEnabled();
 
         for (IgnoreFileType fileType : FILE_TYPES) {
             ProgressManager.checkCanceled();
@@ -361,11 +441,13 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                 continue;
             }
 
-            final Collection<IgnoreEntryOccurrence> values = cachedIgnoreFilesIndex.get(fileType);
+            final Collection<IgnoreEntryOccurrence> values = fileType instanceof GitExcludeFileType ?
+                    cachedIgnoreFilesIndex.get(fileType) : getApplicableEntries(file, fileType, baseDir);
 
             valuesCount += values.size();
             for (IgnoreEntryOccurrence value : values) {
                 ProgressManager.checkCanceled();
+                final long entryStart = measure ? System.nanoTime() : 0;
                 String relativePath;
                 final VirtualFile entryFile = value.getFile();
                 if (entryFile == null) {
@@ -402,13 +484,18 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                     relativePath += "/";
                 }
 
-                for (Pair<String, Boolean> item : value.getItems()) {
-                    final Pattern pattern = Glob.getPattern(item.first);
-                    if (matcher.match(pattern, relativePath)) {
-                        ignored = !item.second;
+                final IgnoreRule[] items = value.getItems();
+                for (int i = items.length - 1; i >= 0; i--) {
+                    final IgnoreRule item = items[i];
+                    if (item.match(relativePath)) {
+                        ignored = !item.isNegated();
                         matched = true;
+                        break;
                     }
                 }
+                if (measure) {
+                    IgnoreStatistics.recordIgnoreFile(entryFile.getPath(), System.nanoTime() - entryStart);
+                }
             }
         }
 
@@ -421,7 +508,7 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
                         return expiringStatusCache.set(file, false);
                     }
                 }
-                return expiringStatusCache.set(file, isFileIgnored(directory));
+                return expiringStatusCache.set(file, checkFileIgnored(directory));
             }
         }
 
@@ -432,6 +519,61 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         return expiringStatusCache.set(file, ignored);
     }
 
+    /**
+     * Collects {@link IgnoreEntryOccurrence} of the given type that may affect passed file: outer files first and
+     * then ignore files located in the file's ancestors, from the VCS root, content root or the project's base
+     * directory - whichever is reached first - down to the file's parent, so the deeper ignore files are checked last.
+     * Files outside of these roots are checked only with their parent directory.
+     *
+     * @param file     current file
+     * @param fileType ignore file type
+     * @param baseDir  project's base directory
+     * @return applicable entries
+     */
+    @NotNull
+    private List<IgnoreEntryOccurrence> getApplicableEntries(@NotNull VirtualFile file,
+                                                             @NotNull IgnoreFileType fileType,
+                                                             @NotNull VirtualFile baseDir) {
+        final List<IgnoreEntryOccurrence> result = ContainerUtil.newArrayList();
+
+        for (VirtualFile outerFile : cachedOuterFiles.get(fileType)) {
+            final VirtualFile parent = outerFile != null ? outerFile.getParent() : null;
+            if (parent == null || Utils.isInProject(outerFile, myProject)) {
+                continue;
+            }
+            for (IgnoreEntryOccurrence entry : cachedDirectoryEntries.get(parent)) {
+                if (outerFile.equals(entry.getFile()) && fileType.equals(outerFile.getFileType())) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        final VirtualFile vcsRoot = getVcsRootFor(file);
+        final VirtualFile contentRoot = ProjectRootManager.getInstance(myProject).getFileIndex()
+                .getContentRootForFile(file, false);
+        final VirtualFile top = vcsRoot != null ? vcsRoot : contentRoot != null ? contentRoot : baseDir;
+        final boolean outside = !Utils.isUnder(file, top);
+
+        final List<VirtualFile> ancestors = ContainerUtil.newArrayList();
+        for (VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent()) {
+            ancestors.add(parent);
+            if (outside || parent.equals(top) || parent.equals(baseDir)) {
+                break;
+            }
+        }
+
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            for (IgnoreEntryOccurrence entry : cachedDirectoryEntries.get(ancestors.get(i))) {
+                final VirtualFile entryFile = entry.getFile();
+                if (entryFile != null && fileType.equals(entryFile.getFileType())) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Finds {@link VirtualFile} directory of {@link VcsRoot} that contains passed file.
      *
@@ -449,6 +591,23 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
         return vcsRoot != null ? vcsRoot.getPath() : null;
     }
 
+    /**
+     * Finds Git {@link VcsRoot} that contains passed file.
+     *
+     * @param file to check
+     * @return Git VCS Root for given file
+     */
+    @Nullable
+    private VcsRoot getGitVcsRootObjectFor(@NotNull final VirtualFile file) {
+        return ContainerUtil.find(ContainerUtil.reverse(vcsRoots), new Condition<VcsRoot>() {
+            @Override
+            public boolean value(VcsRoot vcsRoot) {
+                return vcsRoot.getVcs() instanceof GitVcs && vcsRoot.getPath() != null &&
+                        Utils.isUnder(file, vcsRoot.getPath());
+            }
+        });
+    }
+
     /**
      * Associates given file with proper {@link IgnoreFileType}.
      *
@@ -568,6 +727,7 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
 
     /** Disable manager. */
     private void disable() {
+        refreshTrackedIgnoredRunnable.cancel();
         ExternalIndexableSetContributor.invalidateCache(myProject);
         virtualFileManager.removeVirtualFileListener(virtualFileListener);
         settings.removeListener(settingsListener);
@@ -612,6 +772,9 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
 
     /** {@link Runnable} implementation to rebuild {@link #confirmedIgnoredFiles}. */
     class RefreshTrackedIgnoredRunnable implements Runnable, IgnoreManager.RefreshTrackedIgnoredListener {
+        /** Indicator of the currently running refresh, cancelled when a new refresh starts. */
+        private final AtomicReference<ProgressIndicator> currentIndicator = new AtomicReference<ProgressIndicator>();
+
         /** Default {@link Runnable} run method that invokes rebuilding with bus event propagating. */
         @Override
         public void run() {
@@ -624,8 +787,17 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             this.run(true);
         }
 
+        /** Cancels currently running rebuild. */
+        public void cancel() {
+            final ProgressIndicator indicator = currentIndicator.getAndSet(null);
+            if (indicator != null) {
+                indicator.cancel();
+            }
+        }
+
         /**
-         * Rebuilds {@link #confirmedIgnoredFiles} map.
+         * Rebuilds {@link #confirmedIgnoredFiles} map. Repositories are processed concurrently and the rebuild
+         * is abandoned if a newer one has been started in the meantime.
          *
          * @param silent propagate {@link IgnoreManager.TrackedIgnoredListener#TRACKED_IGNORED} event
          */
@@ -633,29 +805,145 @@ public class IgnoreManager extends AbstractProjectComponent implements DumbAware
             if (!settings.isInformTrackedIgnored()) {
                 return;
             }
+            changedFiles.clear();
 
-            final ConcurrentMap<VirtualFile, VcsRoot> result = ContainerUtil.newConcurrentMap();
-            for (VcsRoot vcsRoot : vcsRoots) {
-                if (!(vcsRoot.getVcs() instanceof GitVcs) || vcsRoot.getPath() == null) {
-                    continue;
+            final ProgressIndicator indicator = new EmptyProgressIndicator();
+            final ProgressIndicator previous = currentIndicator.getAndSet(indicator);
+            if (previous != null) {
+                previous.cancel();
+            }
+
+            final List<VcsRoot> roots = ContainerUtil.filter(vcsRoots, new Condition<VcsRoot>() {
+                @Override
+                public boolean value(VcsRoot vcsRoot) {
+                    return vcsRoot.getVcs() instanceof GitVcs && vcsRoot.getPath() != null;
                 }
-                final VirtualFile root = vcsRoot.getPath();
-                for (String path : ExternalExec.getIgnoredFiles(vcsRoot)) {
-                    final VirtualFile file = root.findFileByRelativePath(path);
-                    if (file != null) {
-                        result.put(file, vcsRoot);
+            });
+            final ConcurrentMap<VirtualFile, VcsRoot> result = ContainerUtil.newConcurrentMap();
+            final Set<VcsRoot> refreshedRoots = ContainerUtil.newConcurrentSet();
+            final boolean completed = ExternalExec.processConcurrently(roots, indicator, new Processor<VcsRoot>() {
+                @Override
+                public boolean process(final VcsRoot vcsRoot) {
+                    final VirtualFile root = vcsRoot.getPath();
+                    if (root == null) {
+                        return true;
                     }
+
+                    final Map<VirtualFile, VcsRoot> files = ContainerUtil.newHashMap();
+                    final Processor<String> processor = new Processor<String>() {
+                        @Override
+                        public boolean process(String path) {
+                            final VirtualFile file = root.findFileByRelativePath(path);
+                            if (file != null) {
+                                files.put(file, vcsRoot);
+                            }
+                            return !indicator.isCanceled() && !myProject.isDisposed();
+                        }
+                    };
+
+                    final List<String> paths = GitTrackedIgnoredFiles.getIgnoredFiles(myProject, root);
+                    if (paths == null) {
+                        if (!ExternalExec.processIgnoredFiles(vcsRoot, processor, indicator)) {
+                            return false;
+                        }
+                    } else {
+                        ContainerUtil.process(paths, processor);
+                    }
+                    result.putAll(files);
+                    refreshedRoots.add(vcsRoot);
+                    return true;
                 }
+            });
+            currentIndicator.compareAndSet(indicator, null);
+            if (!completed) {
+                return;
             }
 
             if (!silent && !result.isEmpty()) {
                 myProject.getMessageBus().syncPublisher(TRACKED_IGNORED).handleFiles(result);
             }
+
+            // Keep previous entries of the repositories that failed instead of dropping them
+            for (Map.Entry<VirtualFile, VcsRoot> entry : confirmedIgnoredFiles.entrySet()) {
+                if (!refreshedRoots.contains(entry.getValue())) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
             confirmedIgnoredFiles.clear();
             confirmedIgnoredFiles.putAll(result);
             notConfirmedIgnoredFiles.clear();
             debouncedStatusesChanged.run();
+            updateProjectViews();
+        }
+
+        /**
+         * Checks only {@link #changedFiles} and merges the result into {@link #confirmedIgnoredFiles} as a delta.
+         * Tracked files of the changed directories are checked as well. Entries under deleted directories are
+         * dropped here, once per debounced pass.
+         */
+        public void refreshChanged() {
+            if (!settings.isInformTrackedIgnored()) {
+                return;
+            }
+
+            final List<VirtualFile> files = ContainerUtil.newArrayList(changedFiles);
+            changedFiles.removeAll(files);
+
+            final Map<VcsRoot, List<VirtualFile>> filesByRoot = ContainerUtil.newHashMap();
+            for (VirtualFile file : files) {
+                final VcsRoot vcsRoot = getGitVcsRootObjectFor(file);
+                if (file.isValid() && vcsRoot != null) {
+                    ContainerUtil.getOrCreate(filesByRoot, vcsRoot, new ArrayList<VirtualFile>()).add(file);
+                }
+            }
+
+            final ConcurrentMap<VirtualFile, VcsRoot> result = ContainerUtil.newConcurrentMap();
+            for (final Map.Entry<VcsRoot, List<VirtualFile>> entry : filesByRoot.entrySet()) {
+                final VirtualFile root = entry.getKey().getPath();
+                if (root == null) {
+                    continue;
+                }
+
+                final List<String> paths = ContainerUtil.newArrayList();
+                for (VirtualFile file : entry.getValue()) {
+                    paths.add(Utils.getRelativePath(root, file));
+                }
+
+                final Processor<String> processor = new Processor<String>() {
+                    @Override
+                    public boolean process(String path) {
+                        final VirtualFile file = root.findFileByRelativePath(path);
+                        if (file != null) {
+                            result.put(file, entry.getKey());
+                        }
+                        return !myProject.isDisposed();
+                    }
+                };
+
+                final List<String> ignored = GitTrackedIgnoredFiles.getIgnoredFiles(myProject, root, paths);
+                if (ignored == null) {
+                    ExternalExec.processIgnoredFiles(entry.getKey(), paths, processor, null);
+                } else {
+                    ContainerUtil.process(ignored, processor);
+                }
+            }
+
+            for (VirtualFile file : confirmedIgnoredFiles.keySet()) {
+                for (VirtualFile changed : files) {
+                    if (Utils.isUnder(file, changed)) {
+                        confirmedIgnoredFiles.remove(file);
+                        break;
+                    }
+                }
+            }
+            confirmedIgnoredFiles.putAll(result);
+            notConfirmedIgnoredFiles.removeAll(files);
+            debouncedStatusesChanged.run();
+            updateProjectViews();
+        }
 
+        /** Queues update of the project view panes. */
+        private void updateProjectViews() {
             for (AbstractProjectViewPane pane : Extensions.getExtensions(AbstractProjectViewPane.EP_NAME, myProject)) {
                 if (pane.getTreeBuilder() != null) {
                     pane.getTreeBuilder().queueUpdate();
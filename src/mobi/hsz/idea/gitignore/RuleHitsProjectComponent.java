@@ -0,0 +1,662 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import mobi.hsz.idea.gitignore.file.type.kind.GitExcludeFileType;
+import mobi.hsz.idea.gitignore.indexing.FileNameTrigramIndex;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
+import mobi.hsz.idea.gitignore.util.MatcherUtil;
+import mobi.hsz.idea.gitignore.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the number of known files matched by each rule of the ignore files. Counters are initialized on a pooled
+ * thread from the {@link FileNameTrigramIndex} and {@link FilenameIndex} - lookup stops at the first matched file,
+ * so the counter is a lower bound. Later counters are updated with the files reported by the {@link BulkFileListener}
+ * and the rule is counted again from the indexes only when its counter drops to zero or a whole directory is removed
+ * or added. Neither checking if the rule is used nor handling the changes requires walking the files tree or keeping
+ * the paths in memory.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class RuleHitsProjectComponent extends AbstractProjectComponent {
+    /** Characters that have a special meaning in the glob. */
+    private static final String GLOB_SPECIAL_CHARS = "*?[]\\{}";
+
+    /** Counters mapped with the ignore files. */
+    @NotNull
+    private final ConcurrentMap<VirtualFile, Hits> cacheMap = ContainerUtil.newConcurrentMap();
+
+    /** {@link ProjectFileIndex} instance. */
+    @NotNull
+    private final ProjectFileIndex projectFileIndex;
+
+    /** {@link MessageBusConnection} instance. */
+    private MessageBusConnection messageBus;
+
+    /** {@link BulkFileListener} instance to update counters when files are created, removed, moved or renamed. */
+    @NotNull
+    private final BulkFileListener bulkFileListener = new BulkFileListener() {
+        @Override
+        public void before(@NotNull List<? extends VFileEvent> events) {
+            if (cacheMap.isEmpty()) {
+                return;
+            }
+
+            for (VFileEvent event : events) {
+                final VirtualFile file = event.getFile();
+                if (file == null) {
+                    continue;
+                }
+
+                if (event instanceof VFileDeleteEvent) {
+                    invalidate(file);
+                    update(file, -1);
+                } else if (event instanceof VFileMoveEvent || isRename(event)) {
+                    update(file, -1);
+                }
+            }
+        }
+
+        @Override
+        public void after(@NotNull List<? extends VFileEvent> events) {
+            if (cacheMap.isEmpty()) {
+                return;
+            }
+
+            for (VFileEvent event : events) {
+                VirtualFile file = null;
+                if (event instanceof VFileCreateEvent || event instanceof VFileMoveEvent || isRename(event)) {
+                    file = event.getFile();
+                } else if (event instanceof VFileCopyEvent) {
+                    final VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+                    file = copyEvent.getNewParent().findChild(copyEvent.getNewChildName());
+                }
+
+                if (file != null && file.isValid()) {
+                    update(file, 1);
+                }
+            }
+
+            for (Hits hits : cacheMap.values()) {
+                if (hits.isPending()) {
+                    schedule(hits);
+                }
+            }
+        }
+    };
+
+    /**
+     * Returns {@link RuleHitsProjectComponent} service instance.
+     *
+     * @param project current project
+     * @return {@link RuleHitsProjectComponent instance}
+     */
+    public static RuleHitsProjectComponent getInstance(@NotNull final Project project) {
+        return project.getComponent(RuleHitsProjectComponent.class);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param project current project
+     */
+    protected RuleHitsProjectComponent(@NotNull final Project project) {
+        super(project);
+        projectFileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+    }
+
+    /** Subscribes {@link #bulkFileListener} when project is opened. */
+    @Override
+    public void projectOpened() {
+        messageBus = myProject.getMessageBus().connect();
+        messageBus.subscribe(VirtualFileManager.VFS_CHANGES, bulkFileListener);
+    }
+
+    /** Disconnects {@link #bulkFileListener} when project is closed. */
+    @Override
+    public void projectClosed() {
+        if (messageBus != null) {
+            messageBus.disconnect();
+            messageBus = null;
+        }
+        cacheMap.clear();
+    }
+
+    /**
+     * Prepares counters for the given rules of the ignore file. Counters of the rules that are no longer present
+     * in the file are dropped and missing rules are counted in background.
+     *
+     * @param ignoreFile ignore file
+     * @param rules      current rules of the ignore file
+     * @return ignore file is supported, so {@link #isUsed} will answer for its rules
+     */
+    public boolean prepare(@NotNull VirtualFile ignoreFile, @NotNull Collection<IgnoreRule> rules) {
+        final VirtualFile directory = ignoreFile.getParent();
+        if (directory == null || ignoreFile.getFileType() instanceof GitExcludeFileType ||
+                !Utils.isInProject(ignoreFile, myProject)) {
+            return false;
+        }
+
+        Hits hits = cacheMap.get(ignoreFile);
+        if (hits == null || !hits.directory.equals(directory)) {
+            hits = new Hits(ignoreFile, directory);
+            cacheMap.put(ignoreFile, hits);
+        }
+
+        final Set<IgnoreRule> requested = ContainerUtil.newHashSet(rules);
+        hits.requested = requested;
+        hits.counters.keySet().retainAll(requested);
+        hits.dirty.retainAll(requested);
+        if (hits.isPending()) {
+            schedule(hits);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if any file is matched by the given rule. Rule has to be passed to {@link #prepare} before.
+     *
+     * @param ignoreFile ignore file
+     * @param rule       rule to check
+     * @return rule matches at least one file or <code>null</code> if rule is not counted yet
+     */
+    @Nullable
+    public Boolean isUsed(@NotNull VirtualFile ignoreFile, @NotNull IgnoreRule rule) {
+        final Hits hits = cacheMap.get(ignoreFile);
+        final AtomicInteger counter = hits != null ? hits.counters.get(rule) : null;
+        return counter != null ? counter.get() > 0 : null;
+    }
+
+    /**
+     * Removes counters of the ignore files located in the given file or that are the given file.
+     *
+     * @param file removed file
+     */
+    private void invalidate(@NotNull VirtualFile file) {
+        for (VirtualFile ignoreFile : cacheMap.keySet()) {
+            if (Utils.isUnder(ignoreFile, file)) {
+                cacheMap.remove(ignoreFile);
+            }
+        }
+    }
+
+    /**
+     * Updates counters of every ignore file with the added or removed file. Directory contents are not visited -
+     * rules which counters could be affected by the directory contents are marked to be counted again.
+     *
+     * @param file  added or removed file
+     * @param delta value to add to the matched rules' counters
+     */
+    private void update(@NotNull VirtualFile file, int delta) {
+        for (Hits hits : cacheMap.values()) {
+            final String path = getRelativePath(hits.directory, file);
+            if (path == null || projectFileIndex.isExcluded(file) || isSkipped(hits.directory, file)) {
+                continue;
+            }
+
+            hits.update(path, delta);
+            if (file.isDirectory() && (delta < 0 || file.getChildren().length > 0)) {
+                hits.invalidate(delta < 0);
+            }
+        }
+    }
+
+    /**
+     * Schedules counting missing and invalidated rules of the given ignore file on a pooled thread. Every rule is
+     * counted in a separate read action which yields to the write actions. Inspections of the ignore file are
+     * restarted when done.
+     *
+     * @param hits ignore file counters
+     */
+    private void schedule(@NotNull final Hits hits) {
+        if (ApplicationManager.getApplication().isUnitTestMode()) {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                @Override
+                public void run() {
+                    IgnoreRule rule;
+                    while ((rule = hits.getPendingRule()) != null) {
+                        hits.counters.put(rule, new AtomicInteger(count(hits.directory, rule)));
+                        hits.dirty.remove(rule);
+                    }
+                }
+            });
+            return;
+        }
+        if (!hits.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                boolean counted = false;
+                try {
+                    IgnoreRule rule;
+                    while (isActive(hits) && (rule = hits.getPendingRule()) != null) {
+                        DumbService.getInstance(myProject).waitForSmartMode();
+                        final IgnoreRule current = rule;
+                        final boolean finished = ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (!isActive(hits) || DumbService.isDumb(myProject)) {
+                                            return;
+                                        }
+                                        try {
+                                            final int count = count(hits.directory, current);
+                                            if (hits.requested.contains(current)) {
+                                                hits.counters.put(current, new AtomicInteger(count));
+                                            }
+                                            hits.dirty.remove(current);
+                                        } catch (IndexNotReadyException ignored) {
+                                        }
+                                    }
+                                }
+                        );
+                        if (finished) {
+                            counted = true;
+                        } else {
+                            ProgressIndicatorUtils.yieldToPendingWriteActions();
+                        }
+                    }
+                } finally {
+                    hits.scheduled.set(false);
+                }
+
+                if (!isActive(hits)) {
+                    return;
+                }
+                if (counted) {
+                    restartInspections(hits.ignoreFile);
+                }
+                if (hits.isPending()) {
+                    schedule(hits);
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts files matched by the given rule using the indexes. Counting stops at the first matched file. Entries
+     * like <code>dir/*</code> are used if the directory exists, even if it is empty. Has to be called in a read
+     * action.
+     *
+     * @param directory directory containing ignore file
+     * @param rule      rule to count
+     * @return <code>1</code> if any file matches the rule, <code>0</code> otherwise
+     */
+    private int count(@NotNull VirtualFile directory, @NotNull IgnoreRule rule) {
+        final int result = countMatches(directory, rule);
+        final String glob = rule.getGlob();
+        if (result == 0 && glob.length() > 2 && glob.endsWith("/*")) {
+            final String parent = glob.substring(0, glob.length() - 2);
+            return count(directory, IgnoreRule.create(parent, IgnoreBundle.Syntax.GLOB, false));
+        }
+        return result;
+    }
+
+    /**
+     * Counts files matched by the given rule using the indexes. Counting stops at the first matched file. Excluded
+     * roots are not indexed, so they are matched directly.
+     *
+     * @param directory directory containing ignore file
+     * @param rule      rule to count
+     * @return <code>1</code> if any file matches the rule, <code>0</code> otherwise
+     */
+    private int countMatches(@NotNull final VirtualFile directory, @NotNull final IgnoreRule rule) {
+        for (Module module : ModuleManager.getInstance(myProject).getModules()) {
+            for (VirtualFile root : ModuleRootManager.getInstance(module).getExcludeRoots()) {
+                final String path = getRelativePath(directory, root);
+                if (path != null && rule.match(path)) {
+                    return 1;
+                }
+            }
+        }
+
+        final int[] result = new int[1];
+        processCandidates(directory, rule, new Processor<VirtualFile>() {
+            @Override
+            public boolean process(VirtualFile file) {
+                ProgressManager.checkCanceled();
+                final String path = getRelativePath(directory, file);
+                if (path != null && rule.match(path)) {
+                    result[0]++;
+                    return false;
+                }
+                return true;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Processes indexed files which may be matched by the given rule. Literal paths are resolved directly, other rules
+     * are looked up with the literal part of the name and limited to the literal leading directory of the anchored
+     * rule.
+     *
+     * @param directory directory containing ignore file
+     * @param rule      rule to process
+     * @param processor files processor
+     */
+    private void processCandidates(@NotNull VirtualFile directory, @NotNull IgnoreRule rule,
+                                   @NotNull Processor<VirtualFile> processor) {
+        if (rule.getKind() == IgnoreRule.Kind.PATH) {
+            final VirtualFile file = directory.findFileByRelativePath(rule.getValue());
+            if (file != null) {
+                processor.process(file);
+            }
+            return;
+        }
+
+        final String prefix = getLiteralPrefix(rule);
+        final VirtualFile base = prefix.isEmpty() ? directory : directory.findFileByRelativePath(prefix);
+        if (base == null || !base.isDirectory()) {
+            return;
+        }
+
+        final GlobalSearchScope scope = GlobalSearchScopesCore.directoryScope(myProject, base, true);
+        final String key = getNameKey(rule);
+        if (key.length() >= FileNameTrigramIndex.TRIGRAM_LENGTH) {
+            FileNameTrigramIndex.processFiles(key, scope, processor);
+            return;
+        }
+
+        for (String name : FilenameIndex.getAllFilenames(myProject)) {
+            ProgressManager.checkCanceled();
+            if (!name.contains(key)) {
+                continue;
+            }
+            for (VirtualFile file : FilenameIndex.getVirtualFilesByName(myProject, name, scope)) {
+                if (!processor.process(file)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns literal text that has to be contained in the name of the file matched by the given rule.
+     *
+     * @param rule ignore rule
+     * @return literal name part or an empty string
+     */
+    @NotNull
+    private static String getNameKey(@NotNull IgnoreRule rule) {
+        if (rule.getKind() != IgnoreRule.Kind.REGEX) {
+            return rule.getValue();
+        }
+
+        final String glob = StringUtil.trimEnd(rule.getGlob(), "/");
+        String result = "";
+        for (String part : MatcherUtil.getParts(glob.substring(glob.lastIndexOf('/') + 1))) {
+            if (part.length() > result.length()) {
+                result = part;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns literal leading directories of the anchored rule, i.e. <code>build</code> for <code>/build/*.o</code>.
+     *
+     * @param rule ignore rule
+     * @return relative path of the leading directory or an empty string
+     */
+    @NotNull
+    private static String getLiteralPrefix(@NotNull IgnoreRule rule) {
+        if (!rule.isAnchored()) {
+            return "";
+        }
+
+        final List<String> segments = StringUtil.split(StringUtil.trimEnd(rule.getGlob(), "/"), "/");
+        final List<String> result = ContainerUtil.newArrayList();
+        for (String segment : segments.subList(0, Math.max(0, segments.size() - 1))) {
+            if (StringUtil.containsAnyChar(segment, GLOB_SPECIAL_CHARS)) {
+                break;
+            }
+            result.add(segment);
+        }
+        return StringUtil.join(result, "/");
+    }
+
+    /**
+     * Restarts inspections of the given ignore file, so entries are checked with the counted rules.
+     *
+     * @param ignoreFile ignore file
+     */
+    private void restartInspections(@NotNull final VirtualFile ignoreFile) {
+        final PsiFile file = ApplicationManager.getApplication().runReadAction(new Computable<PsiFile>() {
+            @Override
+            public PsiFile compute() {
+                return myProject.isDisposed() || !ignoreFile.isValid() ? null :
+                        PsiManager.getInstance(myProject).findFile(ignoreFile);
+            }
+        });
+        if (file != null) {
+            DaemonCodeAnalyzer.getInstance(myProject).restart(file);
+        }
+    }
+
+    /**
+     * Checks if counters of the ignore file are still in use.
+     *
+     * @param hits ignore file counters
+     * @return counters are in use
+     */
+    private boolean isActive(@NotNull Hits hits) {
+        return !myProject.isDisposed() && hits.directory.isValid() && cacheMap.get(hits.ignoreFile) == hits;
+    }
+
+    /**
+     * Checks if file is located in the excluded or ignored directory which is not indexed.
+     *
+     * @param directory directory containing ignore file
+     * @param file      file to check
+     * @return file is skipped
+     */
+    private boolean isSkipped(@NotNull VirtualFile directory, @NotNull VirtualFile file) {
+        final FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+        for (VirtualFile parent = file.getParent(); parent != null && !parent.equals(directory);
+             parent = parent.getParent()) {
+            if (fileTypeManager.isFileIgnored(parent) || projectFileIndex.isExcluded(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns path relative to the directory containing ignore file.
+     *
+     * @param directory directory containing ignore file
+     * @param file      file to check
+     * @return relative path with trailing slash for directories or <code>null</code> if file is not located below
+     */
+    @Nullable
+    private static String getRelativePath(@NotNull VirtualFile directory, @NotNull VirtualFile file) {
+        if (!VfsUtilCore.isAncestor(directory, file, true)) {
+            return null;
+        }
+        return Utils.getRelativePath(directory, file);
+    }
+
+    /**
+     * Checks if event renames a file.
+     *
+     * @param event VFS event
+     * @return event is a rename
+     */
+    private static boolean isRename(@NotNull VFileEvent event) {
+        return event instanceof VFilePropertyChangeEvent &&
+                VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+
+    /**
+     * Returns component's name.
+     *
+     * @return component's name
+     */
+    @NotNull
+    @Override
+    public String getComponentName() {
+        return "RuleHitsProjectComponent";
+    }
+
+    /** Counters of the single ignore file. */
+    private static class Hits {
+        /** Ignore file. */
+        @NotNull
+        private final VirtualFile ignoreFile;
+
+        /** Directory containing ignore file. */
+        @NotNull
+        private final VirtualFile directory;
+
+        /** Number of known matched files mapped with the rules. */
+        @NotNull
+        private final ConcurrentMap<IgnoreRule, AtomicInteger> counters = ContainerUtil.newConcurrentMap();
+
+        /** Rules which counters have to be counted again. Current counters are used until then. */
+        @NotNull
+        private final Set<IgnoreRule> dirty = ContainerUtil.newConcurrentSet();
+
+        /** Background task is scheduled. */
+        @NotNull
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /** Rules requested with the last {@link #prepare} call. */
+        @NotNull
+        private volatile Set<IgnoreRule> requested = Collections.emptySet();
+
+        /**
+         * Constructor.
+         *
+         * @param ignoreFile ignore file
+         * @param directory  directory containing ignore file
+         */
+        private Hits(@NotNull VirtualFile ignoreFile, @NotNull VirtualFile directory) {
+            this.ignoreFile = ignoreFile;
+            this.directory = directory;
+        }
+
+        /**
+         * Checks if any requested rule is not counted or has to be counted again.
+         *
+         * @return background work is required
+         */
+        private boolean isPending() {
+            return getPendingRule() != null;
+        }
+
+        /**
+         * Returns requested rule which is not counted or has to be counted again.
+         *
+         * @return rule or <code>null</code> if all rules are counted
+         */
+        @Nullable
+        private IgnoreRule getPendingRule() {
+            for (IgnoreRule rule : requested) {
+                if (!counters.containsKey(rule) || dirty.contains(rule)) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Updates counters of the rules matching given path. Counters hold only the number of the known files, so
+         * instead of dropping to zero the rule is counted again and reported as used until then.
+         *
+         * @param path  added or removed relative path
+         * @param delta value to add to the matched rules' counters
+         */
+        private void update(@NotNull String path, int delta) {
+            for (Map.Entry<IgnoreRule, AtomicInteger> counter : counters.entrySet()) {
+                if (!counter.getKey().match(path)) {
+                    continue;
+                }
+                if (delta < 0 && counter.getValue().get() <= 1) {
+                    dirty.add(counter.getKey());
+                } else {
+                    counter.getValue().addAndGet(delta);
+                }
+            }
+        }
+
+        /**
+         * Marks used or unused rules to be counted again.
+         *
+         * @param used mark used rules
+         */
+        private void invalidate(boolean used) {
+            for (Map.Entry<IgnoreRule, AtomicInteger> counter : counters.entrySet()) {
+                if (counter.getValue().get() > 0 == used) {
+                    dirty.add(counter.getKey());
+                }
+            }
+        }
+    }
+}
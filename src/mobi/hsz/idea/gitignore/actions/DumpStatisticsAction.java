@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.actions;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.LightVirtualFile;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.util.Icons;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
+import mobi.hsz.idea.gitignore.util.Utils;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * Action that dumps {@link IgnoreStatistics} as JSON to the editor and clipboard, so it can be attached to the bug
+ * reports or compared between plugin versions. Statistics recording is enabled with the first dump if it was not
+ * enabled on startup.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class DumpStatisticsAction extends AnAction implements DumbAware {
+    /** Name of the file with dumped statistics. */
+    @NonNls
+    private static final String FILENAME = "ignore-statistics.json";
+
+    /** Builds a new instance of {@link DumpStatisticsAction}. */
+    public DumpStatisticsAction() {
+        super(
+                IgnoreBundle.message("action.dumpStatistics"),
+                IgnoreBundle.message("action.dumpStatistics.description"),
+                Icons.IGNORE
+        );
+    }
+
+    /**
+     * Opens collected statistics in the editor and copies them to the clipboard.
+     *
+     * @param e action event
+     */
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+
+        final String json = IgnoreStatistics.toJson();
+        IgnoreStatistics.setEnabled(true);
+        CopyPasteManager.getInstance().setContents(new StringSelection(json));
+        Utils.openFile(project, new LightVirtualFile(FILENAME, PlainTextFileType.INSTANCE, json));
+    }
+
+    /**
+     * Shows action only if project is available.
+     *
+     * @param e action event
+     */
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+}
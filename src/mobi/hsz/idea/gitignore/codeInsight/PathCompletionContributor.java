@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.codeInsight;
+
+import com.intellij.codeInsight.completion.*;
+import com.intellij.codeInsight.completion.impl.CamelHumpMatcher;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.patterns.StandardPatterns;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ProcessingContext;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.FilesIndexCacheProjectComponent;
+import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
+import mobi.hsz.idea.gitignore.psi.IgnoreFile;
+import mobi.hsz.idea.gitignore.util.Constants;
+import mobi.hsz.idea.gitignore.util.PathsSnapshot;
+import mobi.hsz.idea.gitignore.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class provides completion of the nested paths and <code>**&#47;name</code> entries using {@link PathsSnapshot}.
+ * Children of the current directory are completed with the file references.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class PathCompletionContributor extends CompletionContributor {
+    /** Maximum number of completed paths. */
+    private static final int LIMIT = 100;
+
+    /** Prefix of the entries matching files in any directory. */
+    private static final String ANY_DIRECTORY = Constants.DOUBLESTAR + "/";
+
+    /** Constructor. */
+    public PathCompletionContributor() {
+        extend(CompletionType.BASIC,
+                StandardPatterns.instanceOf(PsiElement.class),
+                new CompletionProvider<CompletionParameters>() {
+                    @Override
+                    protected void addCompletions(@NotNull CompletionParameters parameters, ProcessingContext context,
+                                                  @NotNull CompletionResultSet result) {
+                        final IgnoreEntry entry = PsiTreeUtil.getParentOfType(parameters.getPosition(),
+                                IgnoreEntry.class);
+                        final PsiFile file = parameters.getOriginalFile();
+                        if (entry == null || !(file instanceof IgnoreFile) || ((IgnoreFile) file).isOuter()) {
+                            return;
+                        }
+
+                        final PathsSnapshot snapshot = FilesIndexCacheProjectComponent
+                                .getInstance(file.getProject()).getPathsSnapshot();
+                        if (snapshot == null) {
+                            return;
+                        }
+
+                        final int length = parameters.getOffset() - entry.getTextRange().getStartOffset();
+                        if (length <= 0 || length > entry.getTextLength()) {
+                            return;
+                        }
+
+                        final String text = entry.getText().substring(0, length);
+                        final String rest = StringUtil.trimStart(StringUtil.trimStart(text, "!"), "/");
+                        final String lead = text.substring(0, text.length() - rest.length());
+
+                        final List<String> variants;
+                        final PrefixMatcher matcher;
+                        if (rest.startsWith(ANY_DIRECTORY)) {
+                            variants = completeName(snapshot, rest.substring(ANY_DIRECTORY.length()));
+                            matcher = new NamePartMatcher(text);
+                        } else {
+                            variants = completePath(snapshot, file.getVirtualFile(), file.getProject().getBaseDir(),
+                                    rest);
+                            matcher = new CamelHumpMatcher(text, false);
+                        }
+                        if (variants.isEmpty()) {
+                            return;
+                        }
+
+                        final CompletionResultSet resultSet = result.withPrefixMatcher(matcher);
+                        for (int i = 0; i < variants.size(); i++) {
+                            resultSet.addElement(PrioritizedLookupElement.withPriority(
+                                    LookupElementBuilder.create(lead + variants.get(i)).withCaseSensitivity(false),
+                                    variants.size() - i
+                            ));
+                        }
+                    }
+                }
+        );
+    }
+
+    /**
+     * Completes <code>**&#47;name</code> entry with the names of the project files containing the typed part.
+     *
+     * @param snapshot paths snapshot
+     * @param query    typed name part
+     * @return completed entries ranked by the match position and the depth
+     */
+    @NotNull
+    private static List<String> completeName(@NotNull PathsSnapshot snapshot, @NotNull String query) {
+        if (query.isEmpty() || containsGlob(query) || query.contains("/")) {
+            return ContainerUtil.emptyList();
+        }
+
+        final Set<String> result = ContainerUtil.newLinkedHashSet();
+        for (String path : snapshot.findByName(query, LIMIT)) {
+            result.add(ANY_DIRECTORY + PathsSnapshot.getName(path) + (path.endsWith("/") ? "/" : ""));
+        }
+        return ContainerUtil.newArrayList(result);
+    }
+
+    /**
+     * Completes path relative to the ignore file with the nested project paths. Children of the typed directory are
+     * skipped because they are provided by the file references.
+     *
+     * @param snapshot paths snapshot
+     * @param file     ignore file
+     * @param baseDir  project's base directory
+     * @param query    typed path
+     * @return completed paths ranked by the depth
+     */
+    @NotNull
+    private static List<String> completePath(@NotNull PathsSnapshot snapshot, @Nullable VirtualFile file,
+                                             @Nullable VirtualFile baseDir, @NotNull String query) {
+        final VirtualFile directory = file != null ? file.getParent() : null;
+        if (directory == null || baseDir == null || containsGlob(query)
+                || query.startsWith("./") || query.startsWith("../")) {
+            return ContainerUtil.emptyList();
+        }
+        if (!directory.equals(baseDir) && !Utils.isUnder(directory, baseDir)) {
+            return ContainerUtil.emptyList();
+        }
+
+        final String base = directory.equals(baseDir) ? "" : Utils.getRelativePath(baseDir, directory);
+        final String prefix = base + query;
+        final int minDepth = StringUtil.countChars(prefix, '/') + 1;
+
+        final List<String> result = ContainerUtil.newArrayList();
+        for (String path : snapshot.findByPrefix(prefix, minDepth, LIMIT)) {
+            result.add(path.substring(base.length()));
+        }
+        return result;
+    }
+
+    /**
+     * Checks if given text contains glob special characters.
+     *
+     * @param text to check
+     * @return text contains glob
+     */
+    private static boolean containsGlob(@NotNull String text) {
+        return StringUtil.containsAnyChar(text, "*?[]\\");
+    }
+
+    /**
+     * Matcher of the <code>**&#47;name</code> entries which names contain the typed part, ignoring case. Entries
+     * have to start with the text typed before the name.
+     */
+    private static class NamePartMatcher extends PrefixMatcher {
+        /** Text typed before the name. */
+        @NotNull
+        private final String head;
+
+        /** Typed name part. */
+        @NotNull
+        private final String part;
+
+        /**
+         * Constructor.
+         *
+         * @param prefix typed entry
+         */
+        private NamePartMatcher(@NotNull String prefix) {
+            super(prefix);
+            this.head = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+            this.part = prefix.substring(head.length());
+        }
+
+        /**
+         * Checks if the name of given entry contains typed part.
+         *
+         * @param name lookup string
+         * @return entry matches
+         */
+        @Override
+        public boolean prefixMatches(@NotNull String name) {
+            return name.startsWith(head) && StringUtil.containsIgnoreCase(name.substring(head.length()), part);
+        }
+
+        /**
+         * Creates matcher for the new prefix.
+         *
+         * @param prefix typed entry
+         * @return matcher
+         */
+        @NotNull
+        @Override
+        public PrefixMatcher cloneWithPrefix(@NotNull String prefix) {
+            return new NamePartMatcher(prefix);
+        }
+    }
+}
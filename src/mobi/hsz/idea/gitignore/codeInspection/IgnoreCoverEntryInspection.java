@@ -40,10 +40,7 @@ import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.IgnoreManager;
 import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
 import mobi.hsz.idea.gitignore.psi.IgnoreFile;
-import mobi.hsz.idea.gitignore.util.Constants;
-import mobi.hsz.idea.gitignore.util.Glob;
-import mobi.hsz.idea.gitignore.util.MatcherUtil;
-import mobi.hsz.idea.gitignore.util.Utils;
+import mobi.hsz.idea.gitignore.util.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -57,8 +54,9 @@ import java.util.concurrent.ConcurrentMap;
  * @since 0.5
  */
 public class IgnoreCoverEntryInspection extends LocalInspectionTool {
-    /** Cache map to store handled entries' paths. */
-    private final ConcurrentMap<String, Set<String>> cacheMap;
+    /** Cache to store handled entries' paths. Replaced with the new instance when files tree changes. */
+    @NotNull
+    private volatile PathsCache cache;
 
     /** {@link VirtualFileManager} instance. */
     private final VirtualFileManager virtualFileManager;
@@ -68,28 +66,28 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
         @Override
         public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
             if (event.getPropertyName().equals("name")) {
-                cacheMap.clear();
+                cache = new PathsCache();
             }
         }
 
         @Override
         public void fileCreated(@NotNull VirtualFileEvent event) {
-            cacheMap.clear();
+            cache = new PathsCache();
         }
 
         @Override
         public void fileDeleted(@NotNull VirtualFileEvent event) {
-            cacheMap.clear();
+            cache = new PathsCache();
         }
 
         @Override
         public void fileMoved(@NotNull VirtualFileMoveEvent event) {
-            cacheMap.clear();
+            cache = new PathsCache();
         }
 
         @Override
         public void fileCopied(@NotNull VirtualFileCopyEvent event) {
-            cacheMap.clear();
+            cache = new PathsCache();
         }
     };
 
@@ -98,7 +96,7 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
      * Initializes {@link VirtualFileManager} and listens for the changes in the files tree.
      */
     public IgnoreCoverEntryInspection() {
-        cacheMap = ContainerUtil.newConcurrentMap();
+        cache = new PathsCache();
         virtualFileManager = VirtualFileManager.getInstance();
         virtualFileManager.addVirtualFileListener(virtualFileListener);
     }
@@ -111,7 +109,7 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
     @Override
     public void cleanup(@NotNull Project project) {
         virtualFileManager.removeVirtualFileListener(virtualFileListener);
-        cacheMap.clear();
+        cache = new PathsCache();
     }
 
     /**
@@ -127,51 +125,156 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
     public ProblemDescriptor[] checkFile(@NotNull PsiFile file, @NotNull InspectionManager manager,
                                          boolean isOnTheFly) {
         final VirtualFile virtualFile = file.getVirtualFile();
-        if (!(file instanceof IgnoreFile) || !Utils.isInProject(virtualFile, file.getProject())) {
+        if (!(file instanceof IgnoreFile) || virtualFile == null) {
             return null;
         }
 
-        final VirtualFile contextDirectory = virtualFile.getParent();
-        if (contextDirectory == null) {
-            return null;
-        }
+        final ArrayList<IgnoreEntry> entries = ContainerUtil.newArrayList(Arrays.asList(
+                ((IgnoreFile) file).findChildrenByClass(IgnoreEntry.class)
+        ));
+        final Map<IgnoreEntry, GlobLanguage> languages = getLanguages(entries);
+        final List<Pair<IgnoreEntry, IgnoreEntry>> result;
+
+        if (languages != null) {
+            result = findCoveredEntries(entries, languages);
+        } else {
+            if (!Utils.isInProject(virtualFile, file.getProject())) {
+                return null;
+            }
 
-        final Set<String> ignored = ContainerUtil.newHashSet();
-        final Set<String> unignored = ContainerUtil.newHashSet();
+            final VirtualFile contextDirectory = virtualFile.getParent();
+            if (contextDirectory == null) {
+                return null;
+            }
+            result = findCoveredEntries(file, contextDirectory, entries);
+        }
 
         final ProblemsHolder problemsHolder = new ProblemsHolder(manager, file, isOnTheFly);
+        for (Pair<IgnoreEntry, IgnoreEntry> pair : result) {
+            problemsHolder.registerProblem(pair.second, message(pair.first, virtualFile, isOnTheFly),
+                    new IgnoreRemoveEntryFix(pair.second));
+        }
+
+        return problemsHolder.getResultsArray();
+    }
+
+    /**
+     * Compiles entries to the {@link GlobLanguage} instances, so the covering can be decided without the files tree.
+     *
+     * @param entries to compile
+     * @return entries languages or <code>null</code> if any entry is not a supported glob
+     */
+    @Nullable
+    private static Map<IgnoreEntry, GlobLanguage> getLanguages(@NotNull List<IgnoreEntry> entries) {
+        final Map<IgnoreEntry, GlobLanguage> result = ContainerUtil.newHashMap();
+        for (IgnoreEntry entry : entries) {
+            if (!IgnoreBundle.Syntax.GLOB.equals(entry.getSyntax())) {
+                return null;
+            }
+
+            final GlobLanguage language = GlobLanguage.create(entry.getValue());
+            if (language == null) {
+                return null;
+            }
+            result.put(entry, language);
+        }
+        return result;
+    }
+
+    /**
+     * Finds covered entries comparing their languages. Entry that may match paths of any preceding entry with
+     * the opposite negation is skipped, as it overrides the previous rule.
+     *
+     * @param entries   to check
+     * @param languages entries languages
+     * @return pairs of the covering and covered entries
+     */
+    @NotNull
+    private static List<Pair<IgnoreEntry, IgnoreEntry>> findCoveredEntries(
+            @NotNull List<IgnoreEntry> entries, @NotNull Map<IgnoreEntry, GlobLanguage> languages) {
         final List<Pair<IgnoreEntry, IgnoreEntry>> result = ContainerUtil.newArrayList();
-        final Map<IgnoreEntry, Set<String>> map = ContainerUtil.newHashMap();
+        final List<IgnoreEntry> previous = ContainerUtil.newArrayList();
+        final List<IgnoreEntry> recents = ContainerUtil.newArrayList();
+
+        for (IgnoreEntry entry : entries) {
+            ProgressManager.checkCanceled();
+            final GlobLanguage language = languages.get(entry);
+
+            boolean overrides = false;
+            for (IgnoreEntry item : previous) {
+                if (entry.isNegated() != item.isNegated() && language.intersects(languages.get(item))) {
+                    overrides = true;
+                    break;
+                }
+            }
+            previous.add(entry);
+            if (overrides) {
+                continue;
+            }
+
+            for (IgnoreEntry recent : recents) {
+                ProgressManager.checkCanceled();
+                if (entry.isNegated() != recent.isNegated()) {
+                    continue;
+                }
+
+                final GlobLanguage recentLanguage = languages.get(recent);
+                if (recentLanguage.includes(language)) {
+                    result.add(Pair.create(recent, entry));
+                } else if (language.includes(recentLanguage)) {
+                    result.add(Pair.create(entry, recent));
+                }
+            }
+
+            recents.add(entry);
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds covered entries comparing paths matched in the files tree.
+     *
+     * @param file             current working file
+     * @param contextDirectory current context
+     * @param entries          to check
+     * @return pairs of the covering and covered entries
+     */
+    @NotNull
+    private List<Pair<IgnoreEntry, IgnoreEntry>> findCoveredEntries(@NotNull PsiFile file,
+                                                                   @NotNull VirtualFile contextDirectory,
+                                                                   @NotNull ArrayList<IgnoreEntry> entries) {
+        CompressedBitmap ignored = CompressedBitmap.EMPTY;
+        CompressedBitmap unignored = CompressedBitmap.EMPTY;
+
+        final List<Pair<IgnoreEntry, IgnoreEntry>> result = ContainerUtil.newArrayList();
+        final Map<IgnoreEntry, CompressedBitmap> map = ContainerUtil.newHashMap();
 
-        final ArrayList<IgnoreEntry> entries = ContainerUtil.newArrayList(Arrays.asList(
-                ((IgnoreFile) file).findChildrenByClass(IgnoreEntry.class)
-        ));
         final MatcherUtil matcher = IgnoreManager.getInstance(file.getProject()).getMatcher();
-        final Map<IgnoreEntry, Set<String>> matchedMap = getPathsSet(contextDirectory, entries, matcher);
+        final Map<IgnoreEntry, CompressedBitmap> matchedMap = getPathsSet(contextDirectory, entries, matcher);
 
         for (IgnoreEntry entry : entries) {
             ProgressManager.checkCanceled();
-            Set<String> matched = matchedMap.get(entry);
-            Collection<String> intersection;
-            boolean modified;
+            CompressedBitmap matched = matchedMap.get(entry);
+            CompressedBitmap intersection;
 
             if (!entry.isNegated()) {
-                ignored.addAll(matched);
-                intersection = Utils.intersection(unignored, matched);
-                modified = unignored.removeAll(intersection);
+                ignored = ignored.or(matched);
+                intersection = unignored.and(matched);
+                unignored = unignored.andNot(intersection);
             } else {
-                unignored.addAll(matched);
-                intersection = Utils.intersection(ignored, matched);
-                modified = ignored.removeAll(intersection);
+                unignored = unignored.or(matched);
+                intersection = ignored.and(matched);
+                ignored = ignored.andNot(intersection);
             }
 
-            if (modified) {
+            if (!intersection.isEmpty()) {
                 continue;
             }
 
             for (IgnoreEntry recent : map.keySet()) {
                 ProgressManager.checkCanceled();
-                Set<String> recentValues = map.get(recent);
+                CompressedBitmap recentValues = map.get(recent);
                 if (recentValues.isEmpty() || matched.isEmpty()) {
                     continue;
                 }
@@ -192,44 +295,42 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
             map.put(entry, matched);
         }
 
-        for (Pair<IgnoreEntry, IgnoreEntry> pair : result) {
-            problemsHolder.registerProblem(pair.second, message(pair.first, virtualFile, isOnTheFly),
-                    new IgnoreRemoveEntryFix(pair.second));
-        }
-
-        return problemsHolder.getResultsArray();
+        return result;
     }
 
     /**
-     * Returns the paths list for the given {@link IgnoreEntry} array in {@link VirtualFile} context.
-     * Stores fetched data in {@link #cacheMap} to limit the queries to the files tree.
+     * Returns the paths bitmaps for the given {@link IgnoreEntry} array in {@link VirtualFile} context.
+     * Stores fetched data in {@link #cache} to limit the queries to the files tree.
      *
      * @param contextDirectory current context
      * @param entries          to check
-     * @return paths list
+     * @return paths bitmaps
      */
     @NotNull
-    private Map<IgnoreEntry, Set<String>> getPathsSet(@NotNull VirtualFile contextDirectory,
-                                                      @NotNull ArrayList<IgnoreEntry> entries,
-                                                      @NotNull MatcherUtil matcher) {
-        final Map<IgnoreEntry, Set<String>> result = ContainerUtil.newHashMap();
+    private Map<IgnoreEntry, CompressedBitmap> getPathsSet(@NotNull VirtualFile contextDirectory,
+                                                           @NotNull ArrayList<IgnoreEntry> entries,
+                                                           @NotNull MatcherUtil matcher) {
+        final PathsCache cache = this.cache;
+        final Map<IgnoreEntry, CompressedBitmap> result = ContainerUtil.newHashMap();
         final ArrayList<IgnoreEntry> notCached = ContainerUtil.newArrayList();
 
         for (IgnoreEntry entry : entries) {
             ProgressManager.checkCanceled();
             final String key = contextDirectory.getPath() + Constants.DOLLAR + entry.getText();
-            if (!cacheMap.containsKey(key)) {
+            final CompressedBitmap cached = cache.entries.get(key);
+            if (cached == null) {
                 notCached.add(entry);
             }
-            result.put(entry, cacheMap.get(key));
+            result.put(entry, cached != null ? cached : CompressedBitmap.EMPTY);
         }
 
-        final Map<IgnoreEntry, Set<String>> found = Glob.findAsPaths(contextDirectory, notCached, matcher, true);
-        for (Map.Entry<IgnoreEntry, Set<String>> item : found.entrySet()) {
+        final Map<IgnoreEntry, List<VirtualFile>> found = Glob.find(contextDirectory, notCached, matcher, true);
+        for (Map.Entry<IgnoreEntry, List<VirtualFile>> item : found.entrySet()) {
             ProgressManager.checkCanceled();
             final String key = contextDirectory.getPath() + Constants.DOLLAR + item.getKey().getText();
-            cacheMap.put(key, item.getValue());
-            result.put(item.getKey(), item.getValue());
+            final CompressedBitmap bitmap = toBitmap(item.getValue());
+            cache.entries.put(key, bitmap);
+            result.put(item.getKey(), bitmap);
         }
 
         return result;
@@ -273,4 +374,29 @@ public class IgnoreCoverEntryInspection extends LocalInspectionTool {
     public boolean runForWholeFile() {
         return true;
     }
+
+    /**
+     * Converts files to the bitmap of their VFS ids. Files without id are skipped.
+     *
+     * @param files files to convert
+     * @return files bitmap
+     */
+    @NotNull
+    private static CompressedBitmap toBitmap(@NotNull List<VirtualFile> files) {
+        final int[] values = new int[files.size()];
+        int index = 0;
+        for (VirtualFile file : files) {
+            if (file instanceof VirtualFileWithId) {
+                values[index++] = ((VirtualFileWithId) file).getId();
+            }
+        }
+        return CompressedBitmap.of(index == values.length ? values : Arrays.copyOf(values, index));
+    }
+
+    /** Entries' files stored as {@link CompressedBitmap} of the VFS file ids. */
+    private static class PathsCache {
+        /** Files bitmaps mapped with the context directory and entry. */
+        @NotNull
+        private final ConcurrentMap<String, CompressedBitmap> entries = ContainerUtil.newConcurrentMap();
+    }
 }
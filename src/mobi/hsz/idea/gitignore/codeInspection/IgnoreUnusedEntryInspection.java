@@ -38,9 +38,12 @@ import com.intellij.util.containers.ContainerUtil;
 import mobi.hsz.idea.gitignore.FilesIndexCacheProjectComponent;
 import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.IgnoreManager;
+import mobi.hsz.idea.gitignore.RuleHitsProjectComponent;
 import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
 import mobi.hsz.idea.gitignore.psi.IgnoreVisitor;
+import mobi.hsz.idea.gitignore.reference.IgnoreResolveCache;
 import mobi.hsz.idea.gitignore.util.Glob;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
 import mobi.hsz.idea.gitignore.util.Utils;
 import org.jetbrains.annotations.NotNull;
 
@@ -68,14 +71,56 @@ public class IgnoreUnusedEntryInspection extends LocalInspectionTool {
         final Project project = holder.getProject();
         final FilesIndexCacheProjectComponent cache = FilesIndexCacheProjectComponent.getInstance(project);
         final IgnoreManager manager = IgnoreManager.getInstance(project);
+        final RuleHitsProjectComponent hits = RuleHitsProjectComponent.getInstance(project);
+        final VirtualFile ignoreFile = holder.getFile().getVirtualFile();
+
+        final List<IgnoreEntry> entries = ContainerUtil.newArrayList();
+        final List<IgnoreRule> rules = ContainerUtil.newArrayList();
+        holder.getFile().acceptChildren(new IgnoreVisitor() {
+            @Override
+            public void visitEntry(@NotNull IgnoreEntry entry) {
+                entries.add(entry);
+                rules.add(createRule(entry));
+            }
+        });
+        final boolean counted = ignoreFile != null && hits.prepare(ignoreFile, rules);
+        if (!counted) {
+            IgnoreResolveCache.preResolve(entries);
+        }
 
         return new IgnoreVisitor() {
             @Override
             public void visitEntry(@NotNull IgnoreEntry entry) {
-                PsiReference[] references = entry.getReferences();
+                final boolean resolved;
+                if (counted) {
+                    // Rules which are not counted yet are checked again when counting is done
+                    final Boolean used = hits.isUsed(ignoreFile, createRule(entry));
+                    resolved = used == null || used;
+                } else {
+                    resolved = isResolved(entry);
+                }
+
+                if (!resolved) {
+                    if (!isEntryExcluded(entry, holder.getProject())) {
+                        holder.registerProblem(entry, IgnoreBundle.message("codeInspection.unusedEntry.message"),
+                                new IgnoreRemoveEntryFix(entry));
+                    }
+                }
+
+                super.visitEntry(entry);
+            }
+
+            /**
+             * Checks if references of the entry are resolved. Used for the files which rules are not counted by
+             * {@link RuleHitsProjectComponent}.
+             *
+             * @param entry Gitignore entry
+             * @return entry is resolved
+             */
+            private boolean isResolved(@NotNull IgnoreEntry entry) {
                 boolean resolved = true;
                 int previous = Integer.MAX_VALUE;
-                for (PsiReference reference : references) {
+                for (PsiReference reference : entry.getReferences()) {
                     ProgressManager.checkCanceled();
                     if (reference instanceof FileReferenceOwner) {
                         PsiPolyVariantReference fileReference = (PsiPolyVariantReference) reference;
@@ -87,15 +132,7 @@ public class IgnoreUnusedEntryInspection extends LocalInspectionTool {
                         break;
                     }
                 }
-
-                if (!resolved) {
-                    if (!isEntryExcluded(entry, holder.getProject())) {
-                        holder.registerProblem(entry, IgnoreBundle.message("codeInspection.unusedEntry.message"),
-                                new IgnoreRemoveEntryFix(entry));
-                    }
-                }
-
-                super.visitEntry(entry);
+                return resolved;
             }
 
             /**
@@ -141,4 +178,15 @@ public class IgnoreUnusedEntryInspection extends LocalInspectionTool {
             }
         };
     }
+
+    /**
+     * Creates {@link IgnoreRule} for the given entry used to check {@link RuleHitsProjectComponent} counters.
+     *
+     * @param entry ignore entry
+     * @return rule
+     */
+    @NotNull
+    private static IgnoreRule createRule(@NotNull IgnoreEntry entry) {
+        return IgnoreRule.create(entry.getValue(), entry.getSyntax(), false);
+    }
 }
@@ -24,11 +24,12 @@
 
 package mobi.hsz.idea.gitignore.daemon;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.*;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.ui.EditorNotificationPanel;
@@ -42,7 +43,9 @@ import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.lang.kind.GitLanguage;
 import mobi.hsz.idea.gitignore.settings.IgnoreSettings;
 import mobi.hsz.idea.gitignore.util.Constants;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
 import mobi.hsz.idea.gitignore.util.Properties;
+import mobi.hsz.idea.gitignore.util.Utils;
 import mobi.hsz.idea.gitignore.util.exec.ExternalExec;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -50,6 +53,8 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Editor notification provider that suggests to add unversioned files to the .gitignore file.
@@ -74,13 +79,83 @@ public class AddUnversionedFilesNotificationProvider extends EditorNotifications
     @NotNull
     private final IgnoreSettings settings;
 
-    /** List of unignored files. */
+    /** Maximum number of unignored files parsed from the command output and shown. */
+    private static final int UNIGNORED_FILES_LIMIT = 1000;
+
+    /** Unignored files mapped with the directory they were computed for. */
+    @NotNull
+    private final ConcurrentMap<VirtualFile, List<String>> unignoredFiles = ContainerUtil.newConcurrentMap();
+
+    /**
+     * Modification stamps of the directories which unignored files are being computed. Stamp is bumped only by
+     * the changes under its directory, so the result computed before such change is dropped.
+     */
     @NotNull
-    private final List<String> unignoredFiles = ContainerUtil.newArrayList();
+    private final ConcurrentMap<VirtualFile, AtomicLong> modificationStamps = ContainerUtil.newConcurrentMap();
 
     /** Map to obtain if file was handled. */
     private final Map<VirtualFile, Boolean> handledMap = ContainerUtil.createWeakKeyWeakValueMap();
 
+    /** {@link VirtualFileListener} that invalidates cached {@link #unignoredFiles} on changes under the directory. */
+    @NotNull
+    private final VirtualFileListener virtualFileListener = new VirtualFileListener() {
+        @Override
+        public void propertyChanged(@NotNull VirtualFilePropertyEvent event) {
+            if (VirtualFile.PROP_NAME.equals(event.getPropertyName())) {
+                invalidate(event.getFile());
+            }
+        }
+
+        @Override
+        public void contentsChanged(@NotNull VirtualFileEvent event) {
+            if (event.getFile().getFileType() instanceof IgnoreFileType) {
+                for (AtomicLong stamp : modificationStamps.values()) {
+                    stamp.incrementAndGet();
+                }
+                unignoredFiles.clear();
+            }
+        }
+
+        @Override
+        public void fileCreated(@NotNull VirtualFileEvent event) {
+            invalidate(event.getFile());
+        }
+
+        @Override
+        public void fileDeleted(@NotNull VirtualFileEvent event) {
+            invalidate(event.getFile());
+        }
+
+        @Override
+        public void fileMoved(@NotNull VirtualFileMoveEvent event) {
+            invalidate(event.getFile());
+            invalidate(event.getOldParent());
+        }
+
+        @Override
+        public void fileCopied(@NotNull VirtualFileCopyEvent event) {
+            invalidate(event.getFile());
+        }
+
+        /**
+         * Removes cached entries and bumps modification stamps of directories that contain given file.
+         *
+         * @param file changed file
+         */
+        private void invalidate(@NotNull VirtualFile file) {
+            for (Map.Entry<VirtualFile, AtomicLong> entry : modificationStamps.entrySet()) {
+                if (!entry.getKey().isValid() || Utils.isUnder(file, entry.getKey())) {
+                    entry.getValue().incrementAndGet();
+                }
+            }
+            for (VirtualFile directory : unignoredFiles.keySet()) {
+                if (!directory.isValid() || Utils.isUnder(file, directory)) {
+                    unignoredFiles.remove(directory);
+                }
+            }
+        }
+    };
+
     /**
      * Builds a new instance of {@link AddUnversionedFilesNotificationProvider}.
      *
@@ -92,6 +167,7 @@ public class AddUnversionedFilesNotificationProvider extends EditorNotifications
         this.project = project;
         this.notifications = notifications;
         this.settings = IgnoreSettings.getInstance();
+        VirtualFileManager.getInstance().addVirtualFileListener(virtualFileListener, project);
     }
 
     /**
@@ -107,7 +183,8 @@ public class AddUnversionedFilesNotificationProvider extends EditorNotifications
 
     /**
      * Creates notification panel for given file and checks if is allowed to show the notification.
-     * Only {@link GitLanguage} is currently supported.
+     * Only {@link GitLanguage} is currently supported. Unignored files are computed in background and
+     * notifications are updated when the result arrives.
      *
      * @param file       current file
      * @param fileEditor current file editor
@@ -134,22 +211,71 @@ public class AddUnversionedFilesNotificationProvider extends EditorNotifications
             return null;
         }
 
-        unignoredFiles.clear();
-        unignoredFiles.addAll(ExternalExec.getUnignoredFiles(GitLanguage.INSTANCE, project, file));
-        if (unignoredFiles.isEmpty()) {
+        final VirtualFile directory = file.getParent();
+        if (directory == null) {
+            return null;
+        }
+
+        final List<String> files = unignoredFiles.get(directory);
+        IgnoreStatistics.recordCache("AddUnversionedFilesNotificationProvider", files != null);
+        if (files == null) {
+            compute(file, directory);
             return null;
         }
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        return createPanel(project, files);
+    }
 
-        return createPanel(project);
+    /**
+     * Computes unignored files for the given directory on the pooled thread and updates notifications
+     * of the file when done. Result is dropped if cache was invalidated in the meantime, so the next
+     * notifications update computes it again. Only changes under the directory invalidate its result.
+     *
+     * @param file      current file
+     * @param directory directory to compute unignored files for
+     */
+    private void compute(@NotNull final VirtualFile file, @NotNull final VirtualFile directory) {
+        final AtomicLong stamp = new AtomicLong();
+        if (modificationStamps.putIfAbsent(directory, stamp) != null) {
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (project.isDisposed()) {
+                        return;
+                    }
+                    final List<String> files = ExternalExec.getUnignoredFiles(
+                            GitLanguage.INSTANCE, project, file, UNIGNORED_FILES_LIMIT
+                    );
+                    unignoredFiles.put(directory, files);
+                    if (stamp.get() != 0) {
+                        unignoredFiles.remove(directory, files);
+                    }
+                } finally {
+                    modificationStamps.remove(directory, stamp);
+                }
+                if (!project.isDisposed()) {
+                    notifications.updateNotifications(file);
+                }
+            }
+        });
     }
 
     /**
      * Creates notification panel.
      *
-     * @param project current project
+     * @param project        current project
+     * @param unignoredFiles unignored files to add
      * @return notification panel
      */
-    private EditorNotificationPanel createPanel(@NotNull final Project project) {
+    private EditorNotificationPanel createPanel(@NotNull final Project project,
+                                                @NotNull final List<String> unignoredFiles) {
         final EditorNotificationPanel panel = new EditorNotificationPanel();
         final IgnoreFileType fileType = GitFileType.INSTANCE;
         panel.setText(IgnoreBundle.message("daemon.addUnversionedFiles"));
@@ -25,7 +25,7 @@
 package mobi.hsz.idea.gitignore.indexing;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.IndexableSetContributor;
@@ -34,11 +34,12 @@ import mobi.hsz.idea.gitignore.IgnoreManager;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * IndexedRootsProvider implementation that provides additional paths to index - like external/global ignore files.
@@ -50,46 +51,49 @@ public class ExternalIndexableSetContributor extends IndexableSetContributor {
     /** Empty set. */
     private static final Set<VirtualFile> EMPTY_SET = Collections.emptySet();
 
-    /** Cached additional paths set. */
-    private static final Map<Project, HashSet<VirtualFile>> CACHE = ContainerUtil.newConcurrentMap();
+    /** Cached additional files snapshots. */
+    private static final Map<Project, AdditionalFiles> CACHE = ContainerUtil.newConcurrentMap();
+
+    /** Modification counter increased on each cache invalidation. */
+    private static final AtomicLong MODIFICATION_COUNT = new AtomicLong();
 
     /**
-     * Returns additional files located outside of the current project that should be indexed.
+     * Returns snapshot of the additional files located outside of the current project that should be indexed.
+     * Snapshot is built once and reused until {@link #invalidateCache(Project)} is called.
      *
      * @param project current project
-     * @return additional files
+     * @return additional files snapshot
      */
     @NotNull
-    public static HashSet<VirtualFile> getAdditionalFiles(@NotNull Project project) {
-        final HashSet<VirtualFile> files = ContainerUtil.newHashSet();
-
-        if (CACHE.containsKey(project)) {
-            files.addAll(ContainerUtil.filter(CACHE.get(project), new Condition<VirtualFile>() {
-                @Override
-                public boolean value(@NotNull VirtualFile file) {
-                    return file.isValid();
-                }
-            }));
-        } else {
-            for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
-                final IgnoreFileType fileType = language.getFileType();
-                if (language.isOuterFileSupported()) {
-                    for (VirtualFile file : language.getOuterFiles(project, true)) {
-                        if (file == null || !file.isValid()) {
-                            continue;
-                        }
-                        if (!(file.getFileType() instanceof IgnoreFileType) && !file.getFileType().equals(fileType)) {
-                            IgnoreManager.associateFileType(file.getName(), fileType);
-                        }
+    public static AdditionalFiles getAdditionalFiles(@NotNull Project project) {
+        final AdditionalFiles cached = CACHE.get(project);
+        if (cached != null) {
+            return cached;
+        }
 
-                        files.add(file);
+        final long modificationCount = MODIFICATION_COUNT.get();
+        final Set<VirtualFile> files = ContainerUtil.newHashSet();
+        for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
+            final IgnoreFileType fileType = language.getFileType();
+            if (language.isOuterFileSupported()) {
+                for (VirtualFile file : language.getOuterFiles(project, true)) {
+                    if (file == null || !file.isValid()) {
+                        continue;
+                    }
+                    if (!(file.getFileType() instanceof IgnoreFileType) && !file.getFileType().equals(fileType)) {
+                        IgnoreManager.associateFileType(file.getName(), fileType);
                     }
+
+                    files.add(file);
                 }
             }
         }
 
-        CACHE.put(project, files);
-        return files;
+        final AdditionalFiles snapshot = new AdditionalFiles(files, modificationCount);
+        if (MODIFICATION_COUNT.get() == modificationCount) {
+            CACHE.put(project, snapshot);
+        }
+        return snapshot;
     }
 
     /**
@@ -100,7 +104,7 @@ public class ExternalIndexableSetContributor extends IndexableSetContributor {
     @NotNull
     @Override
     public Set<VirtualFile> getAdditionalProjectRootsToIndex(@NotNull Project project) {
-        return getAdditionalFiles(project);
+        return getAdditionalFiles(project).getValidFiles();
     }
 
     /**
@@ -129,6 +133,91 @@ public class ExternalIndexableSetContributor extends IndexableSetContributor {
      * @param project current project
      */
     public static void invalidateCache(@NotNull Project project) {
+        MODIFICATION_COUNT.incrementAndGet();
         CACHE.remove(project);
     }
+
+    /**
+     * Immutable snapshot of the additional files. Snapshot is tagged with the modification count of the
+     * {@link ExternalIndexableSetContributor} cache, so it can be used to track changes of the additional files.
+     */
+    public static final class AdditionalFiles implements ModificationTracker {
+        /** Additional files. */
+        @NotNull
+        private final Set<VirtualFile> files;
+
+        /** Modification count at the moment of creating snapshot. */
+        private final long modificationCount;
+
+        /**
+         * Constructor.
+         *
+         * @param files             additional files
+         * @param modificationCount current modification count
+         */
+        private AdditionalFiles(@NotNull Set<VirtualFile> files, long modificationCount) {
+            this.files = Collections.unmodifiableSet(files);
+            this.modificationCount = modificationCount;
+        }
+
+        /**
+         * Checks if given file is a valid additional file.
+         *
+         * @param file to check
+         * @return file is in snapshot
+         */
+        public boolean contains(@Nullable VirtualFile file) {
+            return file != null && files.contains(file) && file.isValid();
+        }
+
+        /**
+         * Checks if snapshot contains no files.
+         *
+         * @return snapshot is empty
+         */
+        public boolean isEmpty() {
+            return files.isEmpty();
+        }
+
+        /**
+         * Returns all files of the snapshot. Some of them may be already invalid.
+         *
+         * @return unmodifiable files set
+         */
+        @NotNull
+        public Set<VirtualFile> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns valid files of the snapshot.
+         *
+         * @return valid files set
+         */
+        @NotNull
+        public Set<VirtualFile> getValidFiles() {
+            for (VirtualFile file : files) {
+                if (!file.isValid()) {
+                    final Set<VirtualFile> result = ContainerUtil.newHashSet();
+                    for (VirtualFile item : files) {
+                        if (item.isValid()) {
+                            result.add(item);
+                        }
+                    }
+                    return result;
+                }
+            }
+            return files;
+        }
+
+        /**
+         * Returns modification count of the {@link ExternalIndexableSetContributor} cache the snapshot was built with.
+         *
+         * @return modification count
+         */
+        @Override
+        public long getModificationCount() {
+            return modificationCount;
+        }
+    }
 }
@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import gnu.trove.TIntHashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent index of the trigrams of the file and directory names. Files which names contain the given literal
+ * part are found with the intersection of the trigram posting lists instead of iterating all of the project files.
+ * Trigrams are case insensitive and may collide, so the candidates have to be verified by the caller.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class FileNameTrigramIndex extends ScalarIndexExtension<Integer>
+        implements DataIndexer<Integer, Void, FileContent>, FileBasedIndex.InputFilter {
+    /** Indexer ID. */
+    public static final ID<Integer, Void> KEY = ID.create("IgnoreFileNameTrigramIndex");
+
+    /** Current indexer version. Has to be increased if significant changes have been done. */
+    private static final int VERSION = 2;
+
+    /** Length of the n-gram. */
+    public static final int TRIGRAM_LENGTH = 3;
+
+    /** Bits used for the single character of the trigram. */
+    private static final int CHAR_BITS = 10;
+
+    /** Mask of the single character of the trigram. */
+    private static final int CHAR_MASK = (1 << CHAR_BITS) - 1;
+
+    /**
+     * Returns indexer's name.
+     *
+     * @return {@link #KEY}
+     */
+    @NotNull
+    @Override
+    public ID<Integer, Void> getName() {
+        return KEY;
+    }
+
+    /**
+     * Returns {@link DataIndexer} instance.
+     *
+     * @return current instance
+     */
+    @NotNull
+    @Override
+    public DataIndexer<Integer, Void, FileContent> getIndexer() {
+        return this;
+    }
+
+    /**
+     * Maps file name to its trigrams.
+     *
+     * @param inputData indexed file data
+     * @return trigrams of the file name
+     */
+    @NotNull
+    @Override
+    public Map<Integer, Void> map(@NotNull FileContent inputData) {
+        final int[] trigrams = getTrigrams(inputData.getFileName());
+        if (trigrams.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Map<Integer, Void> result = new HashMap<Integer, Void>(trigrams.length);
+        for (int trigram : trigrams) {
+            result.put(trigram, null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@link KeyDescriptor} of the trigram keys.
+     *
+     * @return {@link EnumeratorIntegerDescriptor} instance
+     */
+    @NotNull
+    @Override
+    public KeyDescriptor<Integer> getKeyDescriptor() {
+        return EnumeratorIntegerDescriptor.INSTANCE;
+    }
+
+    /**
+     * Returns {@link FileBasedIndex.InputFilter} instance.
+     *
+     * @return current instance
+     */
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return this;
+    }
+
+    /**
+     * Accepts only files from the local file system - archive contents and other virtual file systems
+     * cannot be matched by the ignore rules.
+     *
+     * @param file to check
+     * @return file is in the local file system
+     */
+    @Override
+    public boolean acceptInput(@NotNull VirtualFile file) {
+        return file.isInLocalFileSystem();
+    }
+
+    /**
+     * Index is based only on the file names.
+     *
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean dependsOnFileContent() {
+        return false;
+    }
+
+    /**
+     * Directory names are indexed as well.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    public boolean indexDirectories() {
+        return true;
+    }
+
+    /**
+     * Returns current indexer {@link #VERSION}.
+     *
+     * @return current version
+     */
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    /**
+     * Processes files which names may contain the given part. Part has to be at least {@link #TRIGRAM_LENGTH}
+     * characters long.
+     *
+     * @param part      literal part of the name
+     * @param scope     search scope
+     * @param processor files processor
+     * @return processing was not stopped by the processor
+     */
+    public static boolean processFiles(@NotNull String part, @NotNull GlobalSearchScope scope,
+                                       @NotNull Processor<VirtualFile> processor) {
+        final int[] trigrams = getTrigrams(part);
+        if (trigrams.length == 0) {
+            throw new IllegalArgumentException("Part is too short: " + part);
+        }
+
+        final List<Integer> keys = new ArrayList<Integer>(trigrams.length);
+        for (int trigram : trigrams) {
+            keys.add(trigram);
+        }
+        return FileBasedIndex.getInstance().processFilesContainingAllKeys(KEY, keys, scope, null, processor);
+    }
+
+    /**
+     * Returns distinct, case insensitive trigrams of the given text.
+     *
+     * @param text text to split
+     * @return trigrams encoded as integers
+     */
+    @NotNull
+    public static int[] getTrigrams(@NotNull CharSequence text) {
+        if (text.length() < TRIGRAM_LENGTH) {
+            return new int[0];
+        }
+
+        final TIntHashSet result = new TIntHashSet(text.length());
+        int trigram = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final int c = Character.toLowerCase(text.charAt(i)) & CHAR_MASK;
+            trigram = ((trigram << CHAR_BITS) | c) & ((1 << CHAR_BITS * TRIGRAM_LENGTH) - 1);
+            if (i >= TRIGRAM_LENGTH - 1) {
+                result.add(trigram);
+            }
+        }
+        return result.toArray();
+    }
+}
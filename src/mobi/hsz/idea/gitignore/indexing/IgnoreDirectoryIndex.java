@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import mobi.hsz.idea.gitignore.psi.IgnoreFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary index of the ignore files that maps compiled {@link IgnoreEntryOccurrence} with the id of the directory
+ * containing the ignore file. Rules applicable to the given file can be obtained with a lookup of each of its
+ * ancestors instead of scanning all occurrences of the language returned by {@link IgnoreFilesIndex}.
+ * <p>
+ * Directory id is kept when the directory or any of its ancestors is renamed or moved, so the key stays valid
+ * even though moved ignore files are not indexed again.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class IgnoreDirectoryIndex extends AbstractIgnoreFilesIndex<Integer, IgnoreEntryOccurrence> {
+    /** Indexer ID. */
+    public static final ID<Integer, IgnoreEntryOccurrence> KEY = ID.create("IgnoreDirectoryIndex");
+
+    /** Current indexer version. Has to be increased if significant changes have been done. */
+    private static final int VERSION = 4;
+
+    /**
+     * Returns indexer's name.
+     *
+     * @return {@link #KEY}
+     */
+    @NotNull
+    @Override
+    public ID<Integer, IgnoreEntryOccurrence> getName() {
+        return KEY;
+    }
+
+    /**
+     * Maps indexed files content to the {@link IgnoreEntryOccurrence} with the parent directory id as a key.
+     *
+     * @param inputData indexed file data
+     * @return {@link IgnoreEntryOccurrence} data mapped with the directory id
+     */
+    @NotNull
+    @Override
+    public Map<Integer, IgnoreEntryOccurrence> map(@NotNull FileContent inputData) {
+        final VirtualFile parent = inputData.getFile().getParent();
+        if (!(inputData.getPsiFile() instanceof IgnoreFile) || !(parent instanceof VirtualFileWithId)) {
+            return Collections.emptyMap();
+        }
+
+        return Collections.singletonMap(((VirtualFileWithId) parent).getId(),
+                IgnoreFilesIndex.createOccurrence(inputData));
+    }
+
+    /**
+     * Saves data to the indexing output stream.
+     *
+     * @param out   output stream
+     * @param value directory id to write
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void save(@NotNull DataOutput out, Integer value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value);
+    }
+
+    /**
+     * Reads data from the input stream.
+     *
+     * @param in input stream
+     * @return directory id read from the stream
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public Integer read(@NotNull DataInput in) throws IOException {
+        return DataInputOutputUtil.readINT(in);
+    }
+
+    /**
+     * Returns {@link DataExternalizer} instance shared with {@link IgnoreFilesIndex}.
+     *
+     * @return {@link IgnoreFilesIndex#DATA_EXTERNALIZER}
+     */
+    @NotNull
+    @Override
+    public DataExternalizer<IgnoreEntryOccurrence> getValueExternalizer() {
+        return IgnoreFilesIndex.DATA_EXTERNALIZER;
+    }
+
+    /**
+     * Returns current indexer {@link #VERSION}.
+     *
+     * @return current version
+     */
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    /**
+     * Obtains if given {@link VirtualFile} is accepted by indexer. Uses name-based {@link IgnoreFileNameFilter}.
+     *
+     * @param file to check
+     * @return file is accepted
+     */
+    @Override
+    public boolean acceptInput(@NotNull VirtualFile file) {
+        return IgnoreFileNameFilter.accept(file);
+    }
+
+    /**
+     * Returns {@link IgnoreEntryOccurrence} collection of the ignore files located directly in the given directory.
+     *
+     * @param project   current project
+     * @param directory directory to check
+     * @return {@link IgnoreEntryOccurrence} collection
+     */
+    @NotNull
+    public static List<IgnoreEntryOccurrence> getEntries(@NotNull Project project, @NotNull VirtualFile directory) {
+        try {
+            if (directory instanceof VirtualFileWithId && ApplicationManager.getApplication().isReadAccessAllowed()) {
+                final List<IgnoreEntryOccurrence> entries = FileBasedIndex.getInstance()
+                        .getValues(KEY, ((VirtualFileWithId) directory).getId(), IgnoreSearchScope.get(project));
+                return entries.isEmpty() ? ContainerUtil.<IgnoreEntryOccurrence>emptyList() : entries;
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return ContainerUtil.emptyList();
+    }
+}
@@ -24,12 +24,14 @@
 
 package mobi.hsz.idea.gitignore.indexing;
 
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.ImmutableList;
-import org.apache.commons.lang.StringUtils;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -38,7 +40,9 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Entry containing information about the {@link VirtualFile} instance of the ignore file mapped with the collection
@@ -48,40 +52,72 @@ import java.util.ArrayList;
  * @since 2.0
  */
 public class IgnoreEntryOccurrence implements Serializable {
-    /** Current ignore file path. */
+    /** Empty rules array. */
+    private static final IgnoreRule[] EMPTY = new IgnoreRule[0];
+
+    /** Current ignore file id or <code>0</code> if file has no id. */
+    private final int fileId;
+
+    /** Current ignore file URL used if file has no id - empty otherwise. */
     @NotNull
     private final String url;
 
-    /** Collection of ignore entries. */
+    /** Compiled ignore entries. */
     @NotNull
-    private final ImmutableList<Pair<String, Boolean>> items;
+    private final IgnoreRule[] items;
 
-    /** Current ignore file. */
+    /** Resolved ignore file. */
     @Nullable
-    private VirtualFile file;
+    private volatile VirtualFile file;
+
+    /**
+     * Constructor.
+     *
+     * @param file  ignore file
+     * @param items compiled entry items
+     */
+    public IgnoreEntryOccurrence(@NotNull VirtualFile file, @NotNull List<IgnoreRule> items) {
+        this(
+                file instanceof VirtualFileWithId ? ((VirtualFileWithId) file).getId() : 0,
+                file instanceof VirtualFileWithId ? "" : file.getUrl(),
+                items.toArray(EMPTY)
+        );
+    }
 
     /**
      * Constructor.
      *
      * @param url   entry URL
-     * @param items parsed entry items
+     * @param items compiled entry items
+     */
+    public IgnoreEntryOccurrence(@NotNull String url, @NotNull List<IgnoreRule> items) {
+        this(0, url, items.toArray(EMPTY));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileId file id
+     * @param url    entry URL
+     * @param items  compiled entry items
      */
-    public IgnoreEntryOccurrence(@NotNull String url, @NotNull ArrayList<Pair<String, Boolean>> items) {
+    private IgnoreEntryOccurrence(int fileId, @NotNull String url, @NotNull IgnoreRule[] items) {
+        this.fileId = fileId;
         this.url = url;
-        this.items = ContainerUtil.immutableList(items);
+        this.items = items;
     }
 
     /**
-     * Calculates hashCode with {@link #url} and {@link #items} hashCodes.
+     * Calculates hashCode with {@link #fileId}, {@link #url} and {@link #items} hashCodes.
      *
      * @return entry hashCode
      */
     @Override
     public int hashCode() {
-        HashCodeBuilder builder = new HashCodeBuilder().append(url);
+        HashCodeBuilder builder = new HashCodeBuilder().append(fileId).append(url);
 
-        for (Pair<String, Boolean> item : items) {
-            builder.append(item.first).append(item.second);
+        for (IgnoreRule item : items) {
+            builder.append(item.hashCode());
         }
 
         return builder.toHashCode();
@@ -100,56 +136,92 @@ public class IgnoreEntryOccurrence implements Serializable {
         }
 
         final IgnoreEntryOccurrence entry = (IgnoreEntryOccurrence) obj;
-        if (!url.equals(entry.url) || items.size() != entry.items.size()) {
-            return false;
-        }
-
-        for (int i = 0; i < items.size(); i++) {
-            if (!items.get(i).toString().equals(entry.items.get(i).toString())) {
-                return false;
-            }
-        }
-
-        return true;
+        return fileId == entry.fileId && url.equals(entry.url) && Arrays.equals(items, entry.items);
     }
 
     /**
-     * Returns current {@link VirtualFile}.
+     * Returns current {@link VirtualFile}. File is resolved with {@link PersistentFS} using its id or with
+     * {@link VirtualFileManager} if file has no id. Resolved file is kept until it becomes invalid.
      *
      * @return current file
      */
     @Nullable
     public VirtualFile getFile() {
-        if (file == null && !url.isEmpty()) {
-            file = VirtualFileManager.getInstance().findFileByUrl(url);
+        VirtualFile result = file;
+        if (result != null && result.isValid()) {
+            return result;
+        }
+
+        if (fileId > 0) {
+            result = PersistentFS.getInstance().findFileById(fileId);
+        } else if (!url.isEmpty()) {
+            result = VirtualFileManager.getInstance().findFileByUrl(url);
+        } else {
+            result = null;
         }
-        return file;
+
+        if (result != null && !result.isValid()) {
+            result = null;
+        }
+        file = result;
+        return result;
     }
 
     /**
-     * Returns entries for current file.
+     * Returns entries for current file. Returned array must not be modified.
      *
      * @return entries
      */
     @NotNull
-    public ImmutableList<Pair<String, Boolean>> getItems() {
+    public IgnoreRule[] getItems() {
         return items;
     }
 
     /**
-     * Static helper to write given {@link IgnoreEntryOccurrence} to the output stream.
+     * Static helper to write given {@link IgnoreEntryOccurrence} to the output stream. Helper keeps no shared state,
+     * so it can be called concurrently from many indexing threads.
+     * <p>
+     * Format: varint file id (URL follows if id is <code>0</code>), string table (varint size and strings), varint
+     * rules count, packed negation bitset and rules referring to the string table indexes. Repeated strings - i.e.
+     * glob equal to the literal value - are written only once.
      *
      * @param out   output stream
      * @param entry entry to write
      * @throws IOException I/O exception
      */
-    public static synchronized void serialize(@NotNull DataOutput out, @NotNull IgnoreEntryOccurrence entry)
-            throws IOException {
-        out.writeUTF(entry.url);
-        out.writeInt(entry.items.size());
-        for (Pair<String, Boolean> item : entry.items) {
-            out.writeUTF(item.first);
-            out.writeBoolean(item.second);
+    public static void serialize(@NotNull DataOutput out, @NotNull IgnoreEntryOccurrence entry) throws IOException {
+        final IgnoreRule[] items = entry.items;
+        final Map<String, Integer> indexes = ContainerUtil.newHashMap();
+        final List<String> strings = ContainerUtil.newArrayList();
+        for (IgnoreRule item : items) {
+            addString(item.getGlob(), indexes, strings);
+            addString(item.getValue(), indexes, strings);
+            for (String part : item.getParts()) {
+                addString(part, indexes, strings);
+            }
+        }
+
+        DataInputOutputUtil.writeINT(out, entry.fileId);
+        if (entry.fileId == 0) {
+            IOUtil.writeUTF(out, entry.url);
+        }
+        DataInputOutputUtil.writeINT(out, strings.size());
+        for (String string : strings) {
+            IOUtil.writeUTF(out, string);
+        }
+
+        DataInputOutputUtil.writeINT(out, items.length);
+        for (int i = 0; i < items.length; i += 8) {
+            int bits = 0;
+            for (int j = i; j < Math.min(i + 8, items.length); j++) {
+                if (items[j].isNegated()) {
+                    bits |= 1 << (j - i);
+                }
+            }
+            out.writeByte(bits);
+        }
+        for (IgnoreRule item : items) {
+            item.write(out, indexes);
         }
     }
 
@@ -160,19 +232,42 @@ public class IgnoreEntryOccurrence implements Serializable {
      * @return read {@link IgnoreEntryOccurrence}
      */
     @NotNull
-    public static synchronized IgnoreEntryOccurrence deserialize(@NotNull DataInput in) throws IOException {
-        final String url = in.readUTF();
-        final ArrayList<Pair<String, Boolean>> items = ContainerUtil.newArrayList();
-
-        if (!StringUtils.isEmpty(url)) {
-            final int size = in.readInt();
-            for (int i = 0; i < size; i++) {
-                String pattern = in.readUTF();
-                Boolean isNegated = in.readBoolean();
-                items.add(Pair.create(pattern, isNegated));
-            }
+    public static IgnoreEntryOccurrence deserialize(@NotNull DataInput in) throws IOException {
+        final int fileId = DataInputOutputUtil.readINT(in);
+        final String url = fileId == 0 ? IOUtil.readUTF(in) : "";
+        final String[] strings = new String[DataInputOutputUtil.readINT(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = IOUtil.readUTF(in);
         }
 
-        return new IgnoreEntryOccurrence(url, items);
+        final int size = DataInputOutputUtil.readINT(in);
+        if (size == 0) {
+            return new IgnoreEntryOccurrence(fileId, url, EMPTY);
+        }
+
+        final byte[] negated = new byte[(size + 7) / 8];
+        in.readFully(negated);
+
+        final IgnoreRule[] items = new IgnoreRule[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = IgnoreRule.read(in, strings, (negated[i >> 3] & (1 << (i & 7))) != 0);
+        }
+
+        return new IgnoreEntryOccurrence(fileId, url, items);
+    }
+
+    /**
+     * Adds string to the string table if it is not present yet.
+     *
+     * @param string  to add
+     * @param indexes strings mapped to their indexes
+     * @param strings ordered string table
+     */
+    private static void addString(@NotNull String string, @NotNull Map<String, Integer> indexes,
+                                  @NotNull List<String> strings) {
+        if (!indexes.containsKey(string)) {
+            indexes.put(string, strings.size());
+            strings.add(string);
+        }
     }
 }
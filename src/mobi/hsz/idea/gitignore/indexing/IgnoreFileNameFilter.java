@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.openapi.fileTypes.*;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.IgnoreManager;
+import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Name-based input filter of the ignore files indexes. File names and extensions associated with the ignore file
+ * types are precomputed, so checking the file is a hash lookup and {@link VirtualFile#getFileType()} is called only
+ * if any ignore file type has a wildcard association. Precomputed data is rebuilt when file types are changed -
+ * {@link mobi.hsz.idea.gitignore.IgnoreApplicationComponent} calls {@link #invalidate()}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class IgnoreFileNameFilter {
+    /** Current associations snapshot. */
+    @Nullable
+    private static volatile Associations associations;
+
+    /** Private constructor to prevent creating {@link IgnoreFileNameFilter} instance. */
+    private IgnoreFileNameFilter() {
+    }
+
+    /**
+     * Checks if given file may be an ignore file.
+     *
+     * @param file to check
+     * @return file is accepted
+     */
+    public static boolean accept(@NotNull VirtualFile file) {
+        final Associations current = getAssociations();
+        final String name = file.getName();
+        if (current.names.contains(name) || IgnoreManager.FILE_TYPES_ASSOCIATION_QUEUE.containsKey(name)) {
+            return true;
+        }
+
+        final String extension = file.getExtension();
+        if (extension != null && current.extensions.contains(extension)) {
+            return true;
+        }
+
+        return current.wildcards && file.getFileType() instanceof IgnoreFileType;
+    }
+
+    /**
+     * Returns current {@link Associations} or builds them if file types were changed.
+     *
+     * @return associations
+     */
+    @NotNull
+    private static Associations getAssociations() {
+        Associations current = associations;
+        if (current == null) {
+            current = new Associations();
+            associations = current;
+        }
+        return current;
+    }
+
+    /** Drops precomputed associations. */
+    public static void invalidate() {
+        associations = null;
+    }
+
+    /** Precomputed names and extensions associated with the ignore file types. */
+    private static class Associations {
+        /** Exact file names. */
+        @NotNull
+        private final Set<String> names = ContainerUtil.newHashSet();
+
+        /** File extensions. */
+        @NotNull
+        private final Set<String> extensions = ContainerUtil.newHashSet();
+
+        /** Any of the ignore file types has association that is neither exact name nor extension. */
+        private boolean wildcards;
+
+        /** Builds associations using {@link FileTypeManager}. */
+        private Associations() {
+            final FileTypeManager manager = FileTypeManager.getInstance();
+            add(manager, IgnoreFileType.INSTANCE);
+            for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
+                add(manager, language.getFileType());
+            }
+        }
+
+        /**
+         * Adds associations of the given file type.
+         *
+         * @param manager  file type manager
+         * @param fileType ignore file type
+         */
+        private void add(@NotNull FileTypeManager manager, @NotNull IgnoreFileType fileType) {
+            names.add(fileType.getIgnoreLanguage().getFilename());
+            extensions.add(fileType.getIgnoreLanguage().getExtension());
+
+            final List<FileNameMatcher> matchers = manager.getAssociations(fileType);
+            for (FileNameMatcher matcher : matchers) {
+                if (matcher instanceof ExactFileNameMatcher) {
+                    names.add(((ExactFileNameMatcher) matcher).getFileName());
+                } else if (matcher instanceof ExtensionFileNameMatcher) {
+                    extensions.add(((ExtensionFileNameMatcher) matcher).getExtension());
+                } else {
+                    wildcards = true;
+                }
+            }
+        }
+    }
+}
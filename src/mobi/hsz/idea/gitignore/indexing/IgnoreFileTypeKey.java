@@ -24,12 +24,18 @@
 
 package mobi.hsz.idea.gitignore.indexing;
 
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+
 /**
  * Decorator for {@link IgnoreFileType} to provide less unique hashcode when used with {@link IgnoreFilesIndex}.
+ * Keys are flyweights identified by the position of the language in {@link IgnoreBundle#LANGUAGES}, so the index
+ * stores a single small integer per key and reading it requires only an array lookup.
  *
  * @author Jakub Chrzanowski <jakub@hsz.mobi>
  * @since 2.0
@@ -39,13 +45,41 @@ public class IgnoreFileTypeKey {
     @NotNull
     private final IgnoreFileType type;
 
+    /** Key identifier or <code>-1</code> if language is not registered in {@link IgnoreBundle#LANGUAGES}. */
+    private final int id;
+
     /**
      * Constructor.
      *
      * @param type current file type
+     * @param id   key identifier
      */
-    public IgnoreFileTypeKey(@NotNull IgnoreFileType type) {
+    private IgnoreFileTypeKey(@NotNull IgnoreFileType type, int id) {
         this.type = type;
+        this.id = id;
+    }
+
+    /**
+     * Returns cached key for the given file type.
+     *
+     * @param type file type
+     * @return key
+     */
+    @NotNull
+    public static IgnoreFileTypeKey get(@NotNull IgnoreFileType type) {
+        final IgnoreFileTypeKey key = Keys.BY_NAME.get(type.getLanguageName());
+        return key != null ? key : new IgnoreFileTypeKey(type, -1);
+    }
+
+    /**
+     * Returns cached key for the given identifier.
+     *
+     * @param id key identifier
+     * @return key or <code>null</code> if identifier is unknown
+     */
+    @Nullable
+    public static IgnoreFileTypeKey get(int id) {
+        return id >= 0 && id < Keys.BY_ID.length ? Keys.BY_ID[id] : null;
     }
 
     /**
@@ -58,6 +92,15 @@ public class IgnoreFileTypeKey {
         return type;
     }
 
+    /**
+     * Returns key identifier.
+     *
+     * @return identifier or <code>-1</code> if language is not registered
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Checks if file types are equal - if language names matches.
      *
@@ -66,7 +109,10 @@ public class IgnoreFileTypeKey {
      */
     @Override
     public boolean equals(@Nullable Object o) {
-        return o != null && o instanceof IgnoreFileTypeKey &&
+        if (this == o) {
+            return true;
+        }
+        return o instanceof IgnoreFileTypeKey &&
                 ((IgnoreFileTypeKey) o).getType().getLanguageName().equals(this.type.getLanguageName());
     }
 
@@ -79,4 +125,21 @@ public class IgnoreFileTypeKey {
     public int hashCode() {
         return type.getLanguageName().hashCode();
     }
+
+    /** Lazily initialized keys lookup tables. */
+    private static class Keys {
+        /** Keys ordered by their identifiers. */
+        private static final IgnoreFileTypeKey[] BY_ID = new IgnoreFileTypeKey[IgnoreBundle.LANGUAGES.size()];
+
+        /** Keys mapped by the language names. */
+        private static final Map<String, IgnoreFileTypeKey> BY_NAME = ContainerUtil.newHashMap();
+
+        static {
+            for (int i = 0; i < BY_ID.length; i++) {
+                final IgnoreFileType type = IgnoreBundle.LANGUAGES.get(i).getFileType();
+                BY_ID[i] = new IgnoreFileTypeKey(type, i);
+                BY_NAME.put(type.getLanguageName(), BY_ID[i]);
+            }
+        }
+    }
 }
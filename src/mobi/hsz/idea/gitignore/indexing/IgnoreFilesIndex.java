@@ -26,7 +26,6 @@ package mobi.hsz.idea.gitignore.indexing;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.Function;
@@ -35,14 +34,12 @@ import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.FileContent;
 import com.intellij.util.indexing.ID;
 import com.intellij.util.io.DataExternalizer;
-import mobi.hsz.idea.gitignore.IgnoreBundle;
-import mobi.hsz.idea.gitignore.IgnoreManager;
+import com.intellij.util.io.DataInputOutputUtil;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
-import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
 import mobi.hsz.idea.gitignore.psi.IgnoreFile;
 import mobi.hsz.idea.gitignore.psi.IgnoreVisitor;
-import mobi.hsz.idea.gitignore.util.Glob;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.DataInput;
@@ -62,7 +59,7 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     public static final ID<IgnoreFileTypeKey, IgnoreEntryOccurrence> KEY = ID.create("IgnoreFilesIndex");
 
     /** Current indexer version. Has to be increased if significant changes have been done. */
-    private static final int VERSION = 5;
+    private static final int VERSION = 10;
 
     /**
      * Returns indexer's name.
@@ -76,7 +73,8 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     }
 
     /**
-     * Maps indexed files content to the {@link IgnoreEntryOccurrence}.
+     * Maps indexed files content to the {@link IgnoreEntryOccurrence}. Entries are compiled to {@link IgnoreRule}
+     * descriptors here, so the matching does not require parsing regex on the hot path.
      *
      * @param inputData indexed file data
      * @return {@link IgnoreEntryOccurrence} data mapped with {@link IgnoreFileTypeKey}
@@ -88,31 +86,43 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
             return Collections.emptyMap();
         }
 
-        final ArrayList<Pair<String, Boolean>> items = ContainerUtil.newArrayList();
+        return Collections.singletonMap(
+                IgnoreFileTypeKey.get((IgnoreFileType) inputData.getFileType()),
+                createOccurrence(inputData)
+        );
+    }
+
+    /**
+     * Compiles entries of the indexed ignore file to the {@link IgnoreEntryOccurrence}.
+     *
+     * @param inputData indexed file data
+     * @return {@link IgnoreEntryOccurrence} instance
+     */
+    @NotNull
+    static IgnoreEntryOccurrence createOccurrence(@NotNull FileContent inputData) {
+        final ArrayList<IgnoreRule> items = ContainerUtil.newArrayList();
         inputData.getPsiFile().acceptChildren(new IgnoreVisitor() {
             @Override
             public void visitEntry(@NotNull IgnoreEntry entry) {
-                final String regex = Glob.getRegex(entry.getValue(), entry.getSyntax(), false);
-                items.add(Pair.create(regex, entry.isNegated()));
+                items.add(IgnoreRule.create(entry.getValue(), entry.getSyntax(), entry.isNegated()));
             }
         });
-
-        return Collections.singletonMap(
-                new IgnoreFileTypeKey((IgnoreFileType) inputData.getFileType()),
-                new IgnoreEntryOccurrence(inputData.getFile().getUrl(), items)
-        );
+        return new IgnoreEntryOccurrence(inputData.getFile(), items);
     }
 
     /**
-     * Saves data to the indexing output stream.
+     * Saves data to the indexing output stream. Key is written as its {@link IgnoreFileTypeKey#getId()}.
      *
      * @param out   output stream
      * @param value filetype to write
      * @throws IOException if an I/O error occurs
      */
     @Override
-    public synchronized void save(@NotNull DataOutput out, IgnoreFileTypeKey value) throws IOException {
-        out.writeUTF(value.getType().getLanguageName());
+    public void save(@NotNull DataOutput out, IgnoreFileTypeKey value) throws IOException {
+        if (value.getId() < 0) {
+            throw new IOException("Unknown ignore language: " + value.getType().getLanguageName());
+        }
+        DataInputOutputUtil.writeINT(out, value.getId());
     }
 
     /**
@@ -124,15 +134,8 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
      * @throws IOException if an I/O error occurs
      */
     @Override
-    public synchronized IgnoreFileTypeKey read(@NotNull DataInput in) throws IOException {
-        final String languageName = in.readUTF();
-        for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
-            final IgnoreFileType type = language.getFileType();
-            if (type.getLanguageName().equals(languageName)) {
-                return new IgnoreFileTypeKey(type);
-            }
-        }
-        return null;
+    public IgnoreFileTypeKey read(@NotNull DataInput in) throws IOException {
+        return IgnoreFileTypeKey.get(DataInputOutputUtil.readINT(in));
     }
 
     /**
@@ -147,7 +150,7 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     }
 
     /** {@link DataExternalizer} instance. */
-    private static final DataExternalizer<IgnoreEntryOccurrence> DATA_EXTERNALIZER =
+    static final DataExternalizer<IgnoreEntryOccurrence> DATA_EXTERNALIZER =
             new DataExternalizer<IgnoreEntryOccurrence>() {
                 /**
                  * Saves data in the output stream.
@@ -184,15 +187,14 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
     }
 
     /**
-     * Obtains if given {@link VirtualFile} is accepted by indexer.
+     * Obtains if given {@link VirtualFile} is accepted by indexer. Uses name-based {@link IgnoreFileNameFilter}.
      *
      * @param file to check
      * @return file is accepted
      */
     @Override
     public boolean acceptInput(@NotNull VirtualFile file) {
-        return file.getFileType() instanceof IgnoreFileType ||
-                IgnoreManager.FILE_TYPES_ASSOCIATION_QUEUE.containsKey(file.getName());
+        return IgnoreFileNameFilter.accept(file);
     }
 
     /**
@@ -226,7 +228,7 @@ public class IgnoreFilesIndex extends AbstractIgnoreFilesIndex<IgnoreFileTypeKey
             if (ApplicationManager.getApplication().isReadAccessAllowed()) {
                 final GlobalSearchScope scope = IgnoreSearchScope.get(project);
                 return FileBasedIndex.getInstance()
-                        .getValues(IgnoreFilesIndex.KEY, new IgnoreFileTypeKey(fileType), scope);
+                        .getValues(IgnoreFilesIndex.KEY, IgnoreFileTypeKey.get(fileType), scope);
             }
         } catch (RuntimeException ignored) {
         }
@@ -26,13 +26,18 @@ package mobi.hsz.idea.gitignore.indexing;
 
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.SearchScope;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.file.type.IgnoreFileType;
+import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Provides extended {@link GlobalSearchScope} with additional ignore files (i.e. outer gitignore files).
@@ -41,21 +46,48 @@ import java.util.HashSet;
  * @since 2.0
  */
 public class IgnoreSearchScope extends GlobalSearchScope {
+    /** Key to store {@link CachedScope} in the project's user data. */
+    private static final Key<CachedScope> CACHED_SCOPE = Key.create("IgnoreSearchScope");
+
+    /** Extensions of all ignore languages - ignore file names like <code>.gitignore</code> are covered as well. */
+    private static final Set<String> EXTENSIONS = ContainerUtil.newHashSet();
+
+    static {
+        EXTENSIONS.add(IgnoreFileType.INSTANCE.getIgnoreLanguage().getExtension());
+        for (IgnoreLanguage language : IgnoreBundle.LANGUAGES) {
+            EXTENSIONS.add(language.getExtension());
+        }
+    }
+
     private IgnoreSearchScope(@NotNull Project project) {
         super(project);
     }
 
     /**
-     * Returns {@link GlobalSearchScope#projectScope(Project)} instance united with additional files.
+     * Returns {@link GlobalSearchScope#projectScope(Project)} instance united with additional files. Scope is cached
+     * in the project and rebuilt when the additional files snapshot or project roots are modified.
      *
      * @param project current project
      * @return extended instance of {@link GlobalSearchScope}
      */
     @NotNull
     public static GlobalSearchScope get(@NotNull Project project) {
+        final ExternalIndexableSetContributor.AdditionalFiles additionalFiles =
+                ExternalIndexableSetContributor.getAdditionalFiles(project);
+        final long filesModificationCount = additionalFiles.getModificationCount();
+        final long rootsModificationCount = ProjectRootManager.getInstance(project).getModificationCount();
+
+        final CachedScope cached = project.getUserData(CACHED_SCOPE);
+        if (cached != null && cached.filesModificationCount == filesModificationCount &&
+                cached.rootsModificationCount == rootsModificationCount) {
+            return cached.scope;
+        }
+
         final IgnoreSearchScope scope = new IgnoreSearchScope(project);
-        final HashSet<VirtualFile> files = ExternalIndexableSetContributor.getAdditionalFiles(project);
-        return scope.uniteWith(GlobalSearchScope.filesScope(project, files));
+        final Set<VirtualFile> files = additionalFiles.getValidFiles();
+        final GlobalSearchScope result = scope.uniteWith(GlobalSearchScope.filesScope(project, files));
+        project.putUserData(CACHED_SCOPE, new CachedScope(result, filesModificationCount, rootsModificationCount));
+        return result;
     }
 
     @Override
@@ -65,7 +97,8 @@ public class IgnoreSearchScope extends GlobalSearchScope {
 
     @Override
     public boolean contains(@NotNull final VirtualFile file) {
-        return file.getFileType() instanceof IgnoreFileType;
+        final String extension = file.getExtension();
+        return (extension != null && EXTENSIONS.contains(extension)) || file.getFileType() instanceof IgnoreFileType;
     }
 
     @Override
@@ -99,4 +132,31 @@ public class IgnoreSearchScope extends GlobalSearchScope {
     public SearchScope intersectWith(@NotNull SearchScope scope2) {
         return scope2;
     }
+
+    /** Composed scope with the modification counts it was built with. */
+    private static class CachedScope {
+        /** Composed scope. */
+        @NotNull
+        private final GlobalSearchScope scope;
+
+        /** {@link ExternalIndexableSetContributor.AdditionalFiles} modification count. */
+        private final long filesModificationCount;
+
+        /** {@link ProjectRootManager} modification count. */
+        private final long rootsModificationCount;
+
+        /**
+         * Constructor.
+         *
+         * @param scope                  composed scope
+         * @param filesModificationCount additional files modification count
+         * @param rootsModificationCount project roots modification count
+         */
+        private CachedScope(@NotNull GlobalSearchScope scope, long filesModificationCount,
+                            long rootsModificationCount) {
+            this.scope = scope;
+            this.filesModificationCount = filesModificationCount;
+            this.rootsModificationCount = rootsModificationCount;
+        }
+    }
 }
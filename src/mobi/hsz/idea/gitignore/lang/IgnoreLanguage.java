@@ -79,7 +79,8 @@ public class IgnoreLanguage extends Language implements InjectableLanguage {
 
     /** Outer files cache. */
     @NotNull
-    protected ExpiringMap<Integer, Set<VirtualFile>> outerFiles = new ExpiringMap<Integer, Set<VirtualFile>>(5000);
+    protected ExpiringMap<Integer, Set<VirtualFile>> outerFiles =
+            new ExpiringMap<Integer, Set<VirtualFile>>(5000, "IgnoreLanguage.outerFiles");
 
     /** {@link IgnoreLanguage} is a non-instantiable static class. */
     protected IgnoreLanguage() {
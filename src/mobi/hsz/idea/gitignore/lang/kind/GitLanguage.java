@@ -36,11 +36,13 @@ import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.outer.OuterIgnoreLoaderComponent.OuterFileFetcher;
 import mobi.hsz.idea.gitignore.util.Icons;
 import mobi.hsz.idea.gitignore.util.Utils;
-import mobi.hsz.idea.gitignore.util.exec.ExternalExec;
+import mobi.hsz.idea.gitignore.util.git.GitConfig;
+import mobi.hsz.idea.gitignore.util.git.GitTrackedIgnoredFiles;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
@@ -62,12 +64,14 @@ public class GitLanguage extends IgnoreLanguage {
     private GitLanguage() {
         super("Git", "gitignore", ".git", Icons.GIT, new OuterFileFetcher[]{
 
-                // Outer file fetched from the `git config core.excludesfile`.
+                // Outer file resolved from the `core.excludesfile` of the global Git configuration.
                 new OuterFileFetcher() {
                     @NotNull
                     @Override
                     public Collection<VirtualFile> fetch(@NotNull Project project) {
-                        return ContainerUtil.newArrayList(ExternalExec.getGitExcludesFile());
+                        final VirtualFile baseDir = project.getBaseDir();
+                        final File gitDir = baseDir != null ? GitTrackedIgnoredFiles.getGitDirectory(baseDir) : null;
+                        return ContainerUtil.newArrayList(GitConfig.getExcludesFile(gitDir));
                     }
                 }
 
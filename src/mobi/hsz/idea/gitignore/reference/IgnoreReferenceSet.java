@@ -25,12 +25,11 @@
 package mobi.hsz.idea.gitignore.reference;
 
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.resolve.reference.impl.providers.FileReference;
 import com.intellij.psi.impl.source.resolve.reference.impl.providers.FileReferenceSet;
@@ -48,7 +47,6 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 /**
@@ -197,17 +195,28 @@ public class IgnoreReferenceSet extends FileReferenceSet {
      * Custom definition of {@link FileReference}.
      */
     private class IgnoreReference extends FileReference {
-        /**
-         * Concurrent cache map.
-         */
-        private final ConcurrentMap<String, Collection<VirtualFile>> cacheMap;
-
         /**
          * Builds an instance of {@link IgnoreReferenceSet.IgnoreReference}.
          */
         public IgnoreReference(@NotNull FileReferenceSet fileReferenceSet, TextRange range, int index, String text) {
             super(fileReferenceSet, range, index, text);
-            cacheMap = ContainerUtil.newConcurrentMap();
+        }
+
+        /**
+         * Resolves reference using the results of the whole file stored in {@link IgnoreResolveCache}.
+         *
+         * @param incompleteCode code is incomplete
+         * @return resolved results
+         */
+        @NotNull
+        @Override
+        public ResolveResult[] multiResolve(final boolean incompleteCode) {
+            return IgnoreResolveCache.resolve(this, incompleteCode, new Computable<ResolveResult[]>() {
+                @Override
+                public ResolveResult[] compute() {
+                    return IgnoreReference.super.multiResolve(incompleteCode);
+                }
+            });
         }
 
         /**
@@ -265,33 +274,10 @@ public class IgnoreReferenceSet extends FileReferenceSet {
                                 }
                         ));
                     } else if (current.endsWith(Constants.DOUBLESTAR)) {
-                        final String key = entry.getText();
-                        if (!cacheMap.containsKey(key)) {
-                            final Collection<VirtualFile> children = ContainerUtil.newArrayList();
-                            final VirtualFileVisitor<?> visitor = new VirtualFileVisitor<Object>() {
-                                @Override
-                                public boolean visitFile(@NotNull VirtualFile file) {
-                                    if (file.isDirectory()) {
-                                        children.add(file);
-                                        return true;
-                                    }
-                                    return false;
-                                }
-                            };
-
-                            for (VirtualFile file : files) {
-                                ProgressManager.checkCanceled();
-                                if (!file.isDirectory()) {
-                                    continue;
-                                }
-                                VfsUtil.visitChildrenRecursively(file, visitor);
-                                children.remove(file);
-                            }
-                            cacheMap.put(key, children);
-
-                        }
+                        final Collection<VirtualFile> children =
+                                filesIndexCache.getSubdirectories(root, pattern, files);
                         files.clear();
-                        files.addAll(cacheMap.get(key));
+                        files.addAll(children);
                     }
                     for (VirtualFile file : files) {
                         ProgressManager.checkCanceled();
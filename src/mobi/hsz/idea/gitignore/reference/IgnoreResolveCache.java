@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.reference;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.resolve.reference.impl.providers.FileReference;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.psi.IgnoreEntry;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the resolved {@link IgnoreReferenceSet} references of the ignore file. References are recreated by
+ * the providers on every {@link PsiElement#getReferences()} call, so results are stored in the file with the entry
+ * offset and reference range and kept until file or the files tree is modified.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class IgnoreResolveCache {
+    /** Resolved references of the file. */
+    private static final Key<CachedValue<ConcurrentMap<String, ResolveResult[]>>> KEY =
+            Key.create("IgnoreResolveCache");
+
+    /** Private constructor to prevent creating {@link IgnoreResolveCache} instance. */
+    private IgnoreResolveCache() {
+    }
+
+    /**
+     * Returns cached results of the given reference or resolves it with the given resolver.
+     *
+     * @param reference      reference to resolve
+     * @param incompleteCode code is incomplete
+     * @param resolver       resolver called if results are not cached
+     * @return resolved results
+     */
+    @NotNull
+    static ResolveResult[] resolve(@NotNull FileReference reference, boolean incompleteCode,
+                                   @NotNull Computable<ResolveResult[]> resolver) {
+        final PsiElement element = reference.getElement();
+        final PsiFile file = element.getContainingFile();
+        if (file == null) {
+            return resolver.compute();
+        }
+
+        final ConcurrentMap<String, ResolveResult[]> cache = getCache(file);
+        final String key = element.getTextRange().getStartOffset() + ":" + reference.getRangeInElement() + ":" +
+                incompleteCode;
+        ResolveResult[] result = cache.get(key);
+        IgnoreStatistics.recordCache("IgnoreResolveCache", result != null);
+        if (result == null) {
+            result = resolver.compute();
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves references of the given entries concurrently under the current progress indicator, so the following
+     * {@link PsiPolyVariantReference#multiResolve(boolean)} calls use the cached results.
+     *
+     * @param entries entries to resolve
+     */
+    public static void preResolve(@NotNull List<IgnoreEntry> entries) {
+        final List<PsiPolyVariantReference> references = ContainerUtil.newArrayList();
+        for (IgnoreEntry entry : entries) {
+            for (PsiReference reference : entry.getReferences()) {
+                if (reference instanceof PsiPolyVariantReference) {
+                    references.add((PsiPolyVariantReference) reference);
+                }
+            }
+        }
+        if (references.size() < 2) {
+            return;
+        }
+
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator == null) {
+            indicator = new EmptyProgressIndicator();
+        }
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(references, indicator, false,
+                new Processor<PsiPolyVariantReference>() {
+                    @Override
+                    public boolean process(PsiPolyVariantReference reference) {
+                        reference.multiResolve(false);
+                        return true;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Returns results cache of the given file, dropped when file or the files tree is modified.
+     *
+     * @param file ignore file
+     * @return results cache
+     */
+    @NotNull
+    private static ConcurrentMap<String, ResolveResult[]> getCache(@NotNull final PsiFile file) {
+        return CachedValuesManager.getCachedValue(file, KEY,
+                new CachedValueProvider<ConcurrentMap<String, ResolveResult[]>>() {
+                    @Nullable
+                    @Override
+                    public Result<ConcurrentMap<String, ResolveResult[]>> compute() {
+                        return Result.create(
+                                ContainerUtil.<String, ResolveResult[]>newConcurrentMap(),
+                                file,
+                                VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS
+                        );
+                    }
+                }
+        );
+    }
+}
@@ -34,6 +34,9 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.vcs.VcsRoot;
@@ -49,6 +52,7 @@ import com.intellij.util.ui.tree.TreeUtil;
 import mobi.hsz.idea.gitignore.IgnoreBundle;
 import mobi.hsz.idea.gitignore.util.Utils;
 import mobi.hsz.idea.gitignore.util.exec.ExternalExec;
+import mobi.hsz.idea.gitignore.util.exec.GitCheckIgnoreSession;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -58,6 +62,7 @@ import javax.swing.event.TreeModelListener;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
@@ -260,19 +265,65 @@ public class UntrackFilesDialog extends DialogWrapper {
      * This method is invoked by default implementation of "OK" action. It just closes dialog with
      * <code>OK_EXIT_CODE</code>. This is convenient place to override functionality of "OK" action.
      * Note that the method does nothing if "OK" action isn't enabled.
+     * <p>
+     * Git commands are executed in the background task, so the dialog does not block the UI.
      */
     @Override
     protected void doOKAction() {
         super.doOKAction();
 
-        HashMap<VcsRoot, ArrayList<VirtualFile>> checked = getCheckedFiles();
-        for (Map.Entry<VcsRoot, ArrayList<VirtualFile>> entry : checked.entrySet()) {
-            for (VirtualFile file : entry.getValue()) {
-                ExternalExec.removeFileFromTracking(file, entry.getKey());
+        final HashMap<VcsRoot, ArrayList<VirtualFile>> checked = getCheckedFiles();
+        ProgressManager.getInstance().run(new Task.Backgroundable(project,
+                IgnoreBundle.message("dialog.untrackFiles.progress"), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                for (Map.Entry<VcsRoot, ArrayList<VirtualFile>> entry : checked.entrySet()) {
+                    indicator.checkCanceled();
+                    final Map<String, GitCheckIgnoreSession.Match> statuses =
+                            getStatuses(entry.getKey(), entry.getValue());
+                    for (VirtualFile file : entry.getValue()) {
+                        indicator.checkCanceled();
+                        if (statuses != null) {
+                            final GitCheckIgnoreSession.Match match =
+                                    statuses.get(Utils.getRelativePath(entry.getKey().getPath(), file));
+                            if (match != null && !match.isIgnored()) {
+                                continue;
+                            }
+                        }
+                        ExternalExec.removeFileFromTracking(file, entry.getKey());
+                    }
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                if (!project.isDisposed()) {
+                    project.getMessageBus().syncPublisher(TRACKED_IGNORED_REFRESH).refresh();
+                }
             }
+        });
+    }
+
+    /**
+     * Confirms with git that the given files are still ignored before removing them from the tracking.
+     *
+     * @param vcsRoot files' repository
+     * @param files   files to check
+     * @return git statuses mapped by the relative path or <code>null</code> if not available
+     */
+    @Nullable
+    private static Map<String, GitCheckIgnoreSession.Match> getStatuses(@NotNull VcsRoot vcsRoot,
+                                                                        @NotNull List<VirtualFile> files) {
+        final VirtualFile root = vcsRoot.getPath();
+        if (root == null) {
+            return null;
         }
 
-        project.getMessageBus().syncPublisher(TRACKED_IGNORED_REFRESH).refresh();
+        final List<String> paths = ContainerUtil.newArrayList();
+        for (VirtualFile file : files) {
+            paths.add(Utils.getRelativePath(root, file));
+        }
+        return ExternalExec.checkIgnore(root, paths);
     }
 
     /**
@@ -26,7 +26,11 @@ package mobi.hsz.idea.gitignore.util;
 
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -38,20 +42,44 @@ import java.util.concurrent.ConcurrentMap;
 public class CachedConcurrentMap<K, V> {
     /** Cache map. */
     @NotNull
-    private final ConcurrentMap<K, V> map;
+    private final Map<K, V> map;
 
     /** Data fetcher instance invoked if key is not filled with value. */
     @NotNull
     private final DataFetcher<K, V> fetcher;
 
+    /** Cache name used for the {@link IgnoreStatistics}. */
+    @Nullable
+    private final String name;
+
     /**
      * Default constructor.
      *
      * @param fetcher data fetcher
+     * @param name    cache name
      */
-    private CachedConcurrentMap(@NotNull DataFetcher<K, V> fetcher) {
+    private CachedConcurrentMap(@NotNull DataFetcher<K, V> fetcher, @Nullable String name) {
         this.map = ContainerUtil.createConcurrentWeakMap();
         this.fetcher = fetcher;
+        this.name = name;
+    }
+
+    /**
+     * Constructor of the bounded cache. The least recently used value is dropped when the limit is exceeded.
+     *
+     * @param fetcher data fetcher
+     * @param name    cache name
+     * @param limit   maximum number of the cached values
+     */
+    private CachedConcurrentMap(@NotNull DataFetcher<K, V> fetcher, @Nullable String name, final int limit) {
+        this.map = Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > limit;
+            }
+        });
+        this.fetcher = fetcher;
+        this.name = name;
     }
 
     /**
@@ -62,7 +90,33 @@ public class CachedConcurrentMap<K, V> {
      */
     @NotNull
     public static <K, V> CachedConcurrentMap<K, V> create(@NotNull DataFetcher<K, V> fetcher) {
-        return new CachedConcurrentMap<K, V>(fetcher);
+        return new CachedConcurrentMap<K, V>(fetcher, null);
+    }
+
+    /**
+     * Instance creator.
+     *
+     * @param name    cache name reported to {@link IgnoreStatistics}
+     * @param fetcher fetcher
+     * @return instance of {@link CachedConcurrentMap}
+     */
+    @NotNull
+    public static <K, V> CachedConcurrentMap<K, V> create(@NotNull String name, @NotNull DataFetcher<K, V> fetcher) {
+        return new CachedConcurrentMap<K, V>(fetcher, name);
+    }
+
+    /**
+     * Creates bounded instance that keeps at most <code>limit</code> least recently used values.
+     *
+     * @param name    cache name reported to {@link IgnoreStatistics}
+     * @param limit   maximum number of the cached values
+     * @param fetcher fetcher
+     * @return instance of {@link CachedConcurrentMap}
+     */
+    @NotNull
+    public static <K, V> CachedConcurrentMap<K, V> create(@NotNull String name, int limit,
+                                                          @NotNull DataFetcher<K, V> fetcher) {
+        return new CachedConcurrentMap<K, V>(fetcher, name, limit);
     }
 
     /**
@@ -72,10 +126,15 @@ public class CachedConcurrentMap<K, V> {
      * @return value
      */
     public V get(@NotNull K key) {
-        if (!map.containsKey(key)) {
-            map.put(key, fetcher.fetch(key));
+        V value = map.get(key);
+        if (name != null) {
+            IgnoreStatistics.recordCache(name, value != null);
+        }
+        if (value == null) {
+            value = fetcher.fetch(key);
+            map.put(key, value);
         }
-        return map.get(key);
+        return value;
     }
 
     /**
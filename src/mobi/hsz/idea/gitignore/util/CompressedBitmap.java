@@ -0,0 +1,672 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of non-negative integers. Values are split by their high 16 bits into the containers
+ * holding the low 16 bits - sparse containers are kept as sorted arrays and dense containers as 65536 bit words,
+ * so set operations are done with merges or word-level operations instead of hashing every value.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class CompressedBitmap {
+    /** Empty bitmap. */
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+    /** Maximum number of values stored in the array container. */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /** Number of words in the bitmap container. */
+    private static final int WORDS = 1024;
+
+    /** Sorted high 16 bits of the values. */
+    @NotNull
+    private final char[] keys;
+
+    /** Containers of the low 16 bits, parallel to {@link #keys}. */
+    @NotNull
+    private final Container[] containers;
+
+    /**
+     * Constructor.
+     *
+     * @param keys       sorted keys
+     * @param containers not empty containers
+     */
+    private CompressedBitmap(@NotNull char[] keys, @NotNull Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    /**
+     * Creates bitmap of the given values.
+     *
+     * @param values non-negative values in any order
+     * @return bitmap
+     */
+    @NotNull
+    public static CompressedBitmap of(@NotNull int... values) {
+        final int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        final char[] keys = new char[sorted.length];
+        final Container[] containers = new Container[sorted.length];
+        int size = 0;
+        int start = 0;
+        while (start < sorted.length) {
+            if (sorted[start] < 0) {
+                throw new IllegalArgumentException("Negative value: " + sorted[start]);
+            }
+
+            final char key = high(sorted[start]);
+            int end = start;
+            final char[] low = new char[countKey(sorted, start, key)];
+            int count = 0;
+            while (end < sorted.length && high(sorted[end]) == key) {
+                if (count == 0 || low[count - 1] != low(sorted[end])) {
+                    low[count++] = low(sorted[end]);
+                }
+                end++;
+            }
+
+            keys[size] = key;
+            containers[size++] = Container.create(low, count);
+            start = end;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+    }
+
+    /**
+     * Checks if bitmap contains given value.
+     *
+     * @param value to check
+     * @return value is in the bitmap
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        final int index = Arrays.binarySearch(keys, high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    /**
+     * Checks if bitmap is empty.
+     *
+     * @return bitmap is empty
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Returns number of the values.
+     *
+     * @return cardinality
+     */
+    public int cardinality() {
+        int result = 0;
+        for (Container container : containers) {
+            result += container.cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * Returns values in the ascending order.
+     *
+     * @return values
+     */
+    @NotNull
+    public int[] toArray() {
+        final int[] result = new int[cardinality()];
+        int index = 0;
+        for (int i = 0; i < keys.length; i++) {
+            for (char low : containers[i].toArray()) {
+                result[index++] = (keys[i] << 16) | low;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns union of the bitmaps.
+     *
+     * @param other bitmap
+     * @return values in any of the bitmaps
+     */
+    @NotNull
+    public CompressedBitmap or(@NotNull CompressedBitmap other) {
+        final char[] resultKeys = new char[keys.length + other.keys.length];
+        final Container[] resultContainers = new Container[resultKeys.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j >= other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = containers[i++];
+            } else if (i >= keys.length || other.keys[j] < keys[i]) {
+                resultKeys[size] = other.keys[j];
+                resultContainers[size++] = other.containers[j++];
+            } else {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    /**
+     * Returns intersection of the bitmaps.
+     *
+     * @param other bitmap
+     * @return values in both bitmaps
+     */
+    @NotNull
+    public CompressedBitmap and(@NotNull CompressedBitmap other) {
+        final char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+        final Container[] resultContainers = new Container[resultKeys.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (other.keys[j] < keys[i]) {
+                j++;
+            } else {
+                final Container container = containers[i++].and(other.containers[j++]);
+                if (container != null) {
+                    resultKeys[size] = keys[i - 1];
+                    resultContainers[size++] = container;
+                }
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    /**
+     * Returns difference of the bitmaps.
+     *
+     * @param other bitmap
+     * @return values of the current bitmap that are not in the other bitmap
+     */
+    @NotNull
+    public CompressedBitmap andNot(@NotNull CompressedBitmap other) {
+        final char[] resultKeys = new char[keys.length];
+        final Container[] resultContainers = new Container[keys.length];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            final Container container = j < other.keys.length && other.keys[j] == keys[i] ?
+                    containers[i].andNot(other.containers[j]) : containers[i];
+            if (container != null) {
+                resultKeys[size] = keys[i];
+                resultContainers[size++] = container;
+            }
+        }
+        return create(resultKeys, resultContainers, size);
+    }
+
+    /**
+     * Checks if bitmaps have any common value.
+     *
+     * @param other bitmap
+     * @return bitmaps intersect
+     */
+    public boolean intersects(@NotNull CompressedBitmap other) {
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (other.keys[j] < keys[i]) {
+                j++;
+            } else if (containers[i++].intersects(other.containers[j++])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if all values of the other bitmap are in the current bitmap.
+     *
+     * @param other bitmap
+     * @return other bitmap is a subset
+     */
+    public boolean containsAll(@NotNull CompressedBitmap other) {
+        int i = 0;
+        for (int j = 0; j < other.keys.length; j++) {
+            while (i < keys.length && keys[i] < other.keys[j]) {
+                i++;
+            }
+            if (i >= keys.length || keys[i] != other.keys[j] || !containers[i].containsAll(other.containers[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompressedBitmap)) {
+            return false;
+        }
+        final CompressedBitmap other = (CompressedBitmap) obj;
+        return Arrays.equals(keys, other.keys) && containsAll(other) && other.containsAll(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    /**
+     * Creates bitmap with the given number of keys and containers.
+     *
+     * @param keys       keys
+     * @param containers containers
+     * @param size       number of the used elements
+     * @return bitmap
+     */
+    @NotNull
+    private static CompressedBitmap create(@NotNull char[] keys, @NotNull Container[] containers, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+    }
+
+    /**
+     * Counts values with the given high bits starting at the given index.
+     *
+     * @param sorted sorted values
+     * @param start  start index
+     * @param key    high bits
+     * @return number of values
+     */
+    private static int countKey(@NotNull int[] sorted, int start, char key) {
+        int end = start;
+        while (end < sorted.length && high(sorted[end]) == key) {
+            end++;
+        }
+        return end - start;
+    }
+
+    /**
+     * Returns high 16 bits of the value.
+     *
+     * @param value value
+     * @return high bits
+     */
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    /**
+     * Returns low 16 bits of the value.
+     *
+     * @param value value
+     * @return low bits
+     */
+    private static char low(int value) {
+        return (char) (value & 0xFFFF);
+    }
+
+    /** Immutable container of the low 16 bits. Operations return <code>null</code> for the empty result. */
+    private abstract static class Container {
+        /**
+         * Creates container of the given sorted values.
+         *
+         * @param values sorted distinct values
+         * @param size   number of the values
+         * @return array or bitmap container
+         */
+        @NotNull
+        static Container create(@NotNull char[] values, int size) {
+            if (size <= ARRAY_LIMIT) {
+                return new ArrayContainer(Arrays.copyOf(values, size));
+            }
+            final long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+
+        /**
+         * Checks if container contains given value.
+         *
+         * @param value low bits
+         * @return value is in the container
+         */
+        abstract boolean contains(char value);
+
+        /**
+         * Returns number of the values.
+         *
+         * @return cardinality
+         */
+        abstract int cardinality();
+
+        /**
+         * Returns sorted values.
+         *
+         * @return values
+         */
+        @NotNull
+        abstract char[] toArray();
+
+        /**
+         * Returns values as bitmap words. Returned array must not be modified.
+         *
+         * @return words
+         */
+        @NotNull
+        abstract long[] toWords();
+
+        /**
+         * Returns union of the containers.
+         *
+         * @param other container
+         * @return union
+         */
+        @NotNull
+        Container or(@NotNull Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer) {
+                final char[] a = toArray();
+                final char[] b = other.toArray();
+                final char[] result = new char[a.length + b.length];
+                int size = 0;
+                int i = 0;
+                int j = 0;
+                while (i < a.length || j < b.length) {
+                    if (j >= b.length || i < a.length && a[i] < b[j]) {
+                        result[size++] = a[i++];
+                    } else if (i >= a.length || b[j] < a[i]) {
+                        result[size++] = b[j++];
+                    } else {
+                        result[size++] = a[i++];
+                        j++;
+                    }
+                }
+                return create(result, size);
+            }
+
+            final long[] words = toWords().clone();
+            final long[] otherWords = other.toWords();
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= otherWords[i];
+            }
+            return fromWords(words);
+        }
+
+        /**
+         * Returns intersection of the containers.
+         *
+         * @param other container
+         * @return intersection or <code>null</code> if empty
+         */
+        @Nullable
+        Container and(@NotNull Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                final long[] words = toWords().clone();
+                final long[] otherWords = other.toWords();
+                for (int i = 0; i < WORDS; i++) {
+                    words[i] &= otherWords[i];
+                }
+                return fromWords(words);
+            }
+
+            final Container array = this instanceof ArrayContainer ? this : other;
+            final Container probe = array == this ? other : this;
+            final char[] values = array.toArray();
+            final char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (probe.contains(value)) {
+                    result[size++] = value;
+                }
+            }
+            return size > 0 ? create(result, size) : null;
+        }
+
+        /**
+         * Returns difference of the containers.
+         *
+         * @param other container
+         * @return difference or <code>null</code> if empty
+         */
+        @Nullable
+        Container andNot(@NotNull Container other) {
+            if (this instanceof BitmapContainer) {
+                final long[] words = toWords().clone();
+                final long[] otherWords = other.toWords();
+                for (int i = 0; i < WORDS; i++) {
+                    words[i] &= ~otherWords[i];
+                }
+                return fromWords(words);
+            }
+
+            final char[] values = toArray();
+            final char[] result = new char[values.length];
+            int size = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[size++] = value;
+                }
+            }
+            if (size == values.length) {
+                return this;
+            }
+            return size > 0 ? create(result, size) : null;
+        }
+
+        /**
+         * Checks if containers have any common value.
+         *
+         * @param other container
+         * @return containers intersect
+         */
+        boolean intersects(@NotNull Container other) {
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                final long[] words = toWords();
+                final long[] otherWords = other.toWords();
+                for (int i = 0; i < WORDS; i++) {
+                    if ((words[i] & otherWords[i]) != 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            final Container array = this instanceof ArrayContainer ? this : other;
+            final Container probe = array == this ? other : this;
+            for (char value : array.toArray()) {
+                if (probe.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks if all values of the other container are in the current container.
+         *
+         * @param other container
+         * @return other container is a subset
+         */
+        boolean containsAll(@NotNull Container other) {
+            if (other.cardinality() > cardinality()) {
+                return false;
+            }
+            if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+                final long[] words = toWords();
+                final long[] otherWords = other.toWords();
+                for (int i = 0; i < WORDS; i++) {
+                    if ((otherWords[i] & ~words[i]) != 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            for (char value : other.toArray()) {
+                if (!contains(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Creates container of the given words, converted to the array container if it is sparse.
+         *
+         * @param words bitmap words
+         * @return container or <code>null</code> if there are no values
+         */
+        @Nullable
+        static Container fromWords(@NotNull long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new BitmapContainer(words, cardinality);
+            }
+
+            final char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+
+    /** Sparse container holding sorted values. */
+    private static class ArrayContainer extends Container {
+        /** Sorted values. */
+        @NotNull
+        private final char[] values;
+
+        ArrayContainer(@NotNull char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @NotNull
+        @Override
+        char[] toArray() {
+            return values;
+        }
+
+        @NotNull
+        @Override
+        long[] toWords() {
+            final long[] words = new long[WORDS];
+            for (char value : values) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return words;
+        }
+    }
+
+    /** Dense container holding values as bits. */
+    private static class BitmapContainer extends Container {
+        /** Bitmap words. */
+        @NotNull
+        private final long[] words;
+
+        /** Number of the set bits. */
+        private final int cardinality;
+
+        BitmapContainer(@NotNull long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @NotNull
+        @Override
+        char[] toArray() {
+            final char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return values;
+        }
+
+        @NotNull
+        @Override
+        long[] toWords() {
+            return words;
+        }
+    }
+}
@@ -26,6 +26,7 @@ package mobi.hsz.idea.gitignore.util;
 
 import com.intellij.concurrency.JobScheduler;
 import com.intellij.openapi.project.DumbAwareRunnable;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.ScheduledFuture;
@@ -45,6 +46,10 @@ public abstract class Debounced<T> implements DumbAwareRunnable {
     /** Debounce time. */
     private final int delay;
 
+    /** Task name used for the {@link IgnoreStatistics}. */
+    @NotNull
+    private final String name;
+
     /**
      * Constructor.
      *
@@ -52,6 +57,18 @@ public abstract class Debounced<T> implements DumbAwareRunnable {
      */
     public Debounced(int delay) {
         this.delay = delay;
+        this.name = getClass().getName();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delay debounce time
+     * @param name  task name reported to {@link IgnoreStatistics}
+     */
+    public Debounced(int delay, @NotNull String name) {
+        this.delay = delay;
+        this.name = name;
     }
 
     /** Wrapper run() method to invoke {@link #timer} properly. */
@@ -62,9 +79,8 @@ public abstract class Debounced<T> implements DumbAwareRunnable {
 
     /** Wrapper run() method to invoke {@link #timer} properly. */
     public final void run(@Nullable final T argument) {
-        if (timer != null) {
-            timer.cancel(false);
-        }
+        final boolean coalesced = timer != null && timer.cancel(false);
+        IgnoreStatistics.recordDebounced(name, coalesced);
 
         timer = JobScheduler.getScheduler().schedule(new DumbAwareRunnable() {
             @Override
@@ -0,0 +1,323 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TIntIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Snapshot of the directories tree stored as compact arrays of file ids. Directories are kept in the pre-order,
+ * so all subdirectories of the directory are placed in the range between its index and the index stored
+ * in {@link #ends}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class DirectoryTree {
+    /** Root directory of the tree. */
+    @NotNull
+    private final VirtualFile root;
+
+    /** Directories ids in the pre-order. */
+    @NotNull
+    private final int[] ids;
+
+    /** Index of the parent directory or <code>-1</code> for the root. */
+    @NotNull
+    private final int[] parents;
+
+    /** Index after the last subdirectory of the directory. */
+    @NotNull
+    private final int[] ends;
+
+    /** Directory ids mapped with their indexes. */
+    @NotNull
+    private final TIntIntHashMap indexes;
+
+    /**
+     * Constructor.
+     *
+     * @param root    root directory
+     * @param ids     directories ids
+     * @param parents parents indexes
+     * @param ends    subtrees ends
+     */
+    private DirectoryTree(@NotNull VirtualFile root, @NotNull int[] ids, @NotNull int[] parents, @NotNull int[] ends) {
+        this.root = root;
+        this.ids = ids;
+        this.parents = parents;
+        this.ends = ends;
+        this.indexes = new TIntIntHashMap(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            indexes.put(ids[i], i);
+        }
+    }
+
+    /**
+     * Creates snapshot of the directories tree under the given root.
+     *
+     * @param root  root directory
+     * @param limit maximum number of directories
+     * @return tree or <code>null</code> if root is not persistent or limit has been exceeded
+     */
+    @Nullable
+    public static DirectoryTree create(@NotNull VirtualFile root, final int limit) {
+        if (!(root instanceof VirtualFileWithId) || !root.isDirectory()) {
+            return null;
+        }
+
+        final TIntArrayList ids = new TIntArrayList();
+        final TIntArrayList parents = new TIntArrayList();
+        final TIntArrayList ends = new TIntArrayList();
+        if (!collect(root, 0, -1, limit, ids, parents, ends)) {
+            return null;
+        }
+        return new DirectoryTree(root, ids.toNativeArray(), parents.toNativeArray(), ends.toNativeArray());
+    }
+
+    /**
+     * Collects directories under the given directory in the pre-order. Indexes stored in the parents and ends
+     * lists are shifted by the given offset, so the result can be placed at this position of the tree.
+     *
+     * @param directory directory to visit
+     * @param offset    index of the directory in the tree
+     * @param parent    index of the directory's parent in the tree
+     * @param limit     maximum number of directories
+     * @param ids       directories ids
+     * @param parents   parents indexes
+     * @param ends      subtrees ends
+     * @return limit has not been exceeded
+     */
+    private static boolean collect(@NotNull VirtualFile directory, final int offset, final int parent,
+                                   final int limit, @NotNull final TIntArrayList ids,
+                                   @NotNull final TIntArrayList parents, @NotNull final TIntArrayList ends) {
+        final TIntArrayList stack = new TIntArrayList();
+        final boolean[] exceeded = new boolean[1];
+
+        VfsUtilCore.visitChildrenRecursively(directory, new VirtualFileVisitor<Object>() {
+            @Override
+            public boolean visitFile(@NotNull VirtualFile file) {
+                ProgressManager.checkCanceled();
+                if (exceeded[0] || !file.isDirectory() || !(file instanceof VirtualFileWithId)) {
+                    return false;
+                }
+                if (ids.size() >= limit) {
+                    exceeded[0] = true;
+                    return false;
+                }
+
+                stack.add(ids.size());
+                parents.add(stack.size() > 1 ? offset + stack.get(stack.size() - 2) : parent);
+                ids.add(((VirtualFileWithId) file).getId());
+                ends.add(-1);
+                return true;
+            }
+
+            @Override
+            public void afterChildrenVisited(@NotNull VirtualFile file) {
+                final int index = stack.remove(stack.size() - 1);
+                ends.set(index, offset + ids.size());
+            }
+        });
+
+        return !exceeded[0];
+    }
+
+    /**
+     * Returns a copy of the tree with the directories under the given directory added. Only the new directory
+     * is visited, the rest of the tree is copied. Parent of the directory has to be a part of the tree.
+     *
+     * @param directory new directory
+     * @param limit     maximum number of directories in the tree
+     * @return updated tree, the same instance if directory cannot be added or <code>null</code> if limit
+     * has been exceeded
+     */
+    @Nullable
+    public DirectoryTree addSubtree(@NotNull VirtualFile directory, int limit) {
+        final VirtualFile parent = directory.getParent();
+        if (!(directory instanceof VirtualFileWithId) || !directory.isDirectory() || contains(directory)
+                || parent == null || !contains(parent)) {
+            return this;
+        }
+
+        final int parentIndex = indexes.get(((VirtualFileWithId) parent).getId());
+        final int position = ends[parentIndex];
+        final TIntArrayList addedIds = new TIntArrayList();
+        final TIntArrayList addedParents = new TIntArrayList();
+        final TIntArrayList addedEnds = new TIntArrayList();
+        if (!collect(directory, position, parentIndex, limit - ids.length, addedIds, addedParents, addedEnds)) {
+            return null;
+        }
+
+        final int count = addedIds.size();
+        final int size = ids.length + count;
+        final int[] newIds = new int[size];
+        final int[] newParents = new int[size];
+        final int[] newEnds = new int[size];
+
+        for (int i = 0; i < position; i++) {
+            newIds[i] = ids[i];
+            newParents[i] = parents[i];
+            newEnds[i] = ends[i] > position ? ends[i] + count : ends[i];
+        }
+        for (int i = parentIndex; i >= 0; i = parents[i]) {
+            if (ends[i] == position) {
+                newEnds[i] += count;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            newIds[position + i] = addedIds.get(i);
+            newParents[position + i] = addedParents.get(i);
+            newEnds[position + i] = addedEnds.get(i);
+        }
+        for (int i = position; i < ids.length; i++) {
+            newIds[i + count] = ids[i];
+            newParents[i + count] = parents[i] >= position ? parents[i] + count : parents[i];
+            newEnds[i + count] = ends[i] + count;
+        }
+
+        return new DirectoryTree(root, newIds, newParents, newEnds);
+    }
+
+    /**
+     * Returns a copy of the tree without the given directory and its subdirectories. The rest of the tree
+     * is copied without visiting the files. Root of the tree cannot be removed.
+     *
+     * @param directory directory to remove
+     * @return updated tree or the same instance if directory is not a part of the tree or is its root
+     */
+    @NotNull
+    public DirectoryTree removeSubtree(@NotNull VirtualFile directory) {
+        if (!contains(directory)) {
+            return this;
+        }
+
+        final int start = indexes.get(((VirtualFileWithId) directory).getId());
+        if (start == 0) {
+            return this;
+        }
+
+        final int end = ends[start];
+        final int count = end - start;
+        final int size = ids.length - count;
+        final int[] newIds = new int[size];
+        final int[] newParents = new int[size];
+        final int[] newEnds = new int[size];
+
+        for (int i = 0; i < start; i++) {
+            newIds[i] = ids[i];
+            newParents[i] = parents[i];
+            newEnds[i] = ends[i] >= end ? ends[i] - count : ends[i];
+        }
+        for (int i = end; i < ids.length; i++) {
+            newIds[i - count] = ids[i];
+            newParents[i - count] = parents[i] >= end ? parents[i] - count : parents[i];
+            newEnds[i - count] = ends[i] - count;
+        }
+
+        return new DirectoryTree(root, newIds, newParents, newEnds);
+    }
+
+    /**
+     * Returns root directory of the tree.
+     *
+     * @return root directory
+     */
+    @NotNull
+    public VirtualFile getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns number of the directories in the tree.
+     *
+     * @return directories count
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Checks if given directory is a part of the tree.
+     *
+     * @param directory to check
+     * @return directory is in the tree
+     */
+    public boolean contains(@NotNull VirtualFile directory) {
+        return directory instanceof VirtualFileWithId && indexes.containsKey(((VirtualFileWithId) directory).getId());
+    }
+
+    /**
+     * Returns ids of all subdirectories of the given directory, excluding the directory itself.
+     *
+     * @param directory parent directory
+     * @return subdirectories ids or empty array if directory is not in the tree
+     */
+    @NotNull
+    public int[] getSubdirectories(@NotNull VirtualFile directory) {
+        if (!contains(directory)) {
+            return new int[0];
+        }
+
+        final int index = indexes.get(((VirtualFileWithId) directory).getId());
+        final int[] result = new int[ends[index] - index - 1];
+        System.arraycopy(ids, index + 1, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Returns id of the parent directory of the given directory.
+     *
+     * @param directory child directory
+     * @return parent id or <code>-1</code> if directory is the root or is not in the tree
+     */
+    public int getParent(@NotNull VirtualFile directory) {
+        if (!contains(directory)) {
+            return -1;
+        }
+        final int parent = parents[indexes.get(((VirtualFileWithId) directory).getId())];
+        return parent < 0 ? -1 : ids[parent];
+    }
+
+    /**
+     * Resolves directory by its id.
+     *
+     * @param id directory id
+     * @return directory or <code>null</code> if it is not valid anymore
+     */
+    @Nullable
+    public static VirtualFile findDirectory(int id) {
+        final VirtualFile file = PersistentFS.getInstance().findFileById(id);
+        return file != null && file.isValid() && file.isDirectory() ? file : null;
+    }
+}
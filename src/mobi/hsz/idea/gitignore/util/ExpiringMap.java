@@ -43,6 +43,10 @@ public class ExpiringMap<K, V> {
     /** Time to expire. */
     private final int time;
 
+    /** Cache name used for the {@link IgnoreStatistics}. */
+    @Nullable
+    private final String name;
+
     /** Cache map. */
     private final ConcurrentHashMap<K, Pair<V, Long>> map = new ConcurrentHashMap<K, Pair<V, Long>>();
 
@@ -52,7 +56,18 @@ public class ExpiringMap<K, V> {
      * @param time to expire
      */
     public ExpiringMap(int time) {
+        this(time, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param time to expire
+     * @param name cache name reported to {@link IgnoreStatistics}
+     */
+    public ExpiringMap(int time, @Nullable String name) {
         this.time = time;
+        this.name = name;
     }
 
     /**
@@ -67,10 +82,16 @@ public class ExpiringMap<K, V> {
         final Pair<V, Long> data = map.get(key);
         if (data != null) {
             if ((data.getSecond() + time) > current) {
+                if (name != null) {
+                    IgnoreStatistics.recordCache(name, true);
+                }
                 return data.getFirst();
             }
             map.remove(key);
         }
+        if (name != null) {
+            IgnoreStatistics.recordCache(name, false);
+        }
         return null;
     }
 
@@ -233,10 +233,14 @@ public class Glob {
     @Nullable
     public static Pattern getPattern(@NotNull String regex) {
         try {
-            if (!PATTERNS_CACHE.containsKey(regex)) {
-                PATTERNS_CACHE.put(regex, Pattern.compile(regex));
+            Pattern pattern = PATTERNS_CACHE.get(regex);
+            IgnoreStatistics.recordCache("Glob.patterns", pattern != null);
+            if (pattern == null) {
+                pattern = Pattern.compile(regex);
+                PATTERNS_CACHE.put(regex, pattern);
+                IgnoreStatistics.recordRuleCompiled();
             }
-            return PATTERNS_CACHE.get(regex);
+            return pattern;
         } catch (PatternSyntaxException e) {
             return null;
         }
@@ -253,6 +257,7 @@ public class Glob {
     public static String createRegex(@NotNull String glob, boolean acceptChildren) {
         glob = glob.trim();
         String cached = GLOBS_CACHE.get(glob);
+        IgnoreStatistics.recordCache("Glob.globs", cached != null);
         if (cached != null) {
             return cached;
         }
@@ -0,0 +1,603 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Language of the Git ignore glob compiled to the non-deterministic automaton. Language contains all relative paths
+ * ignored by the glob - matched files and directories with their whole content - so one entry covers another when
+ * its language includes the language of the other entry. Checks are done on the product of both automatons over
+ * the finite partition of characters used by the globs and do not require any file in the files tree.
+ * <p>
+ * Paths have no leading slash, no empty segments and directories end with a slash.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GlobLanguage {
+    /** Maximum number of the product states visited before giving up. */
+    private static final int MAX_STATES = 10000;
+
+    /** Path separator. */
+    private static final char SLASH = '/';
+
+    /** Transitions of the states. */
+    @NotNull
+    private final List<List<Transition>> transitions;
+
+    /** Epsilon transitions of the states. */
+    @NotNull
+    private final List<TIntArrayList> epsilons;
+
+    /** Accepting state of the glob. */
+    private final int accept;
+
+    /** Glob matches only directories. */
+    private final boolean directory;
+
+    /**
+     * Constructor.
+     *
+     * @param builder   automaton builder
+     * @param directory glob matches only directories
+     */
+    private GlobLanguage(@NotNull Builder builder, boolean directory) {
+        this.transitions = builder.transitions;
+        this.epsilons = builder.epsilons;
+        this.accept = builder.current;
+        this.directory = directory;
+    }
+
+    /**
+     * Compiles given Git ignore glob.
+     *
+     * @param glob entry value without negation sign
+     * @return language or <code>null</code> if glob cannot be analysed
+     */
+    @Nullable
+    public static GlobLanguage create(@NotNull String glob) {
+        String body = glob.trim();
+        final boolean directory = body.endsWith("/");
+        if (directory) {
+            body = body.substring(0, body.length() - 1);
+        }
+        final boolean anchored = body.indexOf(SLASH) >= 0;
+        if (body.startsWith("/")) {
+            body = body.substring(1);
+        }
+
+        final String[] segments = body.split("/", -1);
+        final Builder builder = new Builder();
+        if (!anchored) {
+            builder.anyDirectories();
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            if (segment.isEmpty()) {
+                return null;
+            }
+
+            if (segment.equals(Constants.DOUBLESTAR)) {
+                if (i == segments.length - 1) {
+                    builder.anyString();
+                } else {
+                    builder.anyDirectories();
+                }
+                continue;
+            }
+
+            if (!builder.segment(segment)) {
+                return null;
+            }
+            if (i < segments.length - 1) {
+                builder.character(Predicate.literal(SLASH));
+            }
+        }
+
+        return new GlobLanguage(builder, directory);
+    }
+
+    /**
+     * Checks if all paths of the other language are in the current language.
+     *
+     * @param other language
+     * @return current language includes other language; <code>false</code> if it cannot be decided
+     */
+    public boolean includes(@NotNull GlobLanguage other) {
+        final Boolean result = explore(other, true);
+        return result != null && !result;
+    }
+
+    /**
+     * Checks if both languages contain any common path.
+     *
+     * @param other language
+     * @return languages intersect; <code>true</code> if it cannot be decided
+     */
+    public boolean intersects(@NotNull GlobLanguage other) {
+        final Boolean result = explore(other, false);
+        return result == null || result;
+    }
+
+    /**
+     * Explores the product of the automatons with the path validity checks.
+     *
+     * @param other     other language
+     * @param inclusion looks for the path accepted by the other language only, otherwise for the path accepted by both
+     * @return path has been found or <code>null</code> if {@link #MAX_STATES} has been exceeded
+     */
+    @Nullable
+    private Boolean explore(@NotNull GlobLanguage other, boolean inclusion) {
+        final char[] alphabet = getAlphabet(this, other);
+        final Set<ProductState> visited = ContainerUtil.newHashSet();
+        final Deque<ProductState> queue = new ArrayDeque<ProductState>();
+
+        final ProductState start = new ProductState(initial(), other.initial(), false, true);
+        visited.add(start);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            final ProductState state = queue.poll();
+            for (char c : alphabet) {
+                if (c == SLASH && (state.empty || state.slash)) {
+                    continue;
+                }
+
+                final ProductState next = new ProductState(step(state.left, c, state.slash),
+                        other.step(state.right, c, state.slash), c == SLASH, false);
+                final boolean leftAccepts = accepts(next.left, next.slash);
+                final boolean rightAccepts = other.accepts(next.right, next.slash);
+                if (inclusion ? rightAccepts && !leftAccepts : rightAccepts && leftAccepts) {
+                    return true;
+                }
+
+                if (isDead(next.right) || (inclusion ? next.left.all : isDead(next.left))) {
+                    continue;
+                }
+                if (visited.add(next)) {
+                    if (visited.size() > MAX_STATES) {
+                        return null;
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns initial states set.
+     *
+     * @return initial states
+     */
+    @NotNull
+    private States initial() {
+        final BitSet states = new BitSet();
+        states.set(0);
+        return new States(closure(states), false);
+    }
+
+    /**
+     * Moves states with the given character. Glob match followed by a slash matches the whole content.
+     *
+     * @param states current states
+     * @param c      character
+     * @param slash  previous character was a slash
+     * @return next states
+     */
+    @NotNull
+    private States step(@NotNull States states, char c, boolean slash) {
+        if (states.all) {
+            return states;
+        }
+
+        final BitSet next = new BitSet();
+        for (int i = states.set.nextSetBit(0); i >= 0; i = states.set.nextSetBit(i + 1)) {
+            for (Transition transition : transitions.get(i)) {
+                if (transition.predicate.accepts(c)) {
+                    next.set(transition.target);
+                }
+            }
+        }
+        final boolean all = c == SLASH && !slash && states.set.get(accept);
+        return new States(all ? new BitSet() : closure(next), all);
+    }
+
+    /**
+     * Checks if states accept the path. Glob cannot match the path with an empty last segment and directory glob
+     * does not match files.
+     *
+     * @param states current states
+     * @param slash  path ends with a slash
+     * @return path is accepted
+     */
+    private boolean accepts(@NotNull States states, boolean slash) {
+        return states.all || (!directory && !slash && states.set.get(accept));
+    }
+
+    /**
+     * Checks if no path can be accepted anymore.
+     *
+     * @param states current states
+     * @return states are dead
+     */
+    private static boolean isDead(@NotNull States states) {
+        return !states.all && states.set.isEmpty();
+    }
+
+    /**
+     * Adds states reachable with epsilon transitions.
+     *
+     * @param states states
+     * @return closure
+     */
+    @NotNull
+    private BitSet closure(@NotNull BitSet states) {
+        final BitSet result = (BitSet) states.clone();
+        final TIntArrayList stack = new TIntArrayList();
+        for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+            stack.add(i);
+        }
+        while (!stack.isEmpty()) {
+            final TIntArrayList targets = epsilons.get(stack.remove(stack.size() - 1));
+            for (int i = 0; i < targets.size(); i++) {
+                if (!result.get(targets.get(i))) {
+                    result.set(targets.get(i));
+                    stack.add(targets.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns characters representing all classes of characters distinguished by the given languages.
+     *
+     * @param languages languages
+     * @return alphabet
+     */
+    @NotNull
+    private static char[] getAlphabet(@NotNull GlobLanguage... languages) {
+        final TreeSet<Character> bounds = new TreeSet<Character>();
+        bounds.add((char) 0);
+        bounds.add(SLASH);
+        bounds.add((char) (SLASH + 1));
+        for (GlobLanguage language : languages) {
+            for (List<Transition> transitions : language.transitions) {
+                for (Transition transition : transitions) {
+                    transition.predicate.collectBounds(bounds);
+                }
+            }
+        }
+
+        final char[] result = new char[bounds.size()];
+        int index = 0;
+        for (Character bound : bounds) {
+            result[index++] = bound;
+        }
+        return result;
+    }
+
+    /** Builder of the automaton. */
+    private static class Builder {
+        /** Transitions of the states. */
+        @NotNull
+        private final List<List<Transition>> transitions = ContainerUtil.newArrayList();
+
+        /** Epsilon transitions of the states. */
+        @NotNull
+        private final List<TIntArrayList> epsilons = ContainerUtil.newArrayList();
+
+        /** Last added state. */
+        private int current;
+
+        /** Creates builder with the initial state. */
+        Builder() {
+            current = addState();
+        }
+
+        /**
+         * Adds new state.
+         *
+         * @return state index
+         */
+        private int addState() {
+            transitions.add(new ArrayList<Transition>());
+            epsilons.add(new TIntArrayList());
+            return transitions.size() - 1;
+        }
+
+        /**
+         * Adds single character matching given predicate.
+         *
+         * @param predicate characters predicate
+         */
+        void character(@NotNull Predicate predicate) {
+            final int next = addState();
+            transitions.get(current).add(new Transition(predicate, next));
+            current = next;
+        }
+
+        /** Adds <code>*</code> - any characters except slash. */
+        void star() {
+            final int next = addState();
+            epsilons.get(current).add(next);
+            transitions.get(next).add(new Transition(Predicate.ANY_BUT_SLASH, next));
+            current = next;
+        }
+
+        /** Adds <code>**&#47;</code> - zero or more directories. */
+        void anyDirectories() {
+            final int inner = addState();
+            final int next = addState();
+            epsilons.get(current).add(next);
+            transitions.get(current).add(new Transition(Predicate.ANY, inner));
+            transitions.get(inner).add(new Transition(Predicate.ANY, inner));
+            transitions.get(inner).add(new Transition(Predicate.literal(SLASH), next));
+            current = next;
+        }
+
+        /** Adds trailing <code>**</code> - one or more of any characters. */
+        void anyString() {
+            final int next = addState();
+            transitions.get(current).add(new Transition(Predicate.ANY, next));
+            transitions.get(next).add(new Transition(Predicate.ANY, next));
+            current = next;
+        }
+
+        /**
+         * Adds single path segment.
+         *
+         * @param segment glob segment
+         * @return segment is supported
+         */
+        boolean segment(@NotNull String segment) {
+            for (int i = 0; i < segment.length(); i++) {
+                final char c = segment.charAt(i);
+                if (c == '\\') {
+                    if (++i >= segment.length()) {
+                        return false;
+                    }
+                    character(Predicate.literal(segment.charAt(i)));
+                } else if (c == '*') {
+                    while (i + 1 < segment.length() && segment.charAt(i + 1) == '*') {
+                        i++;
+                    }
+                    star();
+                } else if (c == '?') {
+                    character(Predicate.ANY_BUT_SLASH);
+                } else if (c == '[') {
+                    final int end = findClassEnd(segment, i);
+                    if (end < 0) {
+                        return false;
+                    }
+                    character(Predicate.characterClass(segment.substring(i + 1, end)));
+                    i = end;
+                } else {
+                    character(Predicate.literal(c));
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Finds closing bracket of the characters class.
+         *
+         * @param segment glob segment
+         * @param start   index of the opening bracket
+         * @return index of the closing bracket or <code>-1</code>
+         */
+        private static int findClassEnd(@NotNull String segment, int start) {
+            int i = start + 1;
+            if (i < segment.length() && (segment.charAt(i) == '!' || segment.charAt(i) == '^')) {
+                i++;
+            }
+            if (i < segment.length() && segment.charAt(i) == ']') {
+                i++;
+            }
+            final int end = segment.indexOf(']', i);
+            return end > start + 1 ? end : -1;
+        }
+    }
+
+    /** Transition to the target state on the characters matching predicate. */
+    private static class Transition {
+        /** Characters predicate. */
+        @NotNull
+        private final Predicate predicate;
+
+        /** Target state. */
+        private final int target;
+
+        Transition(@NotNull Predicate predicate, int target) {
+            this.predicate = predicate;
+            this.target = target;
+        }
+    }
+
+    /** Predicate of characters defined with the inclusive ranges. */
+    private static class Predicate {
+        /** Any character. */
+        static final Predicate ANY = new Predicate(new char[0], true, false);
+
+        /** Any character except slash. */
+        static final Predicate ANY_BUT_SLASH = new Predicate(new char[0], true, true);
+
+        /** Pairs of the range bounds. */
+        @NotNull
+        private final char[] ranges;
+
+        /** Predicate accepts characters outside of the {@link #ranges}. */
+        private final boolean negated;
+
+        /** Predicate never accepts slash. */
+        private final boolean excludeSlash;
+
+        Predicate(@NotNull char[] ranges, boolean negated, boolean excludeSlash) {
+            this.ranges = ranges;
+            this.negated = negated;
+            this.excludeSlash = excludeSlash;
+        }
+
+        /**
+         * Creates predicate accepting single character.
+         *
+         * @param c character
+         * @return predicate
+         */
+        @NotNull
+        static Predicate literal(char c) {
+            return new Predicate(new char[]{c, c}, false, false);
+        }
+
+        /**
+         * Creates predicate of the characters class content, i.e. <code>!a-z_</code>.
+         *
+         * @param content class content without brackets
+         * @return predicate
+         */
+        @NotNull
+        static Predicate characterClass(@NotNull String content) {
+            final boolean negated = content.startsWith("!") || content.startsWith("^");
+            final String chars = negated ? content.substring(1) : content;
+            final StringBuilder ranges = new StringBuilder();
+            for (int i = 0; i < chars.length(); i++) {
+                final char c = chars.charAt(i);
+                if (i + 2 < chars.length() && chars.charAt(i + 1) == '-') {
+                    final char end = chars.charAt(i + 2);
+                    if (c <= end) {
+                        ranges.append(c).append(end);
+                    }
+                    i += 2;
+                } else {
+                    ranges.append(c).append(c);
+                }
+            }
+            return new Predicate(ranges.toString().toCharArray(), negated, true);
+        }
+
+        /**
+         * Checks if character is accepted.
+         *
+         * @param c character
+         * @return character is accepted
+         */
+        boolean accepts(char c) {
+            if (c == SLASH && excludeSlash) {
+                return false;
+            }
+            boolean inRanges = false;
+            for (int i = 0; i < ranges.length && !inRanges; i += 2) {
+                inRanges = ranges[i] <= c && c <= ranges[i + 1];
+            }
+            return inRanges != negated;
+        }
+
+        /**
+         * Adds characters where the predicate result may change.
+         *
+         * @param bounds bounds set
+         */
+        void collectBounds(@NotNull Set<Character> bounds) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                bounds.add(ranges[i]);
+                if (ranges[i + 1] < Character.MAX_VALUE) {
+                    bounds.add((char) (ranges[i + 1] + 1));
+                }
+            }
+        }
+    }
+
+    /** Set of the automaton states. */
+    private static class States {
+        /** Glob states. */
+        @NotNull
+        private final BitSet set;
+
+        /** Glob has already matched the parent directory, so any path is accepted. */
+        private final boolean all;
+
+        States(@NotNull BitSet set, boolean all) {
+            this.set = set;
+            this.all = all;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof States && all == ((States) obj).all && set.equals(((States) obj).set);
+        }
+
+        @Override
+        public int hashCode() {
+            return set.hashCode() * 31 + (all ? 1 : 0);
+        }
+    }
+
+    /** State of the product automaton. */
+    private static class ProductState {
+        /** States of the current language. */
+        @NotNull
+        private final States left;
+
+        /** States of the other language. */
+        @NotNull
+        private final States right;
+
+        /** Last character was a slash. */
+        private final boolean slash;
+
+        /** No characters have been read. */
+        private final boolean empty;
+
+        ProductState(@NotNull States left, @NotNull States right, boolean slash, boolean empty) {
+            this.left = left;
+            this.right = right;
+            this.slash = slash;
+            this.empty = empty;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ProductState)) {
+                return false;
+            }
+            final ProductState state = (ProductState) obj;
+            return slash == state.slash && empty == state.empty && left.equals(state.left) &&
+                    right.equals(state.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return (left.hashCode() * 31 + right.hashCode()) * 4 + (slash ? 2 : 0) + (empty ? 1 : 0);
+        }
+    }
+}
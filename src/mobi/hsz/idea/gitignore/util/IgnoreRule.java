@@ -0,0 +1,386 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.util.io.DataInputOutputUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled descriptor of the single ignore entry. Entry is analysed once (i.e. on the indexing threads) and stored
+ * with its kind, literal parts and flags, so matching literal rules like <code>foo</code>, <code>/foo/bar</code> or
+ * <code>*.log</code> does not require any regex. Other rules fall back to the {@link Glob} regex with precomputed
+ * {@link MatcherUtil#getParts(String)} parts.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class IgnoreRule {
+    /** Characters that have a special meaning in the glob or in the generated regex. */
+    private static final String SPECIAL_CHARS = "*?[]\\{}";
+
+    /** Negation flag. */
+    private static final int FLAG_NEGATED = 1;
+
+    /** Directory-only flag - entry ends with slash. */
+    private static final int FLAG_DIRECTORY = 1 << 1;
+
+    /** Anchoring flag - entry is relative to the ignore file's directory. */
+    private static final int FLAG_ANCHORED = 1 << 2;
+
+    /** Available rule kinds. */
+    public enum Kind {
+        /** Last path segment equals {@link #value}, i.e. <code>foo</code> or <code>foo/</code>. */
+        NAME,
+
+        /** Whole path equals {@link #value}, i.e. <code>/foo</code> or <code>foo/bar/</code>. */
+        PATH,
+
+        /** Path ends with {@link #value}, i.e. <code>*.log</code>. */
+        SUFFIX,
+
+        /** Regex stored in {@link #value} has to be used. */
+        REGEX
+    }
+
+    /** Rule kind. */
+    @NotNull
+    private final Kind kind;
+
+    /** Original entry value. */
+    @NotNull
+    private final String glob;
+
+    /** Literal value for non-regex kinds or regex for {@link Kind#REGEX}. */
+    @NotNull
+    private final String value;
+
+    /** Literal parts of the regex that have to be contained in the matched path. */
+    @NotNull
+    private final String[] parts;
+
+    /** Rule flags. */
+    private final int flags;
+
+    /** Lazily compiled regex for {@link Kind#REGEX}. */
+    @Nullable
+    private volatile Pattern pattern;
+
+    /**
+     * Constructor.
+     *
+     * @param kind  rule kind
+     * @param glob  original entry value
+     * @param value literal or regex
+     * @param parts literal parts of the regex
+     * @param flags rule flags
+     */
+    private IgnoreRule(@NotNull Kind kind, @NotNull String glob, @NotNull String value, @NotNull String[] parts,
+                       int flags) {
+        this.kind = kind;
+        this.glob = glob;
+        this.value = value;
+        this.parts = parts;
+        this.flags = flags;
+    }
+
+    /**
+     * Compiles given entry value to the {@link IgnoreRule}.
+     *
+     * @param entry   entry value without negation sign
+     * @param syntax  entry syntax
+     * @param negated entry is negated
+     * @return compiled rule
+     */
+    @NotNull
+    public static IgnoreRule create(@NotNull String entry, @NotNull IgnoreBundle.Syntax syntax, boolean negated) {
+        final String glob = entry.trim();
+        int flags = negated ? FLAG_NEGATED : 0;
+
+        if (syntax.equals(IgnoreBundle.Syntax.REGEXP)) {
+            return new IgnoreRule(Kind.REGEX, glob, entry, MatcherUtil.getParts(entry), flags);
+        }
+
+        final boolean directory = glob.endsWith("/");
+        final String body = directory ? glob.substring(0, glob.length() - 1) : glob;
+        if (directory) {
+            flags |= FLAG_DIRECTORY;
+        }
+
+        if (isLiteral(body)) {
+            if (body.startsWith("/")) {
+                final String path = body.substring(1);
+                if (!path.isEmpty() && !path.startsWith("/")) {
+                    return new IgnoreRule(Kind.PATH, glob, path, new String[0], flags | FLAG_ANCHORED);
+                }
+            } else if (body.indexOf('/') < 0) {
+                if (!body.isEmpty()) {
+                    return new IgnoreRule(Kind.NAME, glob, body, new String[0], flags);
+                }
+            } else {
+                return new IgnoreRule(Kind.PATH, glob, body, new String[0], flags | FLAG_ANCHORED);
+            }
+        } else if (!directory && body.length() > 1 && body.charAt(0) == '*') {
+            final String suffix = body.substring(1);
+            if (isLiteral(suffix) && suffix.indexOf('/') < 0) {
+                return new IgnoreRule(Kind.SUFFIX, glob, suffix, new String[0], flags);
+            }
+        }
+
+        if (glob.startsWith("/")) {
+            flags |= FLAG_ANCHORED;
+        }
+        final String regex = Glob.getRegex(glob, syntax, false);
+        return new IgnoreRule(Kind.REGEX, glob, regex, MatcherUtil.getParts(regex), flags);
+    }
+
+    /**
+     * Checks if given glob contains only literal characters.
+     *
+     * @param glob to check
+     * @return glob is literal
+     */
+    private static boolean isLiteral(@NotNull String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            if (SPECIAL_CHARS.indexOf(glob.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if rule matches the given path. Path has to be relative to the ignore file's directory and directories
+     * have to end with slash.
+     *
+     * @param path relative path
+     * @return rule matches path
+     */
+    public boolean match(@NotNull String path) {
+        switch (kind) {
+
+            case NAME:
+            case PATH:
+                if (path.endsWith("/")) {
+                    path = path.substring(0, path.length() - 1);
+                } else if (isDirectory()) {
+                    return false;
+                }
+                if (kind == Kind.PATH) {
+                    return path.equals(value);
+                }
+                return path.endsWith(value) &&
+                        (path.length() == value.length() || path.charAt(path.length() - value.length() - 1) == '/');
+
+            case SUFFIX:
+                return path.endsWith(value) || (path.endsWith("/") &&
+                        path.regionMatches(path.length() - value.length() - 1, value, 0, value.length()));
+
+            default:
+                if (parts.length > 0 && !MatcherUtil.matchAllParts(parts, path)) {
+                    return false;
+                }
+                final Pattern compiled = getPattern();
+                try {
+                    return compiled != null && compiled.matcher(path).find();
+                } catch (StringIndexOutOfBoundsException ignored) {
+                    return false;
+                }
+
+        }
+    }
+
+    /**
+     * Returns regex {@link Pattern} of the current rule.
+     *
+     * @return pattern or <code>null</code> if regex is invalid
+     */
+    @Nullable
+    public Pattern getPattern() {
+        Pattern result = pattern;
+        if (result == null) {
+            result = Glob.getPattern(kind == Kind.REGEX ? value : Glob.createRegex(glob, false));
+            pattern = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns rule kind.
+     *
+     * @return kind
+     */
+    @NotNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns original entry value.
+     *
+     * @return glob
+     */
+    @NotNull
+    public String getGlob() {
+        return glob;
+    }
+
+    /**
+     * Returns literal value or regex for {@link Kind#REGEX}.
+     *
+     * @return value
+     */
+    @NotNull
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns literal parts of the regex.
+     *
+     * @return parts
+     */
+    @NotNull
+    public String[] getParts() {
+        return parts;
+    }
+
+    /**
+     * Checks if rule is negated.
+     *
+     * @return is negated
+     */
+    public boolean isNegated() {
+        return (flags & FLAG_NEGATED) != 0;
+    }
+
+    /**
+     * Checks if rule matches only directories.
+     *
+     * @return is directory-only
+     */
+    public boolean isDirectory() {
+        return (flags & FLAG_DIRECTORY) != 0;
+    }
+
+    /**
+     * Checks if rule is anchored to the ignore file's directory.
+     *
+     * @return is anchored
+     */
+    public boolean isAnchored() {
+        return (flags & FLAG_ANCHORED) != 0;
+    }
+
+    /**
+     * Writes rule to the output stream. Negation flag is not written - it is stored by the caller in a packed bitset.
+     * Strings are written as indexes of the given string table which has to contain {@link #glob}, {@link #value}
+     * and all {@link #parts}.
+     *
+     * @param out     output stream
+     * @param strings string table mapped to the indexes
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(@NotNull DataOutput out, @NotNull Map<String, Integer> strings) throws IOException {
+        out.writeByte(kind.ordinal() << 3 | (flags & ~FLAG_NEGATED));
+        DataInputOutputUtil.writeINT(out, strings.get(glob));
+        DataInputOutputUtil.writeINT(out, strings.get(value));
+        DataInputOutputUtil.writeINT(out, parts.length);
+        for (String part : parts) {
+            DataInputOutputUtil.writeINT(out, strings.get(part));
+        }
+    }
+
+    /**
+     * Reads rule from the input stream.
+     *
+     * @param in      input stream
+     * @param strings string table
+     * @param negated rule is negated
+     * @return rule
+     * @throws IOException if an I/O error occurs
+     */
+    @NotNull
+    public static IgnoreRule read(@NotNull DataInput in, @NotNull String[] strings, boolean negated)
+            throws IOException {
+        final int header = in.readUnsignedByte();
+        final Kind[] kinds = Kind.values();
+        if (header >> 3 >= kinds.length) {
+            throw new IOException("Unknown rule kind: " + (header >> 3));
+        }
+
+        final String glob = strings[DataInputOutputUtil.readINT(in)];
+        final String value = strings[DataInputOutputUtil.readINT(in)];
+        final String[] parts = new String[DataInputOutputUtil.readINT(in)];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = strings[DataInputOutputUtil.readINT(in)];
+        }
+        return new IgnoreRule(kinds[header >> 3], glob, value, parts, (header & 7) | (negated ? FLAG_NEGATED : 0));
+    }
+
+    /**
+     * Checks if given object is equal to the current rule.
+     *
+     * @param obj to check
+     * @return objects are equal
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (!(obj instanceof IgnoreRule)) {
+            return false;
+        }
+        final IgnoreRule rule = (IgnoreRule) obj;
+        return kind == rule.kind && flags == rule.flags && glob.equals(rule.glob) && value.equals(rule.value) &&
+                Arrays.equals(parts, rule.parts);
+    }
+
+    /**
+     * Returns hashCode based on the kind, flags and values.
+     *
+     * @return hashCode
+     */
+    @Override
+    public int hashCode() {
+        return ((kind.ordinal() * 31 + flags) * 31 + glob.hashCode()) * 31 + value.hashCode();
+    }
+
+    /**
+     * Returns rule presentation.
+     *
+     * @return presentation
+     */
+    @Override
+    public String toString() {
+        return (isNegated() ? "!" : "") + glob;
+    }
+}
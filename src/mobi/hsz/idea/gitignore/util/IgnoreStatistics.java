@@ -0,0 +1,447 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counters describing the plugin's runtime cost - {@link mobi.hsz.idea.gitignore.IgnoreManager} checks,
+ * caches efficiency, compiled rules, external processes, debounced tasks and ignore files evaluation.
+ * Collected data can be exported as JSON with {@link #toJson()} and attached to bug reports.
+ * <p>
+ * Recording is disabled by default to keep the hot paths free of the bookkeeping. It is enabled with
+ * the <code>idea.ignore.statistics</code> system property or with {@link #setEnabled(boolean)}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class IgnoreStatistics {
+    /** Maximum amount of the keys stored in the single statistics map. */
+    private static final int MAX_KEYS = 100;
+
+    /** Key of the values recorded after {@link #MAX_KEYS} has been exceeded. */
+    private static final String OTHER_KEY = "<other>";
+
+    /** Statistics are recorded. */
+    private static volatile boolean enabled = Boolean.getBoolean("idea.ignore.statistics");
+
+    /** Timestamp of the last statistics reset. */
+    private static volatile long started = System.currentTimeMillis();
+
+    /** Latency of the {@link mobi.hsz.idea.gitignore.IgnoreManager#isFileIgnored} calls. */
+    @NotNull
+    private static final Histogram IS_FILE_IGNORED = new Histogram();
+
+    /** Amount of rules compiled to the regex {@link java.util.regex.Pattern}. */
+    @NotNull
+    private static final AtomicLong RULES_COMPILED = new AtomicLong();
+
+    /** Cache hits and misses mapped with the cache name. */
+    @NotNull
+    private static final ConcurrentMap<String, AtomicLongArray> CACHES = ContainerUtil.newConcurrentMap();
+
+    /** Durations of the external processes mapped with the executed command. */
+    @NotNull
+    private static final ConcurrentMap<String, Histogram> EXTERNAL_EXEC = ContainerUtil.newConcurrentMap();
+
+    /** Debounced tasks invocations and coalesced calls mapped with the task name. */
+    @NotNull
+    private static final ConcurrentMap<String, AtomicLongArray> DEBOUNCED = ContainerUtil.newConcurrentMap();
+
+    /** Evaluation cost of the single ignore file mapped with its path. */
+    @NotNull
+    private static final ConcurrentMap<String, Histogram> IGNORE_FILES = ContainerUtil.newConcurrentMap();
+
+    /** Private constructor to prevent creating {@link IgnoreStatistics} instance. */
+    private IgnoreStatistics() {
+    }
+
+    /**
+     * Checks if statistics are recorded. Callers measuring durations should check it before reading the time.
+     *
+     * @return statistics are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recording of the statistics.
+     *
+     * @param value statistics are recorded
+     */
+    public static void setEnabled(boolean value) {
+        if (value && !enabled) {
+            reset();
+        }
+        enabled = value;
+    }
+
+    /**
+     * Records single {@link mobi.hsz.idea.gitignore.IgnoreManager#isFileIgnored} call.
+     *
+     * @param nanos call duration
+     */
+    public static void recordIsFileIgnored(long nanos) {
+        if (!enabled) {
+            return;
+        }
+        IS_FILE_IGNORED.record(nanos);
+    }
+
+    /** Records compilation of the single rule. */
+    public static void recordRuleCompiled() {
+        if (!enabled) {
+            return;
+        }
+        RULES_COMPILED.incrementAndGet();
+    }
+
+    /**
+     * Records cache lookup.
+     *
+     * @param name cache name
+     * @param hit  value was found in cache
+     */
+    public static void recordCache(@NotNull String name, boolean hit) {
+        if (!enabled) {
+            return;
+        }
+        getCounters(CACHES, name).incrementAndGet(hit ? 0 : 1);
+    }
+
+    /**
+     * Records external process execution.
+     *
+     * @param command executed command
+     * @param nanos   execution duration
+     */
+    public static void recordExternalExec(@NotNull String command, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        getHistogram(EXTERNAL_EXEC, command).record(nanos);
+    }
+
+    /**
+     * Records {@link Debounced} task invocation.
+     *
+     * @param name      task name
+     * @param coalesced previously scheduled call was dropped
+     */
+    public static void recordDebounced(@NotNull String name, boolean coalesced) {
+        if (!enabled) {
+            return;
+        }
+        getCounters(DEBOUNCED, name).incrementAndGet(coalesced ? 1 : 0);
+    }
+
+    /**
+     * Records evaluation of the rules from the single ignore file.
+     *
+     * @param path  ignore file path
+     * @param nanos evaluation duration
+     */
+    public static void recordIgnoreFile(@NotNull String path, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        getHistogram(IGNORE_FILES, path).record(nanos);
+    }
+
+    /** Clears all collected statistics. */
+    public static void reset() {
+        started = System.currentTimeMillis();
+        IS_FILE_IGNORED.clear();
+        RULES_COMPILED.set(0);
+        CACHES.clear();
+        EXTERNAL_EXEC.clear();
+        DEBOUNCED.clear();
+        IGNORE_FILES.clear();
+    }
+
+    /**
+     * Exports collected statistics as JSON.
+     *
+     * @return JSON string
+     */
+    @NotNull
+    public static String toJson() {
+        final long elapsed = Math.max(System.currentTimeMillis() - started, 1);
+        final StringBuilder sb = new StringBuilder("{\n");
+
+        sb.append("  \"version\": ").append(quote(Utils.getVersion())).append(",\n");
+        sb.append("  \"enabled\": ").append(enabled).append(",\n");
+        sb.append("  \"elapsedMillis\": ").append(elapsed).append(",\n");
+
+        sb.append("  \"isFileIgnored\": ");
+        IS_FILE_IGNORED.toJson(sb);
+        sb.setLength(sb.length() - 1);
+        sb.append(", \"callsPerSecond\": ").append(IS_FILE_IGNORED.getCount() * 1000 / elapsed).append("},\n");
+
+        sb.append("  \"rulesCompiled\": ").append(RULES_COMPILED.get()).append(",\n");
+
+        sb.append("  \"caches\": {");
+        appendCounters(sb, CACHES, "hits", "misses");
+        sb.append("},\n");
+
+        sb.append("  \"externalExec\": {");
+        appendHistograms(sb, EXTERNAL_EXEC);
+        sb.append("},\n");
+
+        sb.append("  \"debounced\": {");
+        appendCounters(sb, DEBOUNCED, "runs", "coalesced");
+        sb.append("},\n");
+
+        sb.append("  \"ignoreFiles\": {");
+        appendHistograms(sb, IGNORE_FILES);
+        sb.append("}\n}\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends JSON representation of the counters map.
+     *
+     * @param sb     output
+     * @param map    counters
+     * @param first  label of the first counter
+     * @param second label of the second counter
+     */
+    private static void appendCounters(@NotNull StringBuilder sb, @NotNull Map<String, AtomicLongArray> map,
+                                       @NotNull String first, @NotNull String second) {
+        boolean comma = false;
+        for (Map.Entry<String, AtomicLongArray> entry : new TreeMap<String, AtomicLongArray>(map).entrySet()) {
+            final long a = entry.getValue().get(0);
+            final long b = entry.getValue().get(1);
+            sb.append(comma ? ",\n    " : "\n    ").append(quote(entry.getKey())).append(": {")
+                    .append(quote(first)).append(": ").append(a).append(", ")
+                    .append(quote(second)).append(": ").append(b).append(", \"ratio\": ")
+                    .append(a + b > 0 ? Math.round(a * 1000.0 / (a + b)) / 1000.0 : 0).append('}');
+            comma = true;
+        }
+        if (comma) {
+            sb.append("\n  ");
+        }
+    }
+
+    /**
+     * Appends JSON representation of the histograms map.
+     *
+     * @param sb  output
+     * @param map histograms
+     */
+    private static void appendHistograms(@NotNull StringBuilder sb, @NotNull Map<String, Histogram> map) {
+        boolean comma = false;
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(map).entrySet()) {
+            sb.append(comma ? ",\n    " : "\n    ").append(quote(entry.getKey())).append(": ");
+            entry.getValue().toJson(sb);
+            comma = true;
+        }
+        if (comma) {
+            sb.append("\n  ");
+        }
+    }
+
+    /**
+     * Returns the key under which the value should be stored. Values of the new keys are aggregated under
+     * {@link #OTHER_KEY} when the map already contains {@link #MAX_KEYS} keys.
+     *
+     * @param map  statistics map
+     * @param name requested key
+     * @return key to use
+     */
+    @NotNull
+    private static String getKey(@NotNull Map<String, ?> map, @NotNull String name) {
+        return map.size() < MAX_KEYS || map.containsKey(name) ? name : OTHER_KEY;
+    }
+
+    /**
+     * Returns counters pair stored in the given map or creates a new one.
+     *
+     * @param map  counters map
+     * @param name counters name
+     * @return counters
+     */
+    @NotNull
+    private static AtomicLongArray getCounters(@NotNull ConcurrentMap<String, AtomicLongArray> map,
+                                               @NotNull String name) {
+        AtomicLongArray counters = map.get(name);
+        if (counters == null) {
+            final AtomicLongArray created = new AtomicLongArray(2);
+            counters = map.putIfAbsent(getKey(map, name), created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Returns histogram stored in the given map or creates a new one.
+     *
+     * @param map  histograms map
+     * @param name histogram name
+     * @return histogram
+     */
+    @NotNull
+    private static Histogram getHistogram(@NotNull ConcurrentMap<String, Histogram> map, @NotNull String name) {
+        Histogram histogram = map.get(name);
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = map.putIfAbsent(getKey(map, name), created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Quotes and escapes given string to be used in JSON.
+     *
+     * @param value string to quote
+     * @return quoted string
+     */
+    @NotNull
+    private static String quote(@NotNull String value) {
+        final StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Latency histogram with power-of-two nanosecond buckets. Percentiles are approximated with the bucket's
+     * upper bound, which is enough to compare the plugin's behaviour between versions.
+     */
+    public static class Histogram {
+        /** Buckets amount - covers every positive long value. */
+        private static final int BUCKETS = 64;
+
+        /** Recorded values count per bucket. */
+        @NotNull
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        /** Recorded values count. */
+        @NotNull
+        private final AtomicLong count = new AtomicLong();
+
+        /** Sum of the recorded values. */
+        @NotNull
+        private final AtomicLong total = new AtomicLong();
+
+        /** Max recorded value. */
+        @NotNull
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records single value.
+         *
+         * @param nanos value to record
+         */
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(Math.max(BUCKETS - 1 - Long.numberOfLeadingZeros(nanos), 0));
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+
+            long current = max.get();
+            while (nanos > current && !max.compareAndSet(current, nanos)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * Returns recorded values count.
+         *
+         * @return count
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Returns approximated percentile value.
+         *
+         * @param percentile percentile in range of (0, 1]
+         * @return value in nanoseconds
+         */
+        public long getPercentile(double percentile) {
+            final long threshold = (long) Math.ceil(count.get() * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(i >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+                }
+            }
+            return 0;
+        }
+
+        /** Clears recorded values. */
+        public void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        /**
+         * Appends JSON representation of the histogram.
+         *
+         * @param sb output
+         */
+        void toJson(@NotNull StringBuilder sb) {
+            final long n = count.get();
+            sb.append("{\"count\": ").append(n)
+                    .append(", \"totalMicros\": ").append(total.get() / 1000)
+                    .append(", \"meanMicros\": ").append(n > 0 ? total.get() / n / 1000 : 0)
+                    .append(", \"p50Micros\": ").append(getPercentile(0.5) / 1000)
+                    .append(", \"p99Micros\": ").append(getPercentile(0.99) / 1000)
+                    .append(", \"maxMicros\": ").append(max.get() / 1000)
+                    .append('}');
+        }
+    }
+}
@@ -148,9 +148,18 @@ public class MatcherUtil {
         if (pattern == null) {
             return new String[0];
         }
+        return getParts(pattern.toString());
+    }
 
+    /**
+     * Extracts alphanumeric parts from the regex string without compiling it.
+     *
+     * @param sPattern regex to handle
+     * @return extracted parts
+     */
+    @NotNull
+    public static String[] getParts(@NotNull String sPattern) {
         final List<String> parts = ContainerUtil.newArrayList();
-        final String sPattern = pattern.toString();
 
         StringBuilder part = new StringBuilder();
         boolean inSquare = false;
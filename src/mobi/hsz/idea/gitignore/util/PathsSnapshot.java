@@ -0,0 +1,481 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of the relative project paths used for the completion. Paths are kept in the sorted array,
+ * so all paths starting with the given prefix are found with the binary search. Second array keeps lowercase file
+ * names with the paths to complete names in the <code>**&#47;name</code> entries. Names containing the text further
+ * are found with the trigrams index built lazily on the first such query. Directories paths end with a slash.
+ * Results are ranked by the position of the match in the name, the depth of the path and alphabetically.
+ * Changed paths are applied with {@link #patch(Collection, Collection)} which merges the sorted arrays into
+ * the new snapshot.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class PathsSnapshot {
+    /** Sorted relative paths. */
+    @NotNull
+    private final String[] paths;
+
+    /** Sorted lowercase names with the path, separated with the {@link #NAME_SEPARATOR}. */
+    @NotNull
+    private final String[] names;
+
+    /**
+     * Indexes of {@link #names} mapped with the trigrams of the name. Names shorter than {@link #GRAM_LENGTH} are
+     * mapped with the whole name.
+     */
+    @Nullable
+    private volatile Map<String, int[]> grams;
+
+    /** Separator of the name and the path in {@link #names}. */
+    private static final char NAME_SEPARATOR = '\0';
+
+    /** Length of the name parts stored in {@link #grams}. */
+    private static final int GRAM_LENGTH = 3;
+
+    /** Compares matches by the match position, the depth of the path and then alphabetically. */
+    @NotNull
+    private static final Comparator<Match> RANK_COMPARATOR = new Comparator<Match>() {
+        @Override
+        public int compare(Match match1, Match match2) {
+            if (match1.position != match2.position) {
+                return match1.position - match2.position;
+            }
+            if (match1.depth != match2.depth) {
+                return match1.depth - match2.depth;
+            }
+            return match1.path.compareTo(match2.path);
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param paths relative paths
+     */
+    public PathsSnapshot(@NotNull Collection<String> paths) {
+        this(toSortedArray(paths), null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param paths sorted relative paths without duplicates
+     * @param names sorted {@link #names} entries or <code>null</code> to create them from paths
+     */
+    private PathsSnapshot(@NotNull String[] paths, @Nullable String[] names) {
+        this.paths = paths;
+        this.names = names != null ? names : toSortedArray(toNameEntries(Arrays.asList(paths)));
+    }
+
+    /**
+     * Returns number of the paths in the snapshot.
+     *
+     * @return paths count
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * Creates new snapshot with the given paths removed and added. Removed directory path removes all the paths
+     * inside as well. Paths removed and added at once are kept.
+     *
+     * @param removed relative paths to remove
+     * @param added   relative paths to add
+     * @return patched snapshot or the same instance if nothing has changed
+     */
+    @NotNull
+    public PathsSnapshot patch(@NotNull Collection<String> removed, @NotNull Collection<String> added) {
+        final List<String> removedPaths = ContainerUtil.newArrayList();
+        final BitSet removedIndexes = new BitSet(paths.length);
+        for (String path : removed) {
+            final int index = lowerBound(paths, path);
+            if (path.endsWith("/")) {
+                for (int i = index; i < paths.length && paths[i].startsWith(path); i++) {
+                    removedIndexes.set(i);
+                }
+            } else if (index < paths.length && paths[index].equals(path)) {
+                removedIndexes.set(index);
+            }
+        }
+        for (int i = removedIndexes.nextSetBit(0); i >= 0; i = removedIndexes.nextSetBit(i + 1)) {
+            removedPaths.add(paths[i]);
+        }
+
+        final List<String> addedPaths = ContainerUtil.newArrayList();
+        for (String path : new TreeSet<String>(added)) {
+            final int index = lowerBound(paths, path);
+            if (index == paths.length || !paths[index].equals(path) || removedIndexes.get(index)) {
+                addedPaths.add(path);
+            }
+        }
+
+        if (removedPaths.isEmpty() && addedPaths.isEmpty()) {
+            return this;
+        }
+
+        return new PathsSnapshot(
+                merge(paths, ArrayUtil.toStringArray(removedPaths), ArrayUtil.toStringArray(addedPaths)),
+                merge(names, toSortedArray(toNameEntries(removedPaths)), toSortedArray(toNameEntries(addedPaths)))
+        );
+    }
+
+    /**
+     * Finds paths starting with the given prefix. Results are ranked by the depth of the path.
+     *
+     * @param prefix   path prefix
+     * @param minDepth minimal depth of the path
+     * @param limit    maximum number of results
+     * @return matching paths
+     */
+    @NotNull
+    public List<String> findByPrefix(@NotNull String prefix, int minDepth, int limit) {
+        final PriorityQueue<Match> result = createQueue(limit);
+        for (int i = lowerBound(paths, prefix); i < paths.length && paths[i].startsWith(prefix); i++) {
+            final int depth = getDepth(paths[i]);
+            if (depth >= minDepth) {
+                offer(result, new Match(paths[i], 0, depth), limit);
+            }
+        }
+        return sort(result);
+    }
+
+    /**
+     * Finds paths which names contain the given text, ignoring case. Names starting with the text are found with
+     * the binary search and the names containing it further are looked up in the trigrams index only if the limit
+     * was not reached. Results are ranked by the match position and the depth of the path.
+     *
+     * @param text  name part
+     * @param limit maximum number of results
+     * @return matching paths
+     */
+    @NotNull
+    public List<String> findByName(@NotNull String text, int limit) {
+        final String lowerText = text.toLowerCase();
+        final PriorityQueue<Match> result = createQueue(limit);
+        for (int i = lowerBound(names, lowerText); i < names.length && names[i].startsWith(lowerText); i++) {
+            final int separator = names[i].indexOf(NAME_SEPARATOR);
+            if (separator >= lowerText.length()) {
+                offer(result, createMatch(names[i], separator, 0), limit);
+            }
+        }
+
+        if (result.size() < limit && !lowerText.isEmpty()) {
+            for (int index : getCandidates(lowerText)) {
+                final String name = names[index];
+                if (name.startsWith(lowerText)) {
+                    continue;
+                }
+                final int separator = name.indexOf(NAME_SEPARATOR);
+                final int position = name.indexOf(lowerText, 1);
+                if (position > 0 && position + lowerText.length() <= separator) {
+                    offer(result, createMatch(name, separator, position), limit);
+                }
+            }
+        }
+        return sort(result);
+    }
+
+    /**
+     * Returns indexes of {@link #names} which may contain the given text. For the text of {@link #GRAM_LENGTH} or
+     * longer the shortest list of its trigrams is returned, otherwise lists of all the keys containing the text
+     * are joined.
+     *
+     * @param text lowercase name part
+     * @return sorted candidates indexes
+     */
+    @NotNull
+    private int[] getCandidates(@NotNull String text) {
+        final Map<String, int[]> grams = getGrams();
+        if (text.length() >= GRAM_LENGTH) {
+            int[] result = null;
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                final int[] indexes = grams.get(text.substring(i, i + GRAM_LENGTH));
+                if (indexes == null) {
+                    return ArrayUtil.EMPTY_INT_ARRAY;
+                }
+                if (result == null || indexes.length < result.length) {
+                    result = indexes;
+                }
+            }
+            return result != null ? result : ArrayUtil.EMPTY_INT_ARRAY;
+        }
+
+        final BitSet result = new BitSet(names.length);
+        for (Map.Entry<String, int[]> entry : grams.entrySet()) {
+            if (entry.getKey().contains(text)) {
+                for (int index : entry.getValue()) {
+                    result.set(index);
+                }
+            }
+        }
+
+        final int[] indexes = new int[result.cardinality()];
+        for (int i = result.nextSetBit(0), j = 0; i >= 0; i = result.nextSetBit(i + 1)) {
+            indexes[j++] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns {@link #grams} index, building it on the first call.
+     *
+     * @return trigrams index
+     */
+    @NotNull
+    private Map<String, int[]> getGrams() {
+        Map<String, int[]> result = grams;
+        if (result != null) {
+            return result;
+        }
+
+        final Map<String, TIntArrayList> lists = ContainerUtil.newHashMap();
+        for (int i = 0; i < names.length; i++) {
+            final int separator = names[i].indexOf(NAME_SEPARATOR);
+            if (separator < GRAM_LENGTH) {
+                addGram(lists, names[i].substring(0, separator), i);
+                continue;
+            }
+            for (int j = 0; j + GRAM_LENGTH <= separator; j++) {
+                addGram(lists, names[i].substring(j, j + GRAM_LENGTH), i);
+            }
+        }
+
+        result = ContainerUtil.newHashMap();
+        for (Map.Entry<String, TIntArrayList> entry : lists.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toNativeArray());
+        }
+        grams = result;
+        return result;
+    }
+
+    /**
+     * Adds index of the name to the list of the given gram, skipping the repeated gram of the same name.
+     *
+     * @param lists indexes lists mapped with the grams
+     * @param gram  name part
+     * @param index index of the name
+     */
+    private static void addGram(@NotNull Map<String, TIntArrayList> lists, @NotNull String gram, int index) {
+        TIntArrayList list = lists.get(gram);
+        if (list == null) {
+            list = new TIntArrayList();
+            lists.put(gram, list);
+        }
+        if (list.isEmpty() || list.get(list.size() - 1) != index) {
+            list.add(index);
+        }
+    }
+
+    /**
+     * Creates {@link Match} for the entry of {@link #names}.
+     *
+     * @param name      name entry
+     * @param separator index of the {@link #NAME_SEPARATOR}
+     * @param position  match position in the name
+     * @return match
+     */
+    @NotNull
+    private static Match createMatch(@NotNull String name, int separator, int position) {
+        final String path = name.substring(separator + 1);
+        return new Match(path, position, getDepth(path));
+    }
+
+    /**
+     * Creates {@link #names} entries of the given paths.
+     *
+     * @param paths relative paths
+     * @return name entries
+     */
+    @NotNull
+    private static List<String> toNameEntries(@NotNull Collection<String> paths) {
+        final List<String> result = ContainerUtil.newArrayListWithCapacity(paths.size());
+        for (String path : paths) {
+            result.add(getName(path).toLowerCase() + NAME_SEPARATOR + path);
+        }
+        return result;
+    }
+
+    /**
+     * Returns sorted array of the given values without duplicates.
+     *
+     * @param values values to sort
+     * @return sorted array
+     */
+    @NotNull
+    private static String[] toSortedArray(@NotNull Collection<String> values) {
+        return ArrayUtil.toStringArray(new TreeSet<String>(values));
+    }
+
+    /**
+     * Merges sorted arrays into the new sorted array. Values present in both removed and added arrays are kept.
+     *
+     * @param values  sorted values
+     * @param removed sorted values to remove
+     * @param added   sorted values to add
+     * @return merged values
+     */
+    @NotNull
+    private static String[] merge(@NotNull String[] values, @NotNull String[] removed, @NotNull String[] added) {
+        final List<String> result = ContainerUtil.newArrayListWithCapacity(values.length + added.length);
+        int removedIndex = 0;
+        int addedIndex = 0;
+        for (String value : values) {
+            while (removedIndex < removed.length && removed[removedIndex].compareTo(value) < 0) {
+                removedIndex++;
+            }
+            if (removedIndex < removed.length && removed[removedIndex].equals(value)) {
+                continue;
+            }
+            while (addedIndex < added.length && added[addedIndex].compareTo(value) < 0) {
+                result.add(added[addedIndex++]);
+            }
+            if (addedIndex < added.length && added[addedIndex].equals(value)) {
+                addedIndex++;
+            }
+            result.add(value);
+        }
+        while (addedIndex < added.length) {
+            result.add(added[addedIndex++]);
+        }
+        return ArrayUtil.toStringArray(result);
+    }
+
+    /**
+     * Returns name of the given path without the trailing slash.
+     *
+     * @param path relative path
+     * @return name
+     */
+    @NotNull
+    public static String getName(@NotNull String path) {
+        final String trimmed = StringUtil.trimEnd(path, "/");
+        return trimmed.substring(trimmed.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Returns depth of the given path. Trailing slash of the directory is not counted.
+     *
+     * @param path relative path
+     * @return number of the parent directories
+     */
+    public static int getDepth(@NotNull String path) {
+        return StringUtil.countChars(StringUtil.trimEnd(path, "/"), '/');
+    }
+
+    /**
+     * Finds index of the first element that is not less than the given key.
+     *
+     * @param array sorted array
+     * @param key   key to find
+     * @return insertion index
+     */
+    private static int lowerBound(@NotNull String[] array, @NotNull String key) {
+        final int index = Arrays.binarySearch(array, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Creates queue which head is the worst ranked path.
+     *
+     * @param limit maximum number of results
+     * @return queue
+     */
+    @NotNull
+    private static PriorityQueue<Match> createQueue(int limit) {
+        return new PriorityQueue<Match>(Math.max(1, limit + 1), Collections.reverseOrder(RANK_COMPARATOR));
+    }
+
+    /**
+     * Adds path to the queue and removes the worst ranked path if limit has been exceeded.
+     *
+     * @param queue results queue
+     * @param match match to add
+     * @param limit maximum number of results
+     */
+    private static void offer(@NotNull PriorityQueue<Match> queue, @NotNull Match match, int limit) {
+        queue.offer(match);
+        if (queue.size() > limit) {
+            queue.poll();
+        }
+    }
+
+    /**
+     * Returns queue content sorted by the rank.
+     *
+     * @param queue results queue
+     * @return sorted paths
+     */
+    @NotNull
+    private static List<String> sort(@NotNull PriorityQueue<Match> queue) {
+        final List<Match> matches = ContainerUtil.newArrayList(queue);
+        Collections.sort(matches, RANK_COMPARATOR);
+
+        final List<String> result = ContainerUtil.newArrayListWithCapacity(matches.size());
+        for (Match match : matches) {
+            result.add(match.path);
+        }
+        return result;
+    }
+
+    /** Matched path with its rank. */
+    private static class Match {
+        /** Relative path. */
+        @NotNull
+        private final String path;
+
+        /** Position of the match in the name. */
+        private final int position;
+
+        /** Depth of the path. */
+        private final int depth;
+
+        /**
+         * Constructor.
+         *
+         * @param path     relative path
+         * @param position match position
+         * @param depth    path depth
+         */
+        private Match(@NotNull String path, int position, int depth) {
+            this.path = path;
+            this.position = position;
+            this.depth = depth;
+        }
+    }
+}
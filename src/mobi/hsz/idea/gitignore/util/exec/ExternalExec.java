@@ -26,20 +26,30 @@ package mobi.hsz.idea.gitignore.util.exec;
 
 import com.intellij.execution.process.BaseOSProcessHandler;
 import com.intellij.execution.process.ProcessHandler;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.VcsRoot;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import git4idea.config.GitExecutableManager;
 import mobi.hsz.idea.gitignore.lang.IgnoreLanguage;
 import mobi.hsz.idea.gitignore.lang.kind.GitLanguage;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
 import mobi.hsz.idea.gitignore.util.Utils;
 import mobi.hsz.idea.gitignore.util.exec.parser.ExecutionOutputParser;
 import mobi.hsz.idea.gitignore.util.exec.parser.GitExcludesOutputParser;
 import mobi.hsz.idea.gitignore.util.exec.parser.GitUnignoredFilesOutputParser;
-import mobi.hsz.idea.gitignore.util.exec.parser.SimpleOutputParser;
+import mobi.hsz.idea.gitignore.util.exec.parser.NulSeparatedOutputParser;
+import mobi.hsz.idea.gitignore.util.git.GitTrackedIgnoredFiles;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -48,8 +58,11 @@ import org.jetbrains.jps.service.SharedThreadPool;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Class that holds util methods for calling external executables (i.e. git/hg)
@@ -58,9 +71,33 @@ import java.util.concurrent.Future;
  * @since 1.4
  */
 public class ExternalExec {
+    /** Logger instance. */
+    private static final Logger LOG = Logger.getInstance(ExternalExec.class);
+
     /** Default external exec timeout. */
     private static final int DEFAULT_TIMEOUT = 5000;
 
+    /** Maximum timeout of the command scaled with the repository size. */
+    private static final int MAX_TIMEOUT = 120000;
+
+    /** Git index size processed in one millisecond, used for scaling the command timeout. */
+    private static final int INDEX_BYTES_PER_MILLISECOND = 1000;
+
+    /** Interval of checking if the process output consumer requested cancellation. */
+    private static final int CANCELLATION_CHECK_INTERVAL = 100;
+
+    /** Maximum number of paths passed to the single command. */
+    private static final int PATHSPEC_BATCH_SIZE = 500;
+
+    /** Pathspec magic that disables wildcards in the passed paths. */
+    @NonNls
+    private static final String LITERAL_PATHSPEC = ":(literal)";
+
+    /** Bounded pool for running commands in multiple repositories, sized to the available cores. */
+    private static final ExecutorService ROOTS_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "IgnoreExternalExec", Runtime.getRuntime().availableProcessors()
+    );
+
     /** Private constructor to prevent creating Icons instance. */
     private ExternalExec() {
     }
@@ -78,7 +115,7 @@ public class ExternalExec {
 
     /** Git command to list ignored but tracked files. */
     @NonNls
-    private static final String GIT_IGNORED_FILES = "ls-files -i --exclude-standard";
+    private static final String GIT_IGNORED_FILES = "ls-files -c -i --exclude-standard -z";
 
     /** Git command to remove file from tracking. */
     @NonNls
@@ -105,6 +142,22 @@ public class ExternalExec {
     @NotNull
     public static List<String> getUnignoredFiles(@NotNull IgnoreLanguage language, @NotNull Project project,
                                                  @NotNull VirtualFile file) {
+        return getUnignoredFiles(language, project, file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns list of unignored files for the given directory. Process is terminated when the given number
+     * of entries was parsed.
+     *
+     * @param language to check
+     * @param project  current project
+     * @param file     current file
+     * @param limit    maximum number of entries
+     * @return unignored files list
+     */
+    @NotNull
+    public static List<String> getUnignoredFiles(@NotNull IgnoreLanguage language, @NotNull Project project,
+                                                 @NotNull VirtualFile file, int limit) {
         if (!Utils.isInProject(file, project)) {
             return ContainerUtil.newArrayList();
         }
@@ -113,7 +166,7 @@ public class ExternalExec {
                 language,
                 GIT_UNIGNORED_FILES,
                 file.getParent(),
-                new GitUnignoredFilesOutputParser()
+                new GitUnignoredFilesOutputParser(limit)
         );
         return Utils.notNullize(result);
     }
@@ -126,13 +179,180 @@ public class ExternalExec {
      */
     @NotNull
     public static List<String> getIgnoredFiles(@NotNull VcsRoot vcsRoot) {
-        ArrayList<String> result = run(
-                GitLanguage.INSTANCE,
-                GIT_IGNORED_FILES,
-                vcsRoot.getPath(),
-                new SimpleOutputParser()
-        );
-        return Utils.notNullize(result);
+        final CommonProcessors.CollectProcessor<String> processor = new CommonProcessors.CollectProcessor<String>();
+        processIgnoredFiles(vcsRoot, processor);
+        return ContainerUtil.newArrayList(processor.getResults());
+    }
+
+    /**
+     * Streams ignored files for the given repository to the processor without collecting the whole output.
+     * Processing stops and the process is terminated when the processor returns <code>false</code>.
+     *
+     * @param vcsRoot   repository to check
+     * @param processor consumer of the relative paths
+     * @return all files were processed
+     */
+    public static boolean processIgnoredFiles(@NotNull VcsRoot vcsRoot, @NotNull Processor<String> processor) {
+        return processIgnoredFiles(vcsRoot, processor, null);
+    }
+
+    /**
+     * Streams ignored files for the given repository to the processor without collecting the whole output.
+     * Processing stops and the process is terminated when the processor returns <code>false</code> or the
+     * indicator gets cancelled. Timeout is scaled with the repository size.
+     *
+     * @param vcsRoot   repository to check
+     * @param processor consumer of the relative paths
+     * @param indicator progress indicator to check for cancellation
+     * @return all files were processed
+     */
+    public static boolean processIgnoredFiles(@NotNull VcsRoot vcsRoot, @NotNull Processor<String> processor,
+                                              @Nullable ProgressIndicator indicator) {
+        final NulSeparatedOutputParser parser = new NulSeparatedOutputParser(processor, indicator);
+        final VirtualFile root = vcsRoot.getPath();
+        return run(GitLanguage.INSTANCE, GIT_IGNORED_FILES, root, parser, getTimeout(root),
+                Collections.<String>emptyList()) != null;
+    }
+
+    /**
+     * Streams ignored files for the given repository limited to the given paths. Paths are passed as literal
+     * pathspecs in batches, so a large number of paths does not exceed the command line limits.
+     *
+     * @param vcsRoot   repository to check
+     * @param paths     paths relative to the repository root
+     * @param processor consumer of the relative paths
+     * @param indicator progress indicator to check for cancellation
+     * @return all files were processed
+     */
+    public static boolean processIgnoredFiles(@NotNull VcsRoot vcsRoot, @NotNull List<String> paths,
+                                              @NotNull Processor<String> processor,
+                                              @Nullable ProgressIndicator indicator) {
+        final VirtualFile root = vcsRoot.getPath();
+        final long timeout = getTimeout(root);
+        for (int i = 0; i < paths.size(); i += PATHSPEC_BATCH_SIZE) {
+            final List<String> arguments = ContainerUtil.newArrayList("--");
+            for (String path : paths.subList(i, Math.min(paths.size(), i + PATHSPEC_BATCH_SIZE))) {
+                arguments.add(LITERAL_PATHSPEC + StringUtil.trimEnd(path, "/"));
+            }
+
+            final NulSeparatedOutputParser parser = new NulSeparatedOutputParser(processor, indicator);
+            if (run(GitLanguage.INSTANCE, GIT_IGNORED_FILES, root, parser, timeout, arguments) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs given task for each item (i.e. repository root) concurrently on the bounded pool and waits for
+     * all of them. Tasks are expected to merge their results only when they complete successfully, so a task
+     * that failed is logged and leaves no partial result. Pending tasks are cancelled as soon as the indicator
+     * gets cancelled.
+     *
+     * @param items     items to process
+     * @param indicator progress indicator to check for cancellation
+     * @param task      task to run for each item
+     * @param <T>       item type
+     * @return all tasks were completed
+     */
+    public static <T> boolean processConcurrently(@NotNull Collection<T> items,
+                                                  @NotNull final ProgressIndicator indicator,
+                                                  @NotNull final Processor<T> task) {
+        final List<Future<?>> futures = ContainerUtil.newArrayList();
+        for (final T item : items) {
+            futures.add(ROOTS_EXECUTOR.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (indicator.isCanceled()) {
+                        return;
+                    }
+                    try {
+                        ProgressManager.getInstance().executeProcessUnderProgress(new Runnable() {
+                            @Override
+                            public void run() {
+                                task.process(item);
+                            }
+                        }, indicator);
+                    } catch (ProcessCanceledException ignored) {
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    if (indicator.isCanceled()) {
+                        cancel(futures);
+                        return false;
+                    }
+                    try {
+                        future.get(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException ignored) {
+                    } catch (ExecutionException e) {
+                        LOG.warn(e.getCause());
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            return false;
+        }
+
+        return !indicator.isCanceled();
+    }
+
+    /**
+     * Cancels given futures.
+     *
+     * @param futures to cancel
+     */
+    private static void cancel(@NotNull List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Returns command timeout scaled with the size of the repository's Git index.
+     *
+     * @param root repository root
+     * @return timeout in milliseconds
+     */
+    private static long getTimeout(@Nullable VirtualFile root) {
+        final File indexFile = root != null ? GitTrackedIgnoredFiles.getIndexFile(root) : null;
+        if (indexFile == null) {
+            return DEFAULT_TIMEOUT;
+        }
+        return Math.min(MAX_TIMEOUT, DEFAULT_TIMEOUT + indexFile.length() / INDEX_BYTES_PER_MILLISECOND);
+    }
+
+    /**
+     * Verifies given paths with the long-lived {@link GitCheckIgnoreSession} bound to the repository root.
+     * Only the local git executable is used.
+     *
+     * @param root  repository root
+     * @param paths paths relative to the root, directories should end with a slash
+     * @return {@link GitCheckIgnoreSession.Match} mapped by path or <code>null</code> if git is not available
+     */
+    @Nullable
+    public static Map<String, GitCheckIgnoreSession.Match> checkIgnore(@NotNull VirtualFile root,
+                                                                       @NotNull Collection<String> paths) {
+        final String bin = bin(GitLanguage.INSTANCE);
+        if (bin == null || !root.isInLocalFileSystem()) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            return GitCheckIgnoreSession.getInstance(bin, root).check(paths);
+        } catch (IOException ignored) {
+        } finally {
+            IgnoreStatistics.recordExternalExec("check-ignore", System.nanoTime() - start);
+        }
+        return null;
     }
 
     /**
@@ -144,8 +364,9 @@ public class ExternalExec {
     public static void removeFileFromTracking(@NotNull VirtualFile file, @NotNull VcsRoot vcsRoot) {
         final VirtualFile root = vcsRoot.getPath();
         if (root != null) {
-            final String command = GIT_REMOVE_FILE_FROM_TRACKING + " " + Utils.getRelativePath(root, file);
-            run(GitLanguage.INSTANCE, command, root);
+            final String path = StringUtil.trimEnd(Utils.getRelativePath(root, file), "/");
+            run(GitLanguage.INSTANCE, GIT_REMOVE_FILE_FROM_TRACKING, root, null, DEFAULT_TIMEOUT,
+                    ContainerUtil.newArrayList("--", LITERAL_PATHSPEC + path));
         }
     }
 
@@ -187,11 +408,16 @@ public class ExternalExec {
      * @param language  current language
      * @param command   to call
      * @param directory current working directory
+     * @param parser    {@link ExecutionOutputParser} implementation
+     * @param <T>       return type
+     * @return result of the call
      */
-    private static void run(@NotNull IgnoreLanguage language,
-                            @NotNull String command,
-                            @Nullable VirtualFile directory) {
-        run(language, command, directory, null);
+    @Nullable
+    private static <T> ArrayList<T> run(@NotNull IgnoreLanguage language,
+                                        @NotNull String command,
+                                        @Nullable VirtualFile directory,
+                                        @Nullable final ExecutionOutputParser<T> parser) {
+        return run(language, command, directory, parser, DEFAULT_TIMEOUT, Collections.<String>emptyList());
     }
 
     /**
@@ -201,6 +427,8 @@ public class ExternalExec {
      * @param command   to call
      * @param directory current working directory
      * @param parser    {@link ExecutionOutputParser} implementation
+     * @param timeout   command timeout in milliseconds
+     * @param arguments additional arguments passed as they are
      * @param <T>       return type
      * @return result of the call
      */
@@ -208,16 +436,24 @@ public class ExternalExec {
     private static <T> ArrayList<T> run(@NotNull IgnoreLanguage language,
                                         @NotNull String command,
                                         @Nullable VirtualFile directory,
-                                        @Nullable final ExecutionOutputParser<T> parser) {
+                                        @Nullable final ExecutionOutputParser<T> parser,
+                                        long timeout,
+                                        @NotNull List<String> arguments) {
         final String bin = bin(language);
         if (bin == null) {
             return null;
         }
 
+        final long start = System.nanoTime();
         try {
             final String cmd = bin + " " + command;
+            final List<String> cmdArray = ContainerUtil.newArrayList(bin);
+            cmdArray.addAll(StringUtil.split(command, " "));
+            cmdArray.addAll(arguments);
+
             final File workingDirectory = directory != null ? new File(directory.getPath()) : null;
-            final Process process = Runtime.getRuntime().exec(cmd, null, workingDirectory);
+            final Process process = Runtime.getRuntime().exec(ArrayUtil.toStringArray(cmdArray), null,
+                    workingDirectory);
 
             ProcessHandler handler = new BaseOSProcessHandler(process, StringUtil.join(cmd, " "), null) {
                 @NotNull
@@ -235,10 +471,13 @@ public class ExternalExec {
             };
 
             handler.startNotify();
-            if (!handler.waitFor(DEFAULT_TIMEOUT)) {
+            if (!waitFor(handler, parser, timeout)) {
                 return null;
             }
             if (parser != null) {
+                if (parser.isLimitReached()) {
+                    return parser.getOutput();
+                }
                 parser.notifyFinished(process.exitValue());
                 if (parser.isErrorsReported()) {
                     return null;
@@ -246,8 +485,44 @@ public class ExternalExec {
                 return parser.getOutput();
             }
         } catch (IOException ignored) {
+        } finally {
+            IgnoreStatistics.recordExternalExec(command.split(" ", 2)[0], System.nanoTime() - start);
         }
 
         return null;
     }
+
+    /**
+     * Waits for the process to terminate up to the given timeout. If parser requests cancellation,
+     * process is destroyed immediately.
+     *
+     * @param handler process handler
+     * @param parser  {@link ExecutionOutputParser} implementation
+     * @param timeout timeout in milliseconds
+     * @return process terminated in time and was not cancelled
+     */
+    private static boolean waitFor(@NotNull ProcessHandler handler, @Nullable ExecutionOutputParser<?> parser,
+                                   long timeout) {
+        if (parser == null) {
+            return handler.waitFor(timeout);
+        }
+
+        long remaining = timeout;
+        while (remaining > 0) {
+            if (parser.isCancelled()) {
+                handler.destroyProcess();
+                return false;
+            }
+            if (parser.isLimitReached()) {
+                handler.destroyProcess();
+                return true;
+            }
+            if (handler.waitFor(Math.min(remaining, CANCELLATION_CHECK_INTERVAL))) {
+                return !parser.isCancelled();
+            }
+            remaining -= CANCELLATION_CHECK_INTERVAL;
+        }
+        handler.destroyProcess();
+        return false;
+    }
 }
@@ -0,0 +1,407 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.exec;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Long-lived <code>git check-ignore</code> process bound to the single repository root. Paths are written to
+ * the process' standard input in batches and verbose answers are parsed from the NUL-delimited output, so
+ * verifying many paths does not require spawning git for each query. Idle sessions are closed after
+ * {@link #IDLE_TIMEOUT}.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GitCheckIgnoreSession {
+    /** Git command arguments. Index is skipped, so tracked files are checked against the rules as well. */
+    @NonNls
+    private static final String[] COMMAND = new String[]{
+            "check-ignore", "--stdin", "-z", "--non-matching", "--verbose", "--no-index"
+    };
+
+    /** Time after which unused session is closed. */
+    private static final int IDLE_TIMEOUT = 60000;
+
+    /** Base timeout of the single batch. */
+    private static final int BATCH_TIMEOUT = 5000;
+
+    /** Fields count of the single verbose answer: source, line number, pattern, path. */
+    private static final int FIELDS = 4;
+
+    /** Running sessions mapped by the repository root path. */
+    private static final ConcurrentMap<String, GitCheckIgnoreSession> SESSIONS = ContainerUtil.newConcurrentMap();
+
+    /** Repository root path. */
+    @NotNull
+    private final String key;
+
+    /** Git process. */
+    @NotNull
+    private final Process process;
+
+    /** Process' standard input. */
+    @NotNull
+    private final OutputStream input;
+
+    /** Process' standard output. */
+    @NotNull
+    private final InputStream output;
+
+    /** Timer closing session when it is idle. */
+    @Nullable
+    private ScheduledFuture<?> idleTimer;
+
+    /** Time of the last {@link #check(Collection)} call. */
+    private long lastUsed;
+
+    /** Session is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Starts a new git process in the given repository root.
+     *
+     * @param bin  path to the git executable
+     * @param root repository root path
+     * @throws IOException if the process cannot be started
+     */
+    private GitCheckIgnoreSession(@NotNull String bin, @NotNull String root) throws IOException {
+        final List<String> command = ContainerUtil.newArrayList(bin);
+        ContainerUtil.addAll(command, COMMAND);
+
+        final ProcessBuilder builder = new ProcessBuilder(command).directory(new File(root));
+        builder.environment().put("GIT_FLUSH", "1");
+
+        this.key = root;
+        this.process = builder.start();
+        this.input = new BufferedOutputStream(process.getOutputStream());
+        this.output = new BufferedInputStream(process.getInputStream());
+        drain(process.getErrorStream());
+    }
+
+    /**
+     * Returns running session for the given repository root or starts a new one.
+     *
+     * @param bin  path to the git executable
+     * @param root repository root
+     * @return session instance
+     * @throws IOException if the process cannot be started
+     */
+    @NotNull
+    static GitCheckIgnoreSession getInstance(@NotNull String bin, @NotNull VirtualFile root) throws IOException {
+        final String key = root.getPath();
+        synchronized (SESSIONS) {
+            GitCheckIgnoreSession session = SESSIONS.get(key);
+            if (session == null || !session.isRunning()) {
+                if (session != null) {
+                    session.close();
+                }
+                session = new GitCheckIgnoreSession(bin, key);
+                SESSIONS.put(key, session);
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Checks given paths relative to the repository root. Directories should end with a slash.
+     *
+     * @param paths paths to check
+     * @return {@link Match} mapped by the given path
+     * @throws IOException if the git process failed or timed out; session is closed then
+     */
+    @NotNull
+    synchronized Map<String, Match> check(@NotNull final Collection<String> paths) throws IOException {
+        if (closed) {
+            throw new IOException("Session is closed: " + key);
+        }
+        cancelIdleTimer();
+
+        final Map<String, Match> result = ContainerUtil.newHashMap();
+        if (paths.isEmpty()) {
+            scheduleIdleTimer();
+            return result;
+        }
+
+        final Future<?> writer = ApplicationManager.getApplication().executeOnPooledThread(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                for (String path : paths) {
+                    input.write(path.getBytes(CharsetToolkit.UTF8_CHARSET));
+                    input.write(0);
+                }
+                input.flush();
+                return null;
+            }
+        });
+        final ScheduledFuture<?> watchdog = JobScheduler.getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                process.destroy();
+            }
+        }, BATCH_TIMEOUT + paths.size(), TimeUnit.MILLISECONDS);
+
+        try {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final String[] fields = new String[FIELDS];
+            for (int i = 0; i < paths.size(); i++) {
+                for (int j = 0; j < FIELDS; j++) {
+                    fields[j] = readField(buffer);
+                }
+                result.put(fields[3], new Match(fields[0], parseLine(fields[1]), fields[2]));
+            }
+            writer.get();
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (InterruptedException e) {
+            close();
+            throw new IOException("Interrupted: " + key);
+        } catch (ExecutionException e) {
+            close();
+            throw new IOException("Cannot write to git process: " + key);
+        } finally {
+            watchdog.cancel(false);
+        }
+
+        scheduleIdleTimer();
+        return result;
+    }
+
+    /** Terminates git process and removes session from the {@link #SESSIONS}. */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cancelIdleTimer();
+        SESSIONS.remove(key, this);
+
+        closeStream(input);
+        closeStream(output);
+        process.destroy();
+    }
+
+    /**
+     * Checks if git process is still alive.
+     *
+     * @return session can be used
+     */
+    private boolean isRunning() {
+        if (closed) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Reads single NUL-terminated field from the process' output.
+     *
+     * @param buffer reusable buffer
+     * @return field value
+     * @throws IOException if the output ended unexpectedly
+     */
+    @NotNull
+    private String readField(@NotNull ByteArrayOutputStream buffer) throws IOException {
+        buffer.reset();
+        int b;
+        while ((b = output.read()) > 0) {
+            buffer.write(b);
+        }
+        if (b < 0) {
+            throw new EOFException("Unexpected end of git check-ignore output: " + key);
+        }
+        return buffer.toString(CharsetToolkit.UTF8);
+    }
+
+    /**
+     * Parses line number field of the answer.
+     *
+     * @param value field value, empty if path was not matched
+     * @return line number
+     * @throws IOException if the output is malformed
+     */
+    private int parseLine(@NotNull String value) throws IOException {
+        try {
+            return value.isEmpty() ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed git check-ignore output: " + key);
+        }
+    }
+
+    /** Schedules closing the session after the {@link #IDLE_TIMEOUT}. */
+    private void scheduleIdleTimer() {
+        lastUsed = System.currentTimeMillis();
+        idleTimer = JobScheduler.getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                closeIfIdle();
+            }
+        }, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /** Closes session if it was not used since the {@link #IDLE_TIMEOUT}. */
+    private synchronized void closeIfIdle() {
+        if (System.currentTimeMillis() - lastUsed >= IDLE_TIMEOUT) {
+            close();
+        }
+    }
+
+    /** Cancels {@link #idleTimer} if scheduled. */
+    private void cancelIdleTimer() {
+        if (idleTimer != null) {
+            idleTimer.cancel(false);
+            idleTimer = null;
+        }
+    }
+
+    /**
+     * Closes given stream quietly.
+     *
+     * @param stream to close
+     */
+    private static void closeStream(@NotNull Closeable stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Reads and discards given stream on a pooled thread until it is closed. Closing the error stream instead would
+     * kill git with <code>SIGPIPE</code> on the first warning.
+     *
+     * @param stream stream to drain
+     */
+    private static void drain(@NotNull final InputStream stream) {
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                final byte[] buffer = new byte[1024];
+                try {
+                    int read;
+                    do {
+                        read = stream.read(buffer);
+                    } while (read >= 0);
+                } catch (IOException ignored) {
+                } finally {
+                    closeStream(stream);
+                }
+            }
+        });
+    }
+
+    /** Single answer of the <code>git check-ignore --verbose</code> command. */
+    public static class Match {
+        /** Source file of the matching pattern, empty if path was not matched. */
+        @NotNull
+        private final String source;
+
+        /** Line number of the pattern in the source file. */
+        private final int line;
+
+        /** Matching pattern, empty if path was not matched. */
+        @NotNull
+        private final String pattern;
+
+        /**
+         * Builds a new instance of {@link Match}.
+         *
+         * @param source  source file
+         * @param line    line number
+         * @param pattern matching pattern
+         */
+        Match(@NotNull String source, int line, @NotNull String pattern) {
+            this.source = source;
+            this.line = line;
+            this.pattern = pattern;
+        }
+
+        /**
+         * Returns source file of the matching pattern, relative to the repository root or absolute.
+         *
+         * @return source file path
+         */
+        @NotNull
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * Returns line number of the matching pattern.
+         *
+         * @return line number
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Returns matching pattern.
+         *
+         * @return pattern
+         */
+        @NotNull
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Checks if path was matched by any pattern, including negated ones.
+         *
+         * @return path was matched
+         */
+        public boolean isMatched() {
+            return !source.isEmpty();
+        }
+
+        /**
+         * Checks if path is ignored - it was matched with a pattern that is not negated.
+         *
+         * @return path is ignored
+         */
+        public boolean isIgnored() {
+            return isMatched() && !pattern.startsWith("!");
+        }
+    }
+}
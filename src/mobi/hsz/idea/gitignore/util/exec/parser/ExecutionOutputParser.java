@@ -97,6 +97,25 @@ public abstract class ExecutionOutputParser<T> {
         return outputs;
     }
 
+    /**
+     * Checks if the output consumer requested to stop the process.
+     *
+     * @return process should be terminated
+     */
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Checks if the parser collected enough output. Process is terminated then and the output collected
+     * so far is returned.
+     *
+     * @return output limit was reached
+     */
+    public boolean isLimitReached() {
+        return false;
+    }
+
     /**
      * Checks if any error occurred during the parsing.
      *
@@ -24,11 +24,14 @@
 
 package mobi.hsz.idea.gitignore.util.exec.parser;
 
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /**
  * Parser for the {@link mobi.hsz.idea.gitignore.util.exec.ExternalExec#GIT_UNIGNORED_FILES} command that
  * returns unignored files entries list.
@@ -41,6 +44,51 @@ public class GitUnignoredFilesOutputParser extends ExecutionOutputParser<String>
     @NonNls
     private static final String GIT_UNIGNORED_FILES_PREFIX = "Would remove";
 
+    /** Maximum number of parsed entries. */
+    private final int limit;
+
+    /** Number of parsed entries, read by {@link #isLimitReached()} from the other threads. */
+    private volatile int count;
+
+    /** Builds a new instance of {@link GitUnignoredFilesOutputParser} without the entries limit. */
+    public GitUnignoredFilesOutputParser() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Builds a new instance of {@link GitUnignoredFilesOutputParser}.
+     *
+     * @param limit maximum number of parsed entries
+     */
+    public GitUnignoredFilesOutputParser(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Handles single output line unless the {@link #limit} was reached.
+     *
+     * @param text       execution response
+     * @param outputType output type
+     */
+    @Override
+    public void onTextAvailable(@NotNull String text, @NotNull Key outputType) {
+        if (!isLimitReached()) {
+            super.onTextAvailable(text, outputType);
+            final List<String> output = getOutput();
+            count = output != null ? output.size() : 0;
+        }
+    }
+
+    /**
+     * Checks if the {@link #limit} of parsed entries was reached.
+     *
+     * @return output limit was reached
+     */
+    @Override
+    public boolean isLimitReached() {
+        return count >= limit;
+    }
+
     /**
      * Parses single entries and removes git output prefixes.
      *
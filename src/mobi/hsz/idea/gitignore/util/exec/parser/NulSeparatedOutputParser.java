@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.exec.parser;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Key;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Streaming parser for the NUL-delimited output (git commands called with <code>-z</code>). Entries are split
+ * across the chunk boundaries and passed directly to the consumer instead of being collected in the output list.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class NulSeparatedOutputParser extends ExecutionOutputParser<String> {
+    /** Entries separator. */
+    private static final char SEPARATOR = '\0';
+
+    /** Consumer of the parsed entries. Returns <code>false</code> to cancel the process. */
+    @NotNull
+    private final Processor<String> consumer;
+
+    /** Incomplete entry left from the previous chunk. */
+    @NotNull
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** Progress indicator that cancels processing. */
+    @Nullable
+    private final ProgressIndicator indicator;
+
+    /** Consumer requested to stop processing. */
+    private volatile boolean cancelled;
+
+    /**
+     * Builds a new instance of {@link NulSeparatedOutputParser}.
+     *
+     * @param consumer entries consumer
+     */
+    public NulSeparatedOutputParser(@NotNull Processor<String> consumer) {
+        this(consumer, null);
+    }
+
+    /**
+     * Builds a new instance of {@link NulSeparatedOutputParser}.
+     *
+     * @param consumer  entries consumer
+     * @param indicator progress indicator that cancels processing
+     */
+    public NulSeparatedOutputParser(@NotNull Processor<String> consumer, @Nullable ProgressIndicator indicator) {
+        this.consumer = consumer;
+        this.indicator = indicator;
+    }
+
+    /**
+     * Splits given chunk on the {@link #SEPARATOR} and passes complete entries to the {@link #consumer}.
+     *
+     * @param text       execution response
+     * @param outputType output type
+     */
+    @Override
+    public void onTextAvailable(@NotNull String text, @NotNull Key outputType) {
+        if (outputType != ProcessOutputTypes.STDOUT) {
+            super.onTextAvailable(text, outputType);
+            return;
+        }
+
+        int start = 0;
+        int end;
+        while (!isCancelled() && (end = text.indexOf(SEPARATOR, start)) >= 0) {
+            if (buffer.length() > 0) {
+                buffer.append(text, start, end);
+                process(buffer.toString());
+                buffer.setLength(0);
+            } else {
+                process(text.substring(start, end));
+            }
+            start = end + 1;
+        }
+
+        if (!cancelled && start < text.length()) {
+            buffer.append(text, start, text.length());
+        }
+    }
+
+    /**
+     * Passes the last entry if it was not terminated with the {@link #SEPARATOR}.
+     *
+     * @param exitCode result of the executable call
+     */
+    @Override
+    public void notifyFinished(int exitCode) {
+        super.notifyFinished(exitCode);
+        if (!cancelled && buffer.length() > 0) {
+            process(buffer.toString());
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * Entries are passed to the {@link #consumer} as they are.
+     *
+     * @param text input data
+     * @return input data
+     */
+    @NotNull
+    @Override
+    protected String parseOutput(@NotNull String text) {
+        return text;
+    }
+
+    /**
+     * Checks if the {@link #consumer} requested to stop processing or the {@link #indicator} was cancelled.
+     *
+     * @return process should be terminated
+     */
+    @Override
+    public boolean isCancelled() {
+        if (!cancelled && indicator != null && indicator.isCanceled()) {
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * Passes single entry to the {@link #consumer}.
+     *
+     * @param entry parsed entry
+     */
+    private void process(@NotNull String entry) {
+        if (!entry.isEmpty() && !consumer.process(parseOutput(entry))) {
+            cancelled = true;
+        }
+    }
+}
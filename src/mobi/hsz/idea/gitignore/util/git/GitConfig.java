@@ -0,0 +1,632 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
+import mobi.hsz.idea.gitignore.util.exec.ExternalExec;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal reader of the global Git configuration (<code>~/.gitconfig</code> and XDG <code>git/config</code>) that
+ * resolves <code>core.excludesfile</code> without running <code>git config</code>. Supports <code>[include]</code>
+ * and <code>[includeIf "gitdir:..."]</code> sections. Resolved value is cached until any of the read
+ * configuration files is modified.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GitConfig {
+    /** Excludes file configuration key. */
+    @NonNls
+    private static final String EXCLUDES_FILE = "core.excludesfile";
+
+    /** Maximum depth of the nested includes, the same as used by Git. */
+    private static final int MAX_INCLUDE_DEPTH = 10;
+
+    /** Resolved excludes file paths mapped with the Git directory used for the conditional includes. */
+    private static final ConcurrentMap<String, Snapshot> CACHE = ContainerUtil.newConcurrentMap();
+
+    /** <code>git config</code> was already called as a fallback. */
+    private static final AtomicBoolean FORKED = new AtomicBoolean();
+
+    /** Excludes file path returned by the <code>git config</code> fallback call. */
+    @Nullable
+    private static volatile String forkedExcludesFile;
+
+    /** Configuration values mapped with the normalized key. The last read value wins. */
+    @NotNull
+    private final Map<String, String> values = ContainerUtil.newHashMap();
+
+    /** Modification stamps of the read or probed configuration files. */
+    @NotNull
+    private final Map<String, Long> stamps = ContainerUtil.newLinkedHashMap();
+
+    /** Git directory used for matching <code>includeIf "gitdir:..."</code> conditions. */
+    @Nullable
+    private final String gitDir;
+
+    /**
+     * Builds a new instance of {@link GitConfig}.
+     *
+     * @param gitDir Git directory used for the conditional includes
+     */
+    GitConfig(@Nullable File gitDir) {
+        this.gitDir = gitDir != null ? FileUtil.toSystemIndependentName(gitDir.getAbsolutePath()) : null;
+    }
+
+    /**
+     * Returns global Git excludes file. Configuration is parsed in-process and the result is cached until
+     * the configuration files are modified. <code>git config</code> is called at most once, only if
+     * configuration cannot be parsed.
+     *
+     * @param gitDir Git directory used for the conditional includes
+     * @return excludes file or <code>null</code> if not found
+     */
+    @Nullable
+    public static VirtualFile getExcludesFile(@Nullable File gitDir) {
+        final String path = findExcludesFilePath(gitDir);
+        return path != null ? VfsUtil.findFileByIoFile(new File(path), true) : null;
+    }
+
+    /**
+     * Returns path of the global Git excludes file without touching the VFS, so it is safe to call when
+     * the VFS refresh is not allowed.
+     *
+     * @param gitDir Git directory used for the conditional includes
+     * @return excludes file path or <code>null</code> if not set
+     * @see #getExcludesFile(File)
+     */
+    @Nullable
+    public static String findExcludesFilePath(@Nullable File gitDir) {
+        final String key = gitDir != null ? gitDir.getPath() : "";
+        Snapshot snapshot = CACHE.get(key);
+        final boolean upToDate = snapshot != null && snapshot.isUpToDate();
+        IgnoreStatistics.recordCache("GitConfig", upToDate);
+
+        if (!upToDate) {
+            final GitConfig config = new GitConfig(gitDir);
+            String path;
+            try {
+                config.readGlobal();
+                path = config.getExcludesFilePath();
+            } catch (IOException e) {
+                if (FORKED.compareAndSet(false, true)) {
+                    final VirtualFile file = ExternalExec.getGitExcludesFile();
+                    forkedExcludesFile = file != null ? file.getPath() : null;
+                }
+                path = forkedExcludesFile;
+            }
+            snapshot = new Snapshot(config.stamps, path);
+            CACHE.put(key, snapshot);
+        }
+        return snapshot.path;
+    }
+
+    /**
+     * Reads global configuration files in the Git order. If <code>GIT_CONFIG_GLOBAL</code> is set, only that file
+     * is read.
+     *
+     * @throws IOException if configuration is malformed
+     */
+    void readGlobal() throws IOException {
+        final String global = System.getenv("GIT_CONFIG_GLOBAL");
+        if (StringUtil.isNotEmpty(global)) {
+            read(new File(global), 0);
+            return;
+        }
+
+        read(new File(getXdgConfigHome(), "git/config"), 0);
+        read(new File(getHome(), ".gitconfig"), 0);
+    }
+
+    /**
+     * Returns configured excludes file path or the default <code>$XDG_CONFIG_HOME/git/ignore</code> one.
+     *
+     * @return excludes file path
+     */
+    @NotNull
+    String getExcludesFilePath() {
+        final String value = get(EXCLUDES_FILE);
+        if (StringUtil.isNotEmpty(value)) {
+            return expandHome(value);
+        }
+        final File file = new File(getXdgConfigHome(), "git/ignore");
+        stamp(file);
+        return file.getPath();
+    }
+
+    /**
+     * Returns the last value of the given key.
+     *
+     * @param key key in the <code>section[.subsection].name</code> format
+     * @return value or <code>null</code> if not set
+     */
+    @Nullable
+    String get(@NotNull String key) {
+        return values.get(normalizeKey(key));
+    }
+
+    /**
+     * Reads given configuration file. Missing files are only stamped, so their creation invalidates the cache.
+     *
+     * @param file  configuration file
+     * @param depth include depth
+     * @throws IOException if file is malformed or includes are nested too deep
+     */
+    void read(@NotNull File file, int depth) throws IOException {
+        if (depth > MAX_INCLUDE_DEPTH) {
+            throw new IOException("Exceeded maximum include depth: " + file.getPath());
+        }
+        stamp(file);
+        if (file.isFile()) {
+            parse(FileUtil.loadFile(file, "UTF-8"), file, depth);
+        }
+    }
+
+    /**
+     * Parses configuration file content.
+     *
+     * @param content file content
+     * @param file    configuration file
+     * @param depth   include depth
+     * @throws IOException if content is malformed
+     */
+    private void parse(@NotNull String content, @NotNull File file, int depth) throws IOException {
+        final Parser parser = new Parser(content, file);
+        String section = null;
+
+        while (parser.skipWhitespaces()) {
+            final char c = parser.peek();
+            if (c == '#' || c == ';') {
+                parser.skipLine();
+            } else if (c == '[') {
+                section = parser.readSection();
+            } else if (Character.isLetter(c)) {
+                if (section == null) {
+                    throw parser.error();
+                }
+                final String name = parser.readName();
+                final String value = parser.readValue();
+                final String key = section + "." + name;
+                values.put(key, value);
+                handleInclude(section, name, value, file, depth);
+            } else {
+                throw parser.error();
+            }
+        }
+    }
+
+    /**
+     * Reads included file if the given variable is an include directive with a matching condition.
+     *
+     * @param section normalized section name
+     * @param name    normalized variable name
+     * @param value   variable value
+     * @param file    current configuration file
+     * @param depth   include depth
+     * @throws IOException if included file is malformed
+     */
+    private void handleInclude(@NotNull String section, @NotNull String name, @NotNull String value,
+                               @NotNull File file, int depth) throws IOException {
+        if (!"path".equals(name) || value.isEmpty()) {
+            return;
+        }
+
+        boolean include = "include".equals(section);
+        if (!include && section.startsWith("includeif.")) {
+            include = matchesCondition(section.substring("includeif.".length()), file);
+        }
+        if (include) {
+            File included = new File(expandHome(value));
+            if (!included.isAbsolute()) {
+                included = new File(file.getParentFile(), value);
+            }
+            read(included, depth + 1);
+        }
+    }
+
+    /**
+     * Checks <code>includeIf</code> condition. Only <code>gitdir:</code> and <code>gitdir/i:</code> are supported,
+     * other conditions never match.
+     *
+     * @param condition condition
+     * @param file      current configuration file
+     * @return condition matches
+     */
+    private boolean matchesCondition(@NotNull String condition, @NotNull File file) {
+        if (gitDir == null) {
+            return false;
+        }
+
+        final boolean ignoreCase = condition.startsWith("gitdir/i:");
+        if (!ignoreCase && !condition.startsWith("gitdir:")) {
+            return false;
+        }
+
+        String pattern = condition.substring(condition.indexOf(':') + 1);
+        if (pattern.startsWith("~/")) {
+            pattern = expandHome(pattern);
+        } else if (pattern.startsWith("./")) {
+            pattern = FileUtil.toSystemIndependentName(file.getParentFile().getAbsolutePath()) + pattern.substring(1);
+        } else if (!pattern.startsWith("/") && !new File(pattern).isAbsolute()) {
+            pattern = "**/" + pattern;
+        }
+        if (pattern.endsWith("/")) {
+            pattern += "**";
+        }
+
+        final Pattern regex = Pattern.compile(createRegex(FileUtil.toSystemIndependentName(pattern)),
+                ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+        return regex.matcher(gitDir).matches();
+    }
+
+    /**
+     * Converts <code>gitdir</code> wildcard pattern to regex.
+     *
+     * @param pattern wildcard pattern
+     * @return regex
+     */
+    @NotNull
+    static String createRegex(@NotNull String pattern) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '*') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '/') {
+                        i++;
+                        builder.append("(?:.*/)?");
+                    } else {
+                        builder.append(".*");
+                    }
+                } else {
+                    builder.append("[^/]*");
+                }
+            } else if (c == '?') {
+                builder.append("[^/]");
+            } else {
+                builder.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Records modification stamp of the given file.
+     *
+     * @param file configuration file
+     */
+    private void stamp(@NotNull File file) {
+        stamps.put(file.getPath(), file.lastModified());
+    }
+
+    /**
+     * Normalizes configuration key - section and variable names are case insensitive, subsection is not.
+     *
+     * @param key key in the <code>section[.subsection].name</code> format
+     * @return normalized key
+     */
+    @NotNull
+    private static String normalizeKey(@NotNull String key) {
+        final int first = key.indexOf('.');
+        final int last = key.lastIndexOf('.');
+        if (first < 0) {
+            return key.toLowerCase();
+        }
+        return key.substring(0, first).toLowerCase() + key.substring(first, last) +
+                key.substring(last).toLowerCase();
+    }
+
+    /**
+     * Expands <code>~/</code> prefix to the user's home directory.
+     *
+     * @param path path to expand
+     * @return expanded path
+     */
+    @NotNull
+    private static String expandHome(@NotNull String path) {
+        return path.startsWith("~/") ? getHome() + path.substring(1) : path;
+    }
+
+    /**
+     * Returns user's home directory.
+     *
+     * @return home directory path
+     */
+    @NotNull
+    private static String getHome() {
+        return System.getProperty("user.home");
+    }
+
+    /**
+     * Returns <code>$XDG_CONFIG_HOME</code> or its default <code>~/.config</code> value.
+     *
+     * @return XDG configuration directory
+     */
+    @NotNull
+    private static String getXdgConfigHome() {
+        final String xdg = System.getenv("XDG_CONFIG_HOME");
+        return StringUtil.isNotEmpty(xdg) ? xdg : getHome() + "/.config";
+    }
+
+    /** Resolved excludes file path with stamps of the configuration files it was resolved from. */
+    private static class Snapshot {
+        /** Modification stamps of the configuration files. */
+        @NotNull
+        private final Map<String, Long> stamps;
+
+        /** Resolved excludes file path. */
+        @Nullable
+        private final String path;
+
+        /**
+         * Builds a new instance of {@link Snapshot}.
+         *
+         * @param stamps modification stamps of the configuration files
+         * @param path   resolved excludes file path
+         */
+        Snapshot(@NotNull Map<String, Long> stamps, @Nullable String path) {
+            this.stamps = stamps;
+            this.path = path;
+        }
+
+        /**
+         * Checks if none of the configuration files was modified, created or deleted.
+         *
+         * @return snapshot is up to date
+         */
+        boolean isUpToDate() {
+            for (Map.Entry<String, Long> entry : stamps.entrySet()) {
+                if (new File(entry.getKey()).lastModified() != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Simple character-based parser of the Git configuration syntax. */
+    private static class Parser {
+        /** Parsed content. */
+        @NotNull
+        private final String content;
+
+        /** Parsed file, used for error messages. */
+        @NotNull
+        private final File file;
+
+        /** Current position. */
+        private int position;
+
+        /**
+         * Builds a new instance of {@link Parser}.
+         *
+         * @param content parsed content
+         * @param file    parsed file
+         */
+        Parser(@NotNull String content, @NotNull File file) {
+            this.content = content;
+            this.file = file;
+        }
+
+        /**
+         * Skips whitespaces and line breaks.
+         *
+         * @return there is more content to parse
+         */
+        boolean skipWhitespaces() {
+            while (position < content.length() && Character.isWhitespace(content.charAt(position))) {
+                position++;
+            }
+            return position < content.length();
+        }
+
+        /**
+         * Returns current character.
+         *
+         * @return current character
+         */
+        char peek() {
+            return content.charAt(position);
+        }
+
+        /** Skips to the next line. */
+        void skipLine() {
+            while (position < content.length() && content.charAt(position) != '\n') {
+                position++;
+            }
+        }
+
+        /**
+         * Reads section header: <code>[section]</code>, <code>[section "subsection"]</code> or legacy
+         * <code>[section.subsection]</code>.
+         *
+         * @return normalized section name
+         * @throws IOException if header is malformed
+         */
+        @NotNull
+        String readSection() throws IOException {
+            position++;
+            final int start = position;
+            while (position < content.length() && (Character.isLetterOrDigit(peek()) || peek() == '-' ||
+                    peek() == '.')) {
+                position++;
+            }
+            final String name = content.substring(start, position).toLowerCase();
+            if (name.isEmpty() || position >= content.length()) {
+                throw error();
+            }
+
+            if (peek() == ']') {
+                position++;
+                return name;
+            }
+
+            while (position < content.length() && (peek() == ' ' || peek() == '\t')) {
+                position++;
+            }
+            if (position >= content.length() || peek() != '"' || name.indexOf('.') >= 0) {
+                throw error();
+            }
+            position++;
+
+            final StringBuilder subsection = new StringBuilder();
+            while (position < content.length() && peek() != '"') {
+                char c = content.charAt(position++);
+                if (c == '\n') {
+                    throw error();
+                }
+                if (c == '\\' && position < content.length()) {
+                    c = content.charAt(position++);
+                }
+                subsection.append(c);
+            }
+            position++;
+            if (position >= content.length() || peek() != ']') {
+                throw error();
+            }
+            position++;
+            return name + "." + subsection;
+        }
+
+        /**
+         * Reads variable name.
+         *
+         * @return normalized variable name
+         */
+        @NotNull
+        String readName() {
+            final int start = position;
+            while (position < content.length() && (Character.isLetterOrDigit(peek()) || peek() == '-')) {
+                position++;
+            }
+            return content.substring(start, position).toLowerCase();
+        }
+
+        /**
+         * Reads variable value. Variables without value are treated as boolean <code>true</code>. Handles
+         * quotes, escape sequences, line continuations and inline comments.
+         *
+         * @return variable value
+         * @throws IOException if value is malformed
+         */
+        @NotNull
+        String readValue() throws IOException {
+            while (position < content.length() && (peek() == ' ' || peek() == '\t')) {
+                position++;
+            }
+            if (position >= content.length() || peek() == '\n' || peek() == '\r' || peek() == '#' ||
+                    peek() == ';') {
+                return "true";
+            }
+            if (peek() != '=') {
+                throw error();
+            }
+            position++;
+
+            final StringBuilder value = new StringBuilder();
+            final StringBuilder spaces = new StringBuilder();
+            boolean quoted = false;
+            while (position < content.length()) {
+                char c = content.charAt(position++);
+                if (c == '\r' && position < content.length() && peek() == '\n') {
+                    continue;
+                }
+                if (c == '\n') {
+                    if (quoted) {
+                        throw error();
+                    }
+                    break;
+                }
+                if (!quoted && (c == '#' || c == ';')) {
+                    skipLine();
+                    break;
+                }
+                if (!quoted && (c == ' ' || c == '\t')) {
+                    if (value.length() > 0) {
+                        spaces.append(c);
+                    }
+                    continue;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                    continue;
+                }
+                if (c == '\\') {
+                    if (position >= content.length()) {
+                        throw error();
+                    }
+                    c = content.charAt(position++);
+                    if (c == '\r' && position < content.length() && peek() == '\n') {
+                        position++;
+                        continue;
+                    } else if (c == '\n') {
+                        continue;
+                    } else if (c == 't') {
+                        c = '\t';
+                    } else if (c == 'n') {
+                        c = '\n';
+                    } else if (c == 'b') {
+                        c = '\b';
+                    } else if (c != '"' && c != '\\') {
+                        throw error();
+                    }
+                }
+                value.append(spaces);
+                spaces.setLength(0);
+                value.append(c);
+            }
+            if (quoted) {
+                throw error();
+            }
+            return value.toString();
+        }
+
+        /**
+         * Creates parsing error with the current position.
+         *
+         * @return exception to throw
+         */
+        @NotNull
+        IOException error() {
+            return new IOException("Invalid Git configuration: " + file.getPath() + " at " + position);
+        }
+    }
+}
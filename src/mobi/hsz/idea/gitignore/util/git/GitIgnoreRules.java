@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of compiled {@link IgnoreRule} of a single Git repository that checks paths with the Git precedence:
+ * <code>.gitignore</code> files from the deepest directory, then <code>.git/info/exclude</code> and global excludes.
+ * Path is ignored also if any of its parent directories is ignored. Instance is immutable after it is filled and can
+ * be used concurrently.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GitIgnoreRules {
+    /** Rules of <code>.gitignore</code> files mapped with their directories relative to the repository root. */
+    @NotNull
+    private final Map<String, IgnoreRule[]> directoryRules = ContainerUtil.newHashMap();
+
+    /** Repository-wide rules ordered by precedence. */
+    @NotNull
+    private final List<IgnoreRule[]> baseRules = ContainerUtil.newArrayList();
+
+    /**
+     * Adds rules of <code>.gitignore</code> file located in the given directory.
+     *
+     * @param directory directory relative to the repository root - empty or ending with slash
+     * @param rules     compiled rules
+     */
+    public void addDirectoryRules(@NotNull String directory, @NotNull IgnoreRule[] rules) {
+        directoryRules.put(directory, rules);
+    }
+
+    /**
+     * Adds repository-wide rules, i.e. <code>.git/info/exclude</code>. Rules added first have higher precedence.
+     *
+     * @param rules compiled rules
+     */
+    public void addBaseRules(@NotNull IgnoreRule[] rules) {
+        baseRules.add(rules);
+    }
+
+    /**
+     * Checks if there are no rules.
+     *
+     * @return rules are empty
+     */
+    public boolean isEmpty() {
+        return directoryRules.isEmpty() && baseRules.isEmpty();
+    }
+
+    /**
+     * Checks if given file path or any of its parent directories is ignored.
+     *
+     * @param path file path relative to the repository root
+     * @return path is ignored
+     */
+    public boolean isIgnored(@NotNull String path) {
+        int slash = path.indexOf('/');
+        while (slash >= 0) {
+            if (isExcluded(path.substring(0, slash + 1))) {
+                return true;
+            }
+            slash = path.indexOf('/', slash + 1);
+        }
+        return isExcluded(path);
+    }
+
+    /**
+     * Checks if given path is excluded by the last matching rule of the most important source.
+     *
+     * @param path path relative to the repository root, directories end with slash
+     * @return path is excluded
+     */
+    private boolean isExcluded(@NotNull String path) {
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        while (end >= 0) {
+            final int slash = path.lastIndexOf('/', end - 1);
+            final String directory = path.substring(0, slash + 1);
+            final Boolean result = match(directoryRules.get(directory), path.substring(directory.length()));
+            if (result != null) {
+                return result;
+            }
+            end = slash;
+        }
+
+        for (IgnoreRule[] rules : baseRules) {
+            final Boolean result = match(rules, path);
+            if (result != null) {
+                return result;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns result of the last rule matching the given path.
+     *
+     * @param rules rules to check
+     * @param path  relative path
+     * @return <code>true</code> if excluded, <code>false</code> if negated or <code>null</code> if nothing matched
+     */
+    @Nullable
+    private static Boolean match(@Nullable IgnoreRule[] rules, @NotNull String path) {
+        if (rules == null) {
+            return null;
+        }
+        for (int i = rules.length - 1; i >= 0; i--) {
+            if (rules[i].match(path)) {
+                return !rules[i].isNegated();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Reader of the Git index file (<code>.git/index</code>) in the <code>DIRC</code> format, versions 2, 3 and 4
+ * (with path prefix compression). File is read to the heap buffer - memory-mapped file would stay locked until
+ * the buffer is garbage collected and Git could not replace it on Windows. Paths of the entries are passed to
+ * the processor while reading.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GitIndexReader {
+    /** Index file signature. */
+    private static final int SIGNATURE = 0x44495243;
+
+    /** Split index extension signature - <code>link</code>. */
+    private static final int EXTENSION_LINK = 0x6c696e6b;
+
+    /** Sparse directory entries extension signature - <code>sdir</code>. */
+    private static final int EXTENSION_SPARSE = 0x73646972;
+
+    /** Size of the fixed part of the entry: stat data, SHA-1 and flags. */
+    private static final int ENTRY_HEADER_SIZE = 62;
+
+    /** Extended flag of the entry. */
+    private static final int FLAG_EXTENDED = 0x4000;
+
+    /** Mask of the entry stage. */
+    private static final int FLAG_STAGE = 0x3000;
+
+    /** Size of the trailing SHA-1 checksum. */
+    private static final int CHECKSUM_SIZE = 20;
+
+    /** Paths encoding. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Private constructor to prevent creating {@link GitIndexReader} instance. */
+    private GitIndexReader() {
+    }
+
+    /**
+     * Reads paths of the entries from the given index file. Each path is passed once, conflicted entries are reduced
+     * to a single path. Processing is stopped if processor returns <code>false</code>.
+     *
+     * @param file      index file
+     * @param processor paths processor
+     * @return <code>false</code> if index uses split index or sparse directories which are not supported, so the
+     * passed paths are incomplete
+     * @throws IOException if file cannot be read or has an invalid format
+     */
+    public static boolean read(@NotNull File file, @NotNull Processor<String> processor) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(FileUtil.loadFileBytes(file));
+        try {
+            return read(buffer, processor);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Unexpected end of the Git index: " + file.getPath());
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Invalid Git index: " + file.getPath());
+        }
+    }
+
+    /**
+     * Reads paths of the entries from the given buffer.
+     *
+     * @param buffer    index content
+     * @param processor paths processor
+     * @return <code>false</code> if index uses unsupported extensions
+     * @throws IOException if content has an invalid format
+     */
+    private static boolean read(@NotNull ByteBuffer buffer, @NotNull Processor<String> processor)
+            throws IOException {
+        if (buffer.getInt() != SIGNATURE) {
+            throw new IOException("Invalid Git index signature");
+        }
+        final int version = buffer.getInt();
+        if (version < 2 || version > 4) {
+            throw new IOException("Unsupported Git index version: " + version);
+        }
+
+        final int count = buffer.getInt();
+        byte[] name = new byte[256];
+        int nameLength = 0;
+        String previous = null;
+        boolean processing = true;
+
+        for (int i = 0; i < count; i++) {
+            final int start = buffer.position();
+            buffer.position(start + ENTRY_HEADER_SIZE - 2);
+            final int flags = buffer.getShort() & 0xffff;
+            if (version >= 3 && (flags & FLAG_EXTENDED) != 0) {
+                buffer.getShort();
+            }
+
+            if (version == 4) {
+                nameLength -= readVarInt(buffer);
+                if (nameLength < 0) {
+                    throw new IOException("Invalid Git index path prefix");
+                }
+            } else {
+                nameLength = 0;
+            }
+
+            byte b;
+            while ((b = buffer.get()) != 0) {
+                if (nameLength == name.length) {
+                    final byte[] bigger = new byte[name.length * 2];
+                    System.arraycopy(name, 0, bigger, 0, nameLength);
+                    name = bigger;
+                }
+                name[nameLength++] = b;
+            }
+
+            if (version < 4) {
+                final int length = buffer.position() - start;
+                buffer.position(start + ((length + 7) & ~7));
+            }
+
+            if (processing) {
+                final String path = new String(name, 0, nameLength, UTF8);
+                if ((flags & FLAG_STAGE) == 0 || !path.equals(previous)) {
+                    processing = processor.process(path);
+                }
+                previous = path;
+            }
+        }
+
+        while (buffer.remaining() > CHECKSUM_SIZE) {
+            final int signature = buffer.getInt();
+            if (signature == EXTENSION_LINK || signature == EXTENSION_SPARSE) {
+                return false;
+            }
+            final int size = buffer.getInt();
+            buffer.position(buffer.position() + size);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads variable-length integer used by the index version 4.
+     *
+     * @param buffer index content
+     * @return read value
+     */
+    private static int readVarInt(@NotNull ByteBuffer buffer) {
+        int b = buffer.get() & 0xff;
+        int value = b & 0x7f;
+        while ((b & 0x80) != 0) {
+            b = buffer.get() & 0xff;
+            value = ((value + 1) << 7) | (b & 0x7f);
+        }
+        return value;
+    }
+}
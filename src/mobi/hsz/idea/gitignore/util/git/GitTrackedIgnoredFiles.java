@@ -0,0 +1,439 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.file.type.kind.GitFileType;
+import mobi.hsz.idea.gitignore.indexing.IgnoreEntryOccurrence;
+import mobi.hsz.idea.gitignore.indexing.IgnoreFilesIndex;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
+import mobi.hsz.idea.gitignore.util.IgnoreStatistics;
+import mobi.hsz.idea.gitignore.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Finds tracked files that are ignored in the Git repository without running <code>git ls-files</code>. Tracked paths
+ * are read from the <code>.git/index</code> with {@link GitIndexReader} and checked with the compiled rules of
+ * the indexed Git ignore files, <code>.git/info/exclude</code> and the global excludes file. Paths are cached until
+ * the index file is modified.
+ * <p>
+ * Indexed rules are complete only if the whole repository is in the project content. Otherwise - i.e. repository
+ * root is above the project or tracked files are located in the excluded directories - <code>null</code> is returned,
+ * so callers fall back to <code>git ls-files</code>.
+ *
+ * @author Jakub Chrzanowski <jakub@hsz.mobi>
+ * @since 3.0.1
+ */
+public class GitTrackedIgnoredFiles {
+    /** Tracked paths mapped with the index file path. */
+    private static final ConcurrentMap<String, TrackedPaths> CACHE = ContainerUtil.newConcurrentMap();
+
+    /** Private constructor to prevent creating {@link GitTrackedIgnoredFiles} instance. */
+    private GitTrackedIgnoredFiles() {
+    }
+
+    /**
+     * Returns tracked and ignored paths of the given repository.
+     *
+     * @param project current project
+     * @param root    repository root
+     * @return paths relative to the root or <code>null</code> if index or rules cannot be used and
+     * <code>git ls-files</code> has to be called instead
+     */
+    @Nullable
+    public static List<String> getIgnoredFiles(@NotNull final Project project, @NotNull final VirtualFile root) {
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+
+        final File indexFile = getIndexFile(root);
+        final String[] paths = indexFile != null ? getTrackedPaths(indexFile) : null;
+        if (paths == null) {
+            return null;
+        }
+
+        return match(project, root, paths, Arrays.asList(paths));
+    }
+
+    /**
+     * Returns tracked and ignored paths of the given repository limited to the given paths. Directory paths cover
+     * all tracked files inside.
+     *
+     * @param project current project
+     * @param root    repository root
+     * @param paths   paths relative to the root to check
+     * @return paths relative to the root or <code>null</code> if index or rules cannot be used and
+     * <code>git ls-files</code> has to be called instead
+     */
+    @Nullable
+    public static List<String> getIgnoredFiles(@NotNull final Project project, @NotNull final VirtualFile root,
+                                               @NotNull Collection<String> paths) {
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+
+        final File indexFile = getIndexFile(root);
+        final String[] tracked = indexFile != null ? getTrackedPaths(indexFile) : null;
+        if (tracked == null) {
+            return null;
+        }
+
+        final Set<String> selected = ContainerUtil.newLinkedHashSet();
+        for (String path : paths) {
+            final String directory = StringUtil.trimEnd(path, "/");
+            final int index = Arrays.binarySearch(tracked, directory);
+            if (index >= 0) {
+                selected.add(directory);
+            }
+
+            final String prefix = directory + "/";
+            for (int i = Math.abs(index + 1); i < tracked.length && tracked[i].startsWith(prefix); i++) {
+                selected.add(tracked[i]);
+            }
+        }
+        return match(project, root, tracked, ContainerUtil.newArrayList(selected));
+    }
+
+    /**
+     * Matches given tracked paths with the rules of the repository.
+     *
+     * @param project current project
+     * @param root    repository root
+     * @param tracked all sorted tracked paths of the repository
+     * @param paths   tracked paths relative to the root to match
+     * @return ignored paths or <code>null</code> if rules cannot be collected
+     */
+    @Nullable
+    private static List<String> match(@NotNull final Project project, @NotNull final VirtualFile root,
+                                      @NotNull final String[] tracked, @NotNull List<String> paths) {
+        final List<String> result = ContainerUtil.createConcurrentList();
+        if (paths.isEmpty()) {
+            return result;
+        }
+
+        final IgnoreRule[][] baseRules = readBaseRules(root);
+        if (baseRules == null) {
+            return null;
+        }
+
+        final GitIgnoreRules rules = ApplicationManager.getApplication().runReadAction(
+                new Computable<GitIgnoreRules>() {
+                    @Override
+                    public GitIgnoreRules compute() {
+                        return collectRules(project, root, tracked, baseRules);
+                    }
+                }
+        );
+        if (rules == null) {
+            return null;
+        }
+        if (rules.isEmpty()) {
+            return result;
+        }
+
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator == null) {
+            indicator = new EmptyProgressIndicator();
+        }
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(paths, indicator, false,
+                new Processor<String>() {
+                    @Override
+                    public boolean process(String path) {
+                        if (rules.isIgnored(path)) {
+                            result.add(path);
+                        }
+                        return true;
+                    }
+                }
+        );
+        return result;
+    }
+
+    /**
+     * Finds index file of the given repository.
+     *
+     * @param root repository root
+     * @return index file or <code>null</code> if not found
+     */
+    @Nullable
+    public static File getIndexFile(@NotNull VirtualFile root) {
+        final File gitDir = getGitDirectory(root);
+        final File indexFile = gitDir != null ? new File(gitDir, "index") : null;
+        return indexFile != null && indexFile.isFile() ? indexFile : null;
+    }
+
+    /**
+     * Finds Git directory of the given repository. Supports <code>.git</code> files pointing to the Git directory
+     * used by submodules and worktrees.
+     *
+     * @param root repository root
+     * @return Git directory or <code>null</code> if not found
+     */
+    @Nullable
+    public static File getGitDirectory(@NotNull VirtualFile root) {
+        File gitDir = new File(root.getPath(), ".git");
+        if (gitDir.isFile()) {
+            try {
+                final String content = FileUtil.loadFile(gitDir).trim();
+                if (!content.startsWith("gitdir:")) {
+                    return null;
+                }
+                final File target = new File(content.substring("gitdir:".length()).trim());
+                gitDir = target.isAbsolute() ? target : new File(root.getPath(), target.getPath());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return gitDir.isDirectory() ? gitDir : null;
+    }
+
+    /**
+     * Returns sorted tracked paths read from the given index file. Cached paths are used if file was not modified.
+     *
+     * @param indexFile index file
+     * @return tracked paths or <code>null</code> if index cannot be read
+     */
+    @Nullable
+    private static String[] getTrackedPaths(@NotNull File indexFile) {
+        final long lastModified = indexFile.lastModified();
+        final long length = indexFile.length();
+        final TrackedPaths cached = CACHE.get(indexFile.getPath());
+        final boolean upToDate = cached != null && cached.lastModified == lastModified && cached.length == length;
+        IgnoreStatistics.recordCache("GitTrackedIgnoredFiles.index", upToDate);
+        if (upToDate) {
+            return cached.paths;
+        }
+
+        final List<String> paths = ContainerUtil.newArrayList();
+        try {
+            final boolean complete = GitIndexReader.read(indexFile, new Processor<String>() {
+                @Override
+                public boolean process(String path) {
+                    paths.add(path);
+                    return true;
+                }
+            });
+            if (!complete) {
+                CACHE.remove(indexFile.getPath());
+                return null;
+            }
+        } catch (IOException e) {
+            CACHE.remove(indexFile.getPath());
+            return null;
+        }
+
+        final String[] sorted = ArrayUtil.toStringArray(paths);
+        Arrays.sort(sorted);
+        final TrackedPaths result = new TrackedPaths(sorted, lastModified, length);
+        CACHE.put(indexFile.getPath(), result);
+        return result.paths;
+    }
+
+    /**
+     * Reads and compiles rules of <code>.git/info/exclude</code> and the global excludes file. Files are read directly
+     * from the disk, so it has to be called outside of the read action.
+     *
+     * @param root repository root
+     * @return exclude and global rules or <code>null</code> if any of files cannot be read
+     */
+    @Nullable
+    private static IgnoreRule[][] readBaseRules(@NotNull VirtualFile root) {
+        final File gitDir = getGitDirectory(root);
+        final IgnoreRule[] excludeRules = gitDir != null ? readRules(new File(gitDir, "info/exclude")) : null;
+        final String excludesFile = GitConfig.findExcludesFilePath(gitDir);
+        final IgnoreRule[] globalRules = excludesFile != null ?
+                readRules(new File(excludesFile)) : new IgnoreRule[0];
+        if (excludeRules == null || globalRules == null) {
+            return null;
+        }
+        return new IgnoreRule[][]{excludeRules, globalRules};
+    }
+
+    /**
+     * Collects compiled rules of the Git ignore files that affect the given repository. Repository
+     * <code>.gitignore</code> files are taken from the index and merged with the given base rules.
+     *
+     * @param project   current project
+     * @param root      repository root
+     * @param tracked   all sorted tracked paths of the repository
+     * @param baseRules rules returned by {@link #readBaseRules(VirtualFile)}
+     * @return repository rules or <code>null</code> if indexed files may not cover the whole repository or indexes
+     * are not ready
+     */
+    @Nullable
+    private static GitIgnoreRules collectRules(@NotNull Project project, @NotNull VirtualFile root,
+                                               @NotNull String[] tracked, @NotNull IgnoreRule[][] baseRules) {
+        if (DumbService.isDumb(project) || !isCoveredByIndex(project, root, tracked)) {
+            return null;
+        }
+
+        final List<IgnoreEntryOccurrence> entries = IgnoreFilesIndex.getEntries(project, GitFileType.INSTANCE);
+        if (DumbService.isDumb(project)) {
+            return null;
+        }
+
+        final GitIgnoreRules rules = new GitIgnoreRules();
+        for (IgnoreEntryOccurrence entry : entries) {
+            final VirtualFile file = entry.getFile();
+            final VirtualFile parent = file != null ? file.getParent() : null;
+            if (parent != null && Utils.isUnder(parent, root)) {
+                final String directory = StringUtil.notNullize(VfsUtilCore.getRelativePath(parent, root, '/'));
+                rules.addDirectoryRules(directory.isEmpty() ? "" : directory + "/", entry.getItems());
+            }
+        }
+
+        for (IgnoreRule[] base : baseRules) {
+            rules.addBaseRules(base);
+        }
+        return rules;
+    }
+
+    /**
+     * Checks if all <code>.gitignore</code> files that may affect tracked files are indexed. Repository root has to be
+     * in the project content and no tracked file can be located in the excluded directory.
+     *
+     * @param project current project
+     * @param root    repository root
+     * @param tracked all sorted tracked paths of the repository
+     * @return indexed files cover the repository
+     */
+    private static boolean isCoveredByIndex(@NotNull Project project, @NotNull VirtualFile root,
+                                            @NotNull String[] tracked) {
+        if (!ProjectRootManager.getInstance(project).getFileIndex().isInContent(root)) {
+            return false;
+        }
+
+        for (Module module : ModuleManager.getInstance(project).getModules()) {
+            for (VirtualFile excluded : ModuleRootManager.getInstance(module).getExcludeRoots()) {
+                if (!Utils.isUnder(excluded, root)) {
+                    continue;
+                }
+
+                final String prefix = StringUtil.notNullize(VfsUtilCore.getRelativePath(excluded, root, '/')) + "/";
+                final int index = Math.abs(Arrays.binarySearch(tracked, prefix) + 1);
+                if (index < tracked.length && tracked[index].startsWith(prefix)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads and compiles rules of the ignore file which is not indexed.
+     *
+     * @param file ignore file
+     * @return compiled rules, empty if file does not exist or <code>null</code> if it cannot be read
+     */
+    @Nullable
+    private static IgnoreRule[] readRules(@NotNull File file) {
+        if (!file.isFile()) {
+            return new IgnoreRule[0];
+        }
+
+        final List<String> lines;
+        try {
+            lines = StringUtil.split(FileUtil.loadFile(file, "UTF-8"), "\n");
+        } catch (IOException e) {
+            return null;
+        }
+
+        final List<IgnoreRule> rules = ContainerUtil.newArrayList();
+        for (String line : lines) {
+            String value = StringUtil.trimEnd(line, "\r");
+            while (value.endsWith(" ") && !value.endsWith("\\ ")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            if (value.isEmpty() || value.startsWith("#")) {
+                continue;
+            }
+
+            final boolean negated = value.startsWith("!");
+            if (negated) {
+                value = value.substring(1);
+            } else if (value.startsWith("\\#") || value.startsWith("\\!")) {
+                value = value.substring(1);
+            }
+            if (!value.isEmpty()) {
+                rules.add(IgnoreRule.create(value, IgnoreBundle.Syntax.GLOB, negated));
+            }
+        }
+        return rules.toArray(new IgnoreRule[rules.size()]);
+    }
+
+    /** Tracked paths read from the index file with the file's state. */
+    private static class TrackedPaths {
+        /** Tracked paths. */
+        @NotNull
+        private final String[] paths;
+
+        /** Index file modification time. */
+        private final long lastModified;
+
+        /** Index file length. */
+        private final long length;
+
+        /**
+         * Constructor.
+         *
+         * @param paths        tracked paths
+         * @param lastModified index file modification time
+         * @param length       index file length
+         */
+        private TrackedPaths(@NotNull String[] paths, long lastModified, long length) {
+            this.paths = paths;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
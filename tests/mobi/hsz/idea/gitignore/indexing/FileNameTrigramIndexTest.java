@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class FileNameTrigramIndexTest extends Common<FileNameTrigramIndex> {
+
+    @Test
+    public void testGetTrigrams() {
+        assertEquals(0, FileNameTrigramIndex.getTrigrams("").length);
+        assertEquals(0, FileNameTrigramIndex.getTrigrams("ab").length);
+        assertEquals(1, FileNameTrigramIndex.getTrigrams("abc").length);
+        assertEquals(3, FileNameTrigramIndex.getTrigrams("abcde").length);
+        assertEquals(1, FileNameTrigramIndex.getTrigrams("aaaaa").length);
+    }
+
+    @Test
+    public void testGetTrigramsCaseInsensitive() {
+        assertEquals(FileNameTrigramIndex.getTrigrams("ABC")[0], FileNameTrigramIndex.getTrigrams("abc")[0]);
+    }
+
+    @Test
+    public void testGetTrigramsOfPart() {
+        final int[] name = FileNameTrigramIndex.getTrigrams("Main.java");
+        Arrays.sort(name);
+        for (int trigram : FileNameTrigramIndex.getTrigrams("java")) {
+            assertTrue(Arrays.binarySearch(name, trigram) >= 0);
+        }
+    }
+}
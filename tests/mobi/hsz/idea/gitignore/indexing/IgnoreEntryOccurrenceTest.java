@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.indexing;
+
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class IgnoreEntryOccurrenceTest extends Common<IgnoreEntryOccurrence> {
+
+    private static final String URL = "file:///project/.gitignore";
+
+    private static final String[] ENTRIES = new String[]{
+            "*.jar", "*.war", "*.ear", "out/", ".gradle/", "build/", "!out/foo.txt", "!bar/", "/target/",
+            "**/node_modules", "*.log", "!important.log", "logs/**/*.txt", "foo[ab]r", ".idea/workspace.xml",
+            "*.log", "build/", "!build/keep"
+    };
+
+    @Test
+    public void testSerialization() throws IOException {
+        final IgnoreEntryOccurrence occurrence = create(ENTRIES);
+        final IgnoreEntryOccurrence read = read(write(occurrence));
+
+        assertEquals(occurrence, read);
+        assertEquals(ENTRIES.length, read.getItems().length);
+        for (int i = 0; i < ENTRIES.length; i++) {
+            assertEquals(ENTRIES[i].startsWith("!"), read.getItems()[i].isNegated());
+        }
+    }
+
+    @Test
+    public void testEmptySerialization() throws IOException {
+        final IgnoreEntryOccurrence occurrence = create();
+        final IgnoreEntryOccurrence read = read(write(occurrence));
+
+        assertEquals(occurrence, read);
+        assertEquals(0, read.getItems().length);
+    }
+
+    @Test
+    public void testSerializedSize() throws IOException {
+        final IgnoreEntryOccurrence occurrence = create(ENTRIES);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(URL);
+        out.writeInt(occurrence.getItems().length);
+        for (IgnoreRule item : occurrence.getItems()) {
+            out.writeByte(0);
+            out.writeByte(0);
+            out.writeUTF(item.getGlob());
+            out.writeUTF(item.getValue());
+            out.writeInt(item.getParts().length);
+            for (String part : item.getParts()) {
+                out.writeUTF(part);
+            }
+        }
+
+        assertTrue(write(occurrence).length < bytes.size());
+    }
+
+    private static IgnoreEntryOccurrence create(String... entries) {
+        final List<IgnoreRule> items = ContainerUtil.newArrayList();
+        for (String entry : entries) {
+            final boolean negated = entry.startsWith("!");
+            items.add(IgnoreRule.create(negated ? entry.substring(1) : entry, IgnoreBundle.Syntax.GLOB, negated));
+        }
+        return new IgnoreEntryOccurrence(URL, items);
+    }
+
+    private static byte[] write(IgnoreEntryOccurrence occurrence) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IgnoreEntryOccurrence.serialize(new DataOutputStream(bytes), occurrence);
+        return bytes.toByteArray();
+    }
+
+    private static IgnoreEntryOccurrence read(byte[] bytes) throws IOException {
+        return IgnoreEntryOccurrence.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CompressedBitmapTest extends Common<CompressedBitmap> {
+
+    @Test
+    public void testOf() {
+        final CompressedBitmap bitmap = CompressedBitmap.of(5, 1, 70000, 5, 3);
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(Arrays.equals(new int[]{1, 3, 5, 70000}, bitmap.toArray()));
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(2));
+        assertFalse(bitmap.contains(-1));
+        assertTrue(CompressedBitmap.of().isEmpty());
+    }
+
+    @Test
+    public void testSetOperations() {
+        final CompressedBitmap left = CompressedBitmap.of(1, 2, 3, 70000);
+        final CompressedBitmap right = CompressedBitmap.of(3, 4, 70000, 140000);
+
+        assertTrue(Arrays.equals(new int[]{1, 2, 3, 4, 70000, 140000}, left.or(right).toArray()));
+        assertTrue(Arrays.equals(new int[]{3, 70000}, left.and(right).toArray()));
+        assertTrue(Arrays.equals(new int[]{1, 2}, left.andNot(right).toArray()));
+        assertTrue(left.intersects(right));
+        assertFalse(left.intersects(CompressedBitmap.of(5, 6)));
+        assertTrue(left.containsAll(CompressedBitmap.of(2, 70000)));
+        assertFalse(left.containsAll(right));
+        assertTrue(left.andNot(left).isEmpty());
+    }
+
+    @Test
+    public void testDenseContainers() {
+        final int[] even = new int[10000];
+        final int[] all = new int[20000];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+            if (i < even.length) {
+                even[i] = i * 2;
+            }
+        }
+
+        final CompressedBitmap evenBitmap = CompressedBitmap.of(even);
+        final CompressedBitmap allBitmap = CompressedBitmap.of(all);
+        assertEquals(10000, evenBitmap.cardinality());
+        assertTrue(allBitmap.containsAll(evenBitmap));
+        assertFalse(evenBitmap.containsAll(allBitmap));
+        assertEquals(evenBitmap, allBitmap.and(evenBitmap));
+        assertEquals(10000, allBitmap.andNot(evenBitmap).cardinality());
+        assertEquals(allBitmap, evenBitmap.or(allBitmap.andNot(evenBitmap)));
+    }
+}
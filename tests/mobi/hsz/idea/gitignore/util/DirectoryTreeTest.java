@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class DirectoryTreeTest extends Common<DirectoryTree> {
+
+    @Test
+    public void testSubdirectories() {
+        myFixture.addFileToProject("a/b/c/file.txt", "");
+        myFixture.addFileToProject("a/d/file.txt", "");
+        myFixture.addFileToProject("e/file.txt", "");
+
+        final VirtualFile root = myFixture.getTempDirFixture().getFile("");
+        final VirtualFile a = myFixture.getTempDirFixture().getFile("a");
+        final VirtualFile b = myFixture.getTempDirFixture().getFile("a/b");
+        final VirtualFile c = myFixture.getTempDirFixture().getFile("a/b/c");
+        assertNotNull(root);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNotNull(c);
+
+        final DirectoryTree tree = DirectoryTree.create(root, 100);
+        assertNotNull(tree);
+        assertEquals(root, tree.getRoot());
+        assertTrue(tree.contains(c));
+        assertEquals(3, tree.getSubdirectories(a).length);
+        assertEquals(1, tree.getSubdirectories(b).length);
+        assertEquals(((VirtualFileWithId) c).getId(), tree.getSubdirectories(b)[0]);
+        assertEquals(0, tree.getSubdirectories(c).length);
+        assertEquals(((VirtualFileWithId) b).getId(), tree.getParent(c));
+        assertEquals(-1, tree.getParent(root));
+        assertEquals(c, DirectoryTree.findDirectory(((VirtualFileWithId) c).getId()));
+    }
+
+    @Test
+    public void testAddAndRemoveSubtree() {
+        myFixture.addFileToProject("a/b/file.txt", "");
+        myFixture.addFileToProject("e/file.txt", "");
+
+        final VirtualFile root = myFixture.getTempDirFixture().getFile("");
+        final VirtualFile a = myFixture.getTempDirFixture().getFile("a");
+        final VirtualFile b = myFixture.getTempDirFixture().getFile("a/b");
+        final VirtualFile e = myFixture.getTempDirFixture().getFile("e");
+        assertNotNull(root);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNotNull(e);
+
+        final DirectoryTree tree = DirectoryTree.create(root, 100);
+        assertNotNull(tree);
+
+        final DirectoryTree removed = tree.removeSubtree(a);
+        assertFalse(removed.contains(a));
+        assertFalse(removed.contains(b));
+        assertTrue(removed.contains(e));
+        assertEquals(tree.size() - 2, removed.size());
+        assertEquals(((VirtualFileWithId) root).getId(), removed.getParent(e));
+        assertSame(removed, removed.removeSubtree(root));
+
+        final DirectoryTree added = removed.addSubtree(a, 100);
+        assertNotNull(added);
+        assertTrue(added.contains(b));
+        assertEquals(tree.size(), added.size());
+        assertEquals(1, added.getSubdirectories(a).length);
+        assertEquals(((VirtualFileWithId) a).getId(), added.getParent(b));
+        assertEquals(tree.size() - 1, added.getSubdirectories(root).length);
+        assertNull(removed.addSubtree(a, removed.size() + 1));
+    }
+
+    @Test
+    public void testLimit() {
+        myFixture.addFileToProject("a/b/c/file.txt", "");
+
+        final VirtualFile root = myFixture.getTempDirFixture().getFile("");
+        assertNotNull(root);
+        assertNull(DirectoryTree.create(root, 2));
+    }
+}
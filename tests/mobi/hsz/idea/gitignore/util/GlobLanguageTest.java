@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class GlobLanguageTest extends Common<GlobLanguage> {
+
+    @Test
+    public void testCreate() {
+        assertNotNull(GlobLanguage.create("foo/*.txt"));
+        assertNotNull(GlobLanguage.create("**/foo/"));
+        assertNull(GlobLanguage.create("[abc"));
+        assertNull(GlobLanguage.create("foo//bar"));
+        assertNull(GlobLanguage.create("/"));
+    }
+
+    @Test
+    public void testIncludes() {
+        assertTrue(includes("*.log", "foo.log"));
+        assertFalse(includes("foo.log", "*.log"));
+        assertTrue(includes("foo", "foo/bar"));
+        assertFalse(includes("foo/bar", "foo"));
+        assertTrue(includes("subdir1/*", "subdir1/f*"));
+        assertFalse(includes("subdir1/f*", "subdir1/*"));
+        assertTrue(includes("foo", "foo/"));
+        assertFalse(includes("foo/", "foo"));
+        assertTrue(includes("foo", "/foo"));
+        assertFalse(includes("/foo", "foo"));
+        assertTrue(includes("[a-c]x", "bx"));
+        assertFalse(includes("[a-c]x", "dx"));
+        assertTrue(includes("?x", "[!a]x"));
+        assertFalse(includes("[!a]x", "?x"));
+        assertTrue(includes("foo*", "foo\\*"));
+        assertFalse(includes("foo\\*", "foo*"));
+    }
+
+    @Test
+    public void testIncludesDoubleStar() {
+        assertTrue(includes("**/a", "a"));
+        assertTrue(includes("a", "**/a"));
+        assertTrue(includes("a/**/b", "a/b"));
+        assertFalse(includes("a/b", "a/**/b"));
+        assertTrue(includes("a/**/c", "a/*/c"));
+        assertFalse(includes("a/*/c", "a/**/c"));
+        assertTrue(includes("a", "a/**"));
+        assertFalse(includes("a/**", "a"));
+    }
+
+    @Test
+    public void testIntersects() {
+        assertTrue(intersects("*.log", "foo.*"));
+        assertTrue(intersects("foo/", "*.txt"));
+        assertTrue(intersects("a", "b/a"));
+        assertFalse(intersects("/a", "b/a"));
+        assertFalse(intersects("/x.txt", "/y/*"));
+    }
+
+    private static boolean includes(String glob, String other) {
+        return GlobLanguage.create(glob).includes(GlobLanguage.create(other));
+    }
+
+    private static boolean intersects(String glob, String other) {
+        return GlobLanguage.create(glob).intersects(GlobLanguage.create(other));
+    }
+}
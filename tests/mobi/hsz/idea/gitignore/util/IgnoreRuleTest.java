@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+public class IgnoreRuleTest extends Common<IgnoreRule> {
+
+    private static final String[] PATHS = new String[]{
+            "foo", "foo/", "a/foo", "a/foo/", "foo/bar", "a/foo/bar", "bar", "xfoo", "foox",
+            "debug.log", "a/debug.log", "a/b.log/", "log", "a/b/c", "a/b/c/", "b/c", "x/a/b/c"
+    };
+
+    @Test
+    public void testKind() {
+        assertEquals(IgnoreRule.Kind.NAME, create("foo").getKind());
+        assertEquals(IgnoreRule.Kind.NAME, create("foo/").getKind());
+        assertEquals(IgnoreRule.Kind.PATH, create("/foo").getKind());
+        assertEquals(IgnoreRule.Kind.PATH, create("a/b/c").getKind());
+        assertEquals(IgnoreRule.Kind.PATH, create("a/b/c/").getKind());
+        assertEquals(IgnoreRule.Kind.SUFFIX, create("*.log").getKind());
+        assertEquals(IgnoreRule.Kind.REGEX, create("*.log/").getKind());
+        assertEquals(IgnoreRule.Kind.REGEX, create("f?o").getKind());
+        assertEquals(IgnoreRule.Kind.REGEX, create("**/foo").getKind());
+        assertEquals(IgnoreRule.Kind.REGEX,
+                IgnoreRule.create("foo", IgnoreBundle.Syntax.REGEXP, false).getKind());
+
+        assertTrue(create("foo/").isDirectory());
+        assertTrue(create("/foo").isAnchored());
+        assertFalse(create("foo").isAnchored());
+        assertTrue(IgnoreRule.create("foo", IgnoreBundle.Syntax.GLOB, true).isNegated());
+    }
+
+    @Test
+    public void testMatchConsistentWithGlob() {
+        final String[] globs = new String[]{
+                "foo", "foo/", "/foo", "/foo/", "a/b/c", "a/b/c/", "b/c", "*.log", "*.log/", "f?o", "**/foo", "a/**"
+        };
+
+        for (String glob : globs) {
+            final IgnoreRule rule = create(glob);
+            final Pattern pattern = Glob.createPattern(glob, IgnoreBundle.Syntax.GLOB);
+            assertNotNull(pattern);
+            for (String path : PATHS) {
+                assertEquals(glob + " -> " + path, pattern.matcher(path).find(), rule.match(path));
+            }
+        }
+    }
+
+    private static IgnoreRule create(String glob) {
+        return IgnoreRule.create(glob, IgnoreBundle.Syntax.GLOB, false);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util;
+
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class PathsSnapshotTest extends Common<PathsSnapshot> {
+    private final PathsSnapshot snapshot = new PathsSnapshot(ContainerUtil.newArrayList(
+            "src/", "src/main/", "src/main/Foo.java", "src/foo/", "README.md", "foo.txt", "lib/x/y/foobar/", "Food/"
+    ));
+
+    @Test
+    public void testFindByPrefix() {
+        assertEquals(ContainerUtil.newArrayList("src/", "src/foo/", "src/main/", "src/main/Foo.java"),
+                snapshot.findByPrefix("src", 0, 10));
+        assertEquals(ContainerUtil.newArrayList("src/main/Foo.java"), snapshot.findByPrefix("src/", 2, 10));
+        assertEquals(ContainerUtil.newArrayList("src/", "src/foo/"), snapshot.findByPrefix("src", 0, 2));
+        assertEmpty(snapshot.findByPrefix("zzz", 0, 10));
+    }
+
+    @Test
+    public void testFindByName() {
+        assertEquals(ContainerUtil.newArrayList("Food/", "foo.txt", "src/foo/", "src/main/Foo.java", "lib/x/y/foobar/"),
+                snapshot.findByName("FOO", 10));
+        assertEquals(ContainerUtil.newArrayList("Food/", "foo.txt"), snapshot.findByName("foo", 2));
+        assertEmpty(snapshot.findByName("zzz", 10));
+    }
+
+    @Test
+    public void testFindByNamePart() {
+        assertEquals(ContainerUtil.newArrayList("lib/x/y/foobar/"), snapshot.findByName("bar", 10));
+        assertEquals(ContainerUtil.newArrayList("src/main/", "README.md", "lib/x/y/foobar/", "src/main/Foo.java"),
+                snapshot.findByName("a", 10));
+        assertEquals(ContainerUtil.newArrayList("Food/", "foo.txt", "src/foo/", "src/main/Foo.java", "lib/x/y/foobar/"),
+                snapshot.findByName("oo", 10));
+    }
+
+    @Test
+    public void testPatch() {
+        final PathsSnapshot patched = snapshot.patch(ContainerUtil.newArrayList("src/main/", "foo.txt"),
+                ContainerUtil.newArrayList("src/main/", "src/main/Bar.java", "docs/", "README.md"));
+        assertEquals(ContainerUtil.newArrayList("src/", "src/foo/", "src/main/", "src/main/Bar.java"),
+                patched.findByPrefix("src", 0, 10));
+        assertEquals(ContainerUtil.newArrayList("src/main/Bar.java", "lib/x/y/foobar/"), patched.findByName("bar", 10));
+        assertEmpty(patched.findByName("foo.t", 10));
+        assertEquals(9, patched.size());
+        assertSame(snapshot, snapshot.patch(ContainerUtil.newArrayList("missing"), ContainerUtil.newArrayList("src/")));
+    }
+
+    @Test
+    public void testGetName() {
+        assertEquals("Foo.java", PathsSnapshot.getName("src/main/Foo.java"));
+        assertEquals("main", PathsSnapshot.getName("src/main/"));
+        assertEquals("README.md", PathsSnapshot.getName("README.md"));
+    }
+
+    @Test
+    public void testGetDepth() {
+        assertEquals(0, PathsSnapshot.getDepth("src/"));
+        assertEquals(1, PathsSnapshot.getDepth("src/main/"));
+        assertEquals(2, PathsSnapshot.getDepth("src/main/Foo.java"));
+    }
+}
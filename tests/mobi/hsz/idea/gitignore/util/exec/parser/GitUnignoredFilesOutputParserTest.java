@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.exec.parser;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+public class GitUnignoredFilesOutputParserTest extends Common<GitUnignoredFilesOutputParser> {
+
+    @Test
+    public void testParseOutput() {
+        final GitUnignoredFilesOutputParser parser = new GitUnignoredFilesOutputParser();
+        parser.onTextAvailable("Would remove foo.txt\n", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("Would remove bar/\n", ProcessOutputTypes.STDOUT);
+        parser.notifyFinished(0);
+
+        assertEquals(ContainerUtil.newArrayList("foo.txt", "bar/"), parser.getOutput());
+        assertFalse(parser.isLimitReached());
+        assertFalse(parser.isErrorsReported());
+    }
+
+    @Test
+    public void testLimit() {
+        final GitUnignoredFilesOutputParser parser = new GitUnignoredFilesOutputParser(2);
+        parser.onTextAvailable("Would remove a\n", ProcessOutputTypes.STDOUT);
+        assertFalse(parser.isLimitReached());
+        parser.onTextAvailable("Would remove b\n", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("Would remove c\n", ProcessOutputTypes.STDOUT);
+
+        assertTrue(parser.isLimitReached());
+        assertEquals(ContainerUtil.newArrayList("a", "b"), parser.getOutput());
+    }
+}
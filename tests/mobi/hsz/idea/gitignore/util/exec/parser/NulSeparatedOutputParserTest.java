@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.exec.parser;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.util.List;
+
+public class NulSeparatedOutputParserTest extends Common<NulSeparatedOutputParser> {
+
+    @Test
+    public void testChunkBoundaries() {
+        final List<String> result = ContainerUtil.newArrayList();
+        final NulSeparatedOutputParser parser = new NulSeparatedOutputParser(collect(result, -1));
+
+        parser.onTextAvailable("foo\0ba", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("r\0with space", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("s\nand newline\0", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("last", ProcessOutputTypes.STDOUT);
+        parser.notifyFinished(0);
+
+        assertEquals(ContainerUtil.newArrayList("foo", "bar", "with spaces\nand newline", "last"), result);
+        assertFalse(parser.isErrorsReported());
+        assertFalse(parser.isCancelled());
+        assertTrue(parser.getOutput().isEmpty());
+    }
+
+    @Test
+    public void testCancellation() {
+        final List<String> result = ContainerUtil.newArrayList();
+        final NulSeparatedOutputParser parser = new NulSeparatedOutputParser(collect(result, 2));
+
+        parser.onTextAvailable("a\0b\0c\0d", ProcessOutputTypes.STDOUT);
+        parser.onTextAvailable("e\0", ProcessOutputTypes.STDOUT);
+        parser.notifyFinished(0);
+
+        assertEquals(ContainerUtil.newArrayList("a", "b"), result);
+        assertTrue(parser.isCancelled());
+    }
+
+    @Test
+    public void testErrors() {
+        final NulSeparatedOutputParser parser = new NulSeparatedOutputParser(collect(null, -1));
+        parser.onTextAvailable("fatal: not a git repository", ProcessOutputTypes.STDERR);
+        assertTrue(parser.isErrorsReported());
+    }
+
+    private static Processor<String> collect(final List<String> result, final int limit) {
+        return new Processor<String>() {
+            @Override
+            public boolean process(String entry) {
+                if (result != null) {
+                    result.add(entry);
+                }
+                return limit < 0 || result == null || result.size() < limit;
+            }
+        };
+    }
+}
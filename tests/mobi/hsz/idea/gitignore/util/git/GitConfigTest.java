@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.openapi.util.io.FileUtil;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class GitConfigTest extends Common<GitConfig> {
+
+    @Test
+    public void testValues() throws IOException {
+        final File file = createConfig("config", "# comment\n" +
+                "[user]\n" +
+                "\tname = \"John  \\\"Q\\\" Doe\" ; trailing comment\n" +
+                "[Core]\n" +
+                "\texcludesFile = /tmp/first\n" +
+                "\texcludesfile = /tmp/second\n" +
+                "[section \"Sub\"]\n" +
+                "\tkey = v1 \\\n" +
+                " continued\n" +
+                "\tflag\n");
+
+        final GitConfig config = new GitConfig(null);
+        config.read(file, 0);
+
+        assertEquals("John  \"Q\" Doe", config.get("user.name"));
+        assertEquals("/tmp/second", config.get("core.excludesfile"));
+        assertEquals("/tmp/second", config.getExcludesFilePath());
+        assertEquals("v1  continued", config.get("section.Sub.key"));
+        assertEquals("true", config.get("section.Sub.flag"));
+        assertNull(config.get("section.sub.key"));
+    }
+
+    @Test
+    public void testIncludes() throws IOException {
+        final File directory = FileUtil.createTempDirectory("gitconfig", null);
+        final File gitDir = new File(directory, "work/project/.git");
+        final String work = FileUtil.toSystemIndependentName(new File(directory, "work").getAbsolutePath());
+
+        createConfig(new File(directory, "included"), "[core]\n\texcludesfile = /tmp/included\n");
+        createConfig(new File(directory, "work.inc"), "[core]\n\texcludesfile = /tmp/work\n");
+        final File file = createConfig(new File(directory, "config"), "[include]\n" +
+                "\tpath = included\n" +
+                "[includeIf \"gitdir:" + work + "/\"]\n" +
+                "\tpath = work.inc\n");
+
+        final GitConfig config = new GitConfig(null);
+        config.read(file, 0);
+        assertEquals("/tmp/included", config.get("core.excludesfile"));
+
+        final GitConfig workConfig = new GitConfig(gitDir);
+        workConfig.read(file, 0);
+        assertEquals("/tmp/work", workConfig.get("core.excludesfile"));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        try {
+            new GitConfig(null).read(createConfig("invalid", "[section\nkey = value\n"), 0);
+            fail();
+        } catch (IOException ignored) {
+        }
+
+        try {
+            new GitConfig(null).read(createConfig("invalid", "[section]\nkey = \"unterminated\n"), 0);
+            fail();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void testCreateRegex() {
+        assertTrue("/home/user/work/project/.git".matches(GitConfig.createRegex("/home/user/work/**")));
+        assertTrue("/home/user/work/project/.git".matches(GitConfig.createRegex("**/project/**")));
+        assertTrue("/home/user/work/project/.git".matches(GitConfig.createRegex("/home/*/work/project/.git")));
+        assertFalse("/home/user/other/project/.git".matches(GitConfig.createRegex("/home/user/work/**")));
+        assertFalse("/home/user/work/project/.git".matches(GitConfig.createRegex("/home/*/project/.git")));
+    }
+
+    private static File createConfig(String name, String content) throws IOException {
+        return createConfig(FileUtil.createTempFile(name, null, true), content);
+    }
+
+    private static File createConfig(File file, String content) throws IOException {
+        FileUtil.writeToFile(file, content);
+        return file;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import mobi.hsz.idea.gitignore.Common;
+import mobi.hsz.idea.gitignore.IgnoreBundle;
+import mobi.hsz.idea.gitignore.util.IgnoreRule;
+import org.junit.Test;
+
+public class GitIgnoreRulesTest extends Common<GitIgnoreRules> {
+
+    @Test
+    public void testIsIgnored() {
+        final GitIgnoreRules rules = new GitIgnoreRules();
+        assertTrue(rules.isEmpty());
+
+        rules.addDirectoryRules("", create("*.log", "build/", "/top", "!keep.log"));
+        rules.addDirectoryRules("a/", create("!x.log", "b/c/"));
+        rules.addBaseRules(create("secret*"));
+        assertFalse(rules.isEmpty());
+
+        assertTrue(rules.isIgnored("a.log"));
+        assertFalse(rules.isIgnored("keep.log"));
+        assertFalse(rules.isIgnored("a/x.log"));
+        assertTrue(rules.isIgnored("a/y.log"));
+        assertTrue(rules.isIgnored("build/o.class"));
+        assertTrue(rules.isIgnored("a/build/o"));
+        assertTrue(rules.isIgnored("top"));
+        assertFalse(rules.isIgnored("a/top"));
+        assertTrue(rules.isIgnored("a/b/c/d.txt"));
+        assertFalse(rules.isIgnored("b/c/d.txt"));
+        assertTrue(rules.isIgnored("secret.txt"));
+        assertTrue(rules.isIgnored("a/secretive"));
+        assertFalse(rules.isIgnored("src/Main.java"));
+    }
+
+    private static IgnoreRule[] create(String... entries) {
+        final IgnoreRule[] rules = new IgnoreRule[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            final boolean negated = entries[i].startsWith("!");
+            final String value = negated ? entries[i].substring(1) : entries[i];
+            rules[i] = IgnoreRule.create(value, IgnoreBundle.Syntax.GLOB, negated);
+        }
+        return rules;
+    }
+}
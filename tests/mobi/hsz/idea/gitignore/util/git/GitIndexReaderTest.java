@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 hsz Jakub Chrzanowski <jakub@hsz.mobi>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package mobi.hsz.idea.gitignore.util.git;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
+import mobi.hsz.idea.gitignore.Common;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+public class GitIndexReaderTest extends Common<GitIndexReader> {
+
+    private static final String[] PATHS = new String[]{"a/b/c.txt", "a/b/d.txt", "a/e.txt", "f"};
+
+    @Test
+    public void testPrivateConstructor() throws InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+        privateConstructor(GitIndexReader.class);
+    }
+
+    @Test
+    public void testVersion2() throws IOException {
+        assertEquals(ContainerUtil.newArrayList(PATHS), read(createIndex(2, PATHS)));
+    }
+
+    @Test
+    public void testVersion4() throws IOException {
+        assertEquals(ContainerUtil.newArrayList(PATHS), read(createIndex(4, PATHS)));
+    }
+
+    @Test
+    public void testInvalidSignature() throws IOException {
+        final File file = FileUtil.createTempFile("index", null, true);
+        FileUtil.writeToFile(file, "INVALID CONTENT");
+        try {
+            read(file);
+            fail();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static List<String> read(File file) throws IOException {
+        final List<String> result = ContainerUtil.newArrayList();
+        assertTrue(GitIndexReader.read(file, new Processor<String>() {
+            @Override
+            public boolean process(String path) {
+                result.add(path);
+                return true;
+            }
+        }));
+        return result;
+    }
+
+    private static File createIndex(int version, String... paths) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("DIRC");
+        out.writeInt(version);
+        out.writeInt(paths.length);
+
+        String previous = "";
+        for (String path : paths) {
+            out.write(new byte[60]);
+            out.writeShort(path.length());
+            if (version == 4) {
+                int common = 0;
+                while (common < previous.length() && common < path.length() &&
+                        previous.charAt(common) == path.charAt(common)) {
+                    common++;
+                }
+                out.writeByte(previous.length() - common);
+                out.writeBytes(path.substring(common));
+                out.writeByte(0);
+            } else {
+                out.writeBytes(path);
+                final int length = 62 + path.length();
+                out.write(new byte[8 - length % 8]);
+            }
+            previous = path;
+        }
+        out.write(new byte[20]);
+
+        final File file = FileUtil.createTempFile("index", null, true);
+        FileUtil.writeToFile(file, bytes.toByteArray());
+        return file;
+    }
+}